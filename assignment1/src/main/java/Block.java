@@ -0,0 +1,64 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Block of a {@link BlockChain}: the hash of its parent block and the transactions it applies to the parent's pool
+ * (which must be finalized before creating the block), along with the work done to create it, which decides the
+ * heaviest chain.
+ * <p>
+ * There's no coinbase, the outputs come from the pool the chain starts from.
+ */
+public class Block {
+    private final byte[] prevBlockHash;
+    private final Transaction[] txs;
+    private final long work;
+    private final byte[] hash;
+
+    /** Creates a block of work 1 (so the heaviest chain is the longest one) */
+    public Block(byte[] prevBlockHash, Transaction[] txs) {
+        this(prevBlockHash, txs, 1);
+    }
+
+    /** @param prevBlockHash hash of the parent block, null for a genesis block. */
+    public Block(byte[] prevBlockHash, Transaction[] txs, long work) {
+        if (work <= 0) throw new IllegalArgumentException("Non-positive work: " + work);
+
+        this.prevBlockHash = prevBlockHash != null ? prevBlockHash.clone() : null;
+        this.txs = txs.clone();
+        this.work = work;
+        this.hash = computeHash();
+    }
+
+    /** @return the block id, hash of the parent's hash, the work and the hashes of the transactions */
+    public byte[] getHash() {
+        return hash;
+    }
+
+    /** @return hash of the parent block, null for a genesis block */
+    public byte[] getPrevBlockHash() {
+        return prevBlockHash;
+    }
+
+    /** @return transactions of the block, which must not be modified */
+    public Transaction[] getTransactions() {
+        return txs;
+    }
+
+    public long getWork() {
+        return work;
+    }
+
+    // ------------------------------------------------------------------
+    private byte[] computeHash() {
+        int size = (prevBlockHash != null ? prevBlockHash.length : 0) + Long.BYTES;
+        for (Transaction tx : txs) {
+            size += tx.getHash().length;
+        }
+        ByteBuffer rawBlock = ByteBuffer.allocate(size);
+        if (prevBlockHash != null) rawBlock.put(prevBlockHash);
+        rawBlock.putLong(work);
+        for (Transaction tx : txs) {
+            rawBlock.put(tx.getHash());
+        }
+        return CryptoService.sha256(rawBlock.array());
+    }
+}
@@ -0,0 +1,212 @@
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+import static java.nio.ByteBuffer.wrap;
+
+/**
+ * Tree of {@link Block}s following the heaviest chain (the one with the most total work, the first one to get it on
+ * ties), whose transactions are validated with a {@link TxHandler}. A block is added only if all its transactions are
+ * valid for the pool of its parent.
+ * <p>
+ * Only the pool of the tip of the heaviest chain is kept. Each other block keeps its {@link UndoRecord}, so the pool of
+ * any block is found by undoing the blocks from the tip down to the common ancestor and applying again the ones from
+ * there, instead of applying the whole chain from the genesis block: switching between forks costs the size of the
+ * blocks switched, not the size of the pool.
+ * <p>
+ * Only the blocks up to {@code stateWindow} blocks below the tip are kept. The older ones are pruned along with the
+ * branches forking from them, so blocks extending them are rejected.
+ */
+public class BlockChain {
+    public static final int DEFAULT_STATE_WINDOW = 100;
+
+    private final int stateWindow;
+    /**
+     * builds the handlers of all the blocks, which share its caches as signatures and permanent rejections don't
+     * depend on the pool
+     */
+    private final TxHandler.Builder txHandlers;
+
+    /** blocks kept, by hash */
+    private final Map<ByteBuffer, Node> nodes = new HashMap<>();
+    /** oldest block kept, all the others descend from it */
+    private Node root;
+    private Node tip;
+    private UTXOPool tipPool;
+
+    /** Creates a chain starting at {@code genesisBlock}, keeping {@link #DEFAULT_STATE_WINDOW} blocks */
+    public BlockChain(Block genesisBlock, UTXOPool utxoPool) {
+        this(genesisBlock, utxoPool, DEFAULT_STATE_WINDOW, null, new RecursiveValidationEngine());
+    }
+
+    /**
+     * @param utxoPool pool once {@code genesisBlock} is applied (its transactions aren't validated).
+     * @param stateWindow blocks below the tip to be kept.
+     * @param verificationPool see {@link TxHandler.Builder#verificationPool}.
+     */
+    public BlockChain(
+        Block genesisBlock, UTXOPool utxoPool, int stateWindow, ForkJoinPool verificationPool,
+        BlockValidationEngine validationEngine)
+    {
+        if (stateWindow < 1) throw new IllegalArgumentException("The state window must be positive: " + stateWindow);
+
+        this.stateWindow = stateWindow;
+        this.txHandlers = TxHandler.newBuilder().verificationPool(verificationPool).validationEngine(validationEngine);
+        root = new Node(genesisBlock, null, null);
+        tip = root;
+        tipPool = new UTXOPool(utxoPool);
+        nodes.put(root.id, root);
+    }
+
+    /**
+     * Adds {@code block} if its parent is kept and all its transactions are valid for its parent's pool, making it the
+     * tip if its chain becomes the heaviest one.
+     * @return true if added.
+     */
+    public boolean addBlock(Block block) {
+        ByteBuffer blockId = wrap(block.getHash());
+        Node parent = block.getPrevBlockHash() != null ? nodes.get(wrap(block.getPrevBlockHash())) : null;
+        Transaction[] txs = block.getTransactions();
+        if (parent == null || nodes.containsKey(blockId) || hasDuplicates(txs)) return false;
+
+        UTXOPool parentPool = poolAt(parent);
+        TxHandler txHandler = txHandlers.build(parentPool);
+        if (txHandler.handleTxs(txs).length != txs.length) return false;
+
+        Node node = new Node(block, parent, UndoRecord.of(Arrays.asList(txs), parentPool));
+        nodes.put(blockId, node);
+        parent.children.add(node);
+        if (node.totalWork > tip.totalWork) {
+            tip = node;
+            tipPool = txHandler.getUTXOPool();
+            prune();
+        }
+        return true;
+    }
+
+    /** @return the tip of the heaviest chain */
+    public Block getTip() {
+        return tip.block;
+    }
+
+    /** @return height of the tip, the genesis block being at 0 */
+    public int getTipHeight() {
+        return tip.height;
+    }
+
+    /** @return the pool of the tip, which must not be modified */
+    public UTXOPool getUTXOPool() {
+        return tipPool;
+    }
+
+    /**
+     * @return a copy of the pool once the block with hash {@code blockHash} is applied (found from the tip's pool), or
+     *         null if the block is not kept.
+     */
+    public UTXOPool getUTXOPool(byte[] blockHash) {
+        Node node = nodes.get(wrap(blockHash));
+        return node != null ? poolAt(node) : null;
+    }
+
+    /** @return the number of blocks kept */
+    public int size() {
+        return nodes.size();
+    }
+
+    // ------------------------------------------------------------------
+    private static class Node {
+        private final Block block;
+        private final ByteBuffer id;
+        private final int height;
+        private final long totalWork;
+        private final List<Node> children = new ArrayList<>();
+        /** null for the {@link #root} */
+        private Node parent;
+        private UndoRecord undo;
+
+        Node(Block block, Node parent, UndoRecord undo) {
+            this.block = block;
+            this.id = wrap(block.getHash());
+            this.height = parent != null ? parent.height + 1 : 0;
+            this.totalWork = (parent != null ? parent.totalWork : 0) + block.getWork();
+            this.parent = parent;
+            this.undo = undo;
+        }
+    }
+
+    /** @return a copy of the tip's pool, moved to {@code target} through the common ancestor */
+    private UTXOPool poolAt(Node target) {
+        UTXOPool pool = new UTXOPool(tipPool);
+        Node from = tip;
+        Node to = target;
+        //the blocks to redo, the oldest first
+        Deque<Node> toRedo = new ArrayDeque<>();
+        while (from.height > to.height) {
+            from.undo.undo(pool);
+            from = from.parent;
+        }
+        while (to.height > from.height) {
+            toRedo.push(to);
+            to = to.parent;
+        }
+        while (from != to) {
+            from.undo.undo(pool);
+            from = from.parent;
+            toRedo.push(to);
+            to = to.parent;
+        }
+        for (Node node : toRedo) {
+            apply(node.block.getTransactions(), pool);
+        }
+        return pool;
+    }
+
+    /** Drops the blocks more than {@link #stateWindow} below the tip, along with the branches forking from them */
+    private void prune() {
+        int rootHeight = tip.height - stateWindow;
+        if (rootHeight <= root.height) return;
+
+        Node newRoot = tip;
+        while (newRoot.height > rootHeight) {
+            newRoot = newRoot.parent;
+        }
+        Deque<Node> toDrop = new ArrayDeque<>();
+        toDrop.add(root);
+        while (! toDrop.isEmpty()) {
+            Node node = toDrop.poll();
+            nodes.remove(node.id);
+            for (Node child : node.children) {
+                if (child != newRoot) toDrop.add(child);
+            }
+        }
+        newRoot.parent = null;
+        newRoot.undo = null;
+        root = newRoot;
+    }
+
+    /** Applies the valid {@code txs}, in any order, to {@code pool} */
+    private static void apply(Transaction[] txs, UTXOPool pool) {
+        //outputs spent by other txs of the block are neither added nor removed
+        Map<UTXO, Transaction.Output> created = new LinkedHashMap<>();
+        for (Transaction tx : txs) {
+            for (int i = 0; i < tx.numOutputs(); i++) {
+                created.put(new UTXO(tx.getHash(), i), tx.getOutput(i));
+            }
+        }
+        for (Transaction tx : txs) {
+            for (Transaction.Input input : tx.getInputs()) {
+                UTXO utxo = new UTXO(input.prevTxHash, input.outputIndex);
+                if (created.remove(utxo) == null) pool.removeUTXO(utxo);
+            }
+        }
+        created.forEach(pool::addUTXO);
+    }
+
+    private static boolean hasDuplicates(Transaction[] txs) {
+        Set<ByteBuffer> txIds = new HashSet<>(txs.length * 2);
+        for (Transaction tx : txs) {
+            if (! txIds.add(wrap(tx.getHash()))) return true;
+        }
+        return false;
+    }
+}
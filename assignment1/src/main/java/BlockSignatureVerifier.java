@@ -0,0 +1,161 @@
+import java.nio.ByteBuffer;
+import java.security.PublicKey;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import static java.nio.ByteBuffer.wrap;
+
+/**
+ * Pre-validation stage for {@link TxHandler#handleTxs(Transaction[])}: verifies the signatures of every input of a
+ * block up front, in parallel on the configured {@link ForkJoinPool}, so the dependency resolution pass only needs to
+ * do UTXO bookkeeping. Signatures are grouped by address, so many inputs spending from the same address don't set up
+ * the verification of its key each time.
+ * <p>
+ * The address an input is verified against is resolved either from the in-block transaction it refers to or from the
+ * UTXOPool the block is validated against. The address is kept along with the result, and the result is only used if
+ * the same address is found when the transaction is finally validated (any other case falls back to verifying it
+ * then), so the accepted transactions are the same as with serial verification.
+ */
+class BlockSignatureVerifier {
+
+    /** Checks the signature of the input {@code inputIdx} of {@code tx} against {@code address} */
+    interface SignatureCheck {
+        boolean isValid(Transaction tx, int inputIdx, PublicKey address);
+    }
+
+    /** Verifies the signature directly, without any pre-computed result */
+    static final SignatureCheck SERIAL = (tx, inputIdx, address) ->
+        Crypto.verifySignature(address, tx.getRawDataToSign(inputIdx), tx.getInput(inputIdx).signature);
+
+    private final ForkJoinPool pool;
+    private final SignatureCheck check;
+
+    /** Creates a verifier using {@code check} (e.g. {@link #SERIAL}) to verify each signature */
+    BlockSignatureVerifier(ForkJoinPool pool, SignatureCheck check) {
+        this.pool = pool;
+        this.check = check;
+    }
+
+    /**
+     * Verifies all the input signatures of {@code txs} whose referred output can be resolved.
+     * @return a {@link SignatureCheck} answering from the verified signatures.
+     */
+    SignatureCheck verify(Transaction[] txs, Map<ByteBuffer, Transaction> idToTx, UTXOPool utxoPool) {
+        List<PendingSignature> pending = new ArrayList<>();
+        for (Transaction tx : txs) {
+            for (int i = 0; i < tx.numInputs(); i++) {
+                PublicKey address = resolveAddress(tx.getInput(i), idToTx, utxoPool);
+                if (address != null) {
+                    pending.add(new PendingSignature(tx, i, address, check));
+                }
+            }
+        }
+
+        //runs of the same address, so each worker sets up its signature once per run (see CryptoService)
+        List<int[]> runs = CryptoService.groupByKey(
+            pending.size(), i -> pending.get(i).address, CryptoService.maxRunSize(pending.size(), pool));
+        pool.submit(() -> runs.parallelStream().forEach(run -> {
+            for (int i : run) {
+                pending.get(i).verify();
+            }
+        })).join();
+
+        Map<ByteBuffer, PendingSignature[]> verified = new HashMap<>(txs.length * 2);
+        for (PendingSignature sig : pending) {
+            verified.computeIfAbsent(wrap(sig.tx.getHash()), h -> new PendingSignature[sig.tx.numInputs()])
+                [sig.inputIdx] = sig;
+        }
+        return new VerifiedSignatures(verified, check);
+    }
+
+    /**
+     * Starts verifying, asynchronously, the input signatures of {@code tx} whose referred output is in
+     * {@code utxoPool}, which is only read during the call.
+     * @return a {@link SignatureCheck} for {@code tx} answering from the verified signatures (waiting for them).
+     */
+    SignatureCheck verifyAsync(Transaction tx, UTXOPool utxoPool) {
+        PendingSignature[] sigs = new PendingSignature[tx.numInputs()];
+        for (int i = 0; i < sigs.length; i++) {
+            PublicKey address = resolveAddress(tx.getInput(i), Collections.emptyMap(), utxoPool);
+            if (address != null) {
+                sigs[i] = new PendingSignature(tx, i, address, check);
+            }
+        }
+        ForkJoinTask<?> task = pool.submit(() -> {
+            for (PendingSignature sig : sigs) {
+                if (sig != null) sig.verify();
+            }
+        });
+        return (verifiedTx, inputIdx, address) -> {
+            task.join();
+            PendingSignature sig = inputIdx < sigs.length ? sigs[inputIdx] : null;
+            return sig != null && sig.matches(verifiedTx, address)
+                ? sig.isValid
+                : check.isValid(verifiedTx, inputIdx, address);
+        };
+    }
+
+    private static PublicKey resolveAddress(
+        Transaction.Input input, Map<ByteBuffer, Transaction> idToTx, UTXOPool utxoPool)
+    {
+        if (input.prevTxHash == null) return null;
+
+        Transaction txInBlock = idToTx.get(wrap(input.prevTxHash));
+        Transaction.Output output = txInBlock != null
+            ? txInBlock.getOutput(input.outputIndex)
+            : utxoPool.getTxOutput(new UTXO(input.prevTxHash, input.outputIndex));
+        return output != null ? output.address : null;
+    }
+
+    // ------------------------------------------------------------------
+    private static class PendingSignature {
+        private final Transaction tx;
+        private final int inputIdx;
+        private final PublicKey address;
+        private final SignatureCheck check;
+        private boolean isVerified;
+        private boolean isValid;
+
+        PendingSignature(Transaction tx, int inputIdx, PublicKey address, SignatureCheck check) {
+            this.tx = tx;
+            this.inputIdx = inputIdx;
+            this.address = address;
+            this.check = check;
+        }
+
+        /** @return true if it was verified for the same tx and address */
+        boolean matches(Transaction tx, PublicKey address) {
+            return isVerified && this.tx == tx && this.address == address;
+        }
+
+        void verify() {
+            try {
+                isValid = check.isValid(tx, inputIdx, address);
+                isVerified = true;
+            } catch (RuntimeException e) {
+                //left unverified, the regular validation will find the same problem (if it gets to this input)
+            }
+        }
+    }
+
+    private static class VerifiedSignatures implements SignatureCheck {
+        private final Map<ByteBuffer, PendingSignature[]> verified;
+        private final SignatureCheck fallback;
+
+        VerifiedSignatures(Map<ByteBuffer, PendingSignature[]> verified, SignatureCheck fallback) {
+            this.verified = verified;
+            this.fallback = fallback;
+        }
+
+        @Override
+        public boolean isValid(Transaction tx, int inputIdx, PublicKey address) {
+            PendingSignature[] sigs = verified.get(wrap(tx.getHash()));
+            PendingSignature sig = sigs != null && inputIdx < sigs.length ? sigs[inputIdx] : null;
+            if (sig != null && sig.matches(tx, address)) {
+                return sig.isValid;
+            }
+            return fallback.isValid(tx, inputIdx, address);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Strategy used by {@link TxHandler#handleTxs(Transaction[])} to select a mutually valid set of transactions out of
+ * the ones proposed for a block.
+ */
+public interface BlockValidationEngine {
+
+    /** Checks if {@code tx} is valid for {@code utxoPool} (see {@link TxHandler#isValidTx(Transaction)}) */
+    interface TxCheck {
+        boolean isValid(Transaction tx, UTXOPool utxoPool);
+    }
+
+    /**
+     * Selects the mutually valid transactions of {@code possibleTxs} for {@code utxoPool}, which must not be modified.
+     * @param idToTx {@code possibleTxs} indexed by hash.
+     */
+    Result validate(
+        Transaction[] possibleTxs, Map<ByteBuffer, Transaction> idToTx, UTXOPool utxoPool, TxCheck txCheck);
+
+    /** Same as {@link #validate(Transaction[], Map, UTXOPool, TxCheck)}, reporting measurements to {@code metrics} */
+    default Result validate(
+        Transaction[] possibleTxs, Map<ByteBuffer, Transaction> idToTx, UTXOPool utxoPool, TxCheck txCheck,
+        TxHandlerMetrics metrics)
+    {
+        return validate(possibleTxs, idToTx, utxoPool, txCheck);
+    }
+
+    // ------------------------------------------------------------------
+    final class Result {
+        /** accepted transactions, in the same order they were proposed */
+        final List<Transaction> accepted;
+        /** resulting pool after applying the {@link #accepted} transactions */
+        final UTXOPool utxoPool;
+
+        Result(List<Transaction> accepted, UTXOPool utxoPool) {
+            this.accepted = accepted;
+            this.utxoPool = utxoPool;
+        }
+    }
+}
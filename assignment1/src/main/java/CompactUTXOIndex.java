@@ -0,0 +1,281 @@
+import java.security.PublicKey;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Open addressing (linear probing) map of UTXOs to their outputs, kept in parallel primitive arrays instead of one
+ * {@link UTXO} and {@link Transaction.Output} object per entry.
+ * <p>
+ * Each slot packs the transaction hash (up to 32 bytes, as SHA-256 hashes) in 4 longs along with its length and the
+ * output index. The output is stored as its value plus the id of its address in an {@link AddressTable} shared by
+ * all the copies of the index, so each distinct key is kept once. Outputs returned by {@link #get} are created on each
+ * call (although their address is always the same instance). UTXOs with longer hashes (or without hash) are kept in a
+ * regular map.
+ * <p>
+ * Removals shift back the following entries of the probe sequence, so there are no tombstones. Not thread-safe for
+ * writes, although an index which is no longer modified can be read from different threads.
+ */
+final class CompactUTXOIndex implements UTXOIndex {
+    static final int HASH_WORDS = 4;
+    private static final int MAX_PACKED_HASH_LENGTH = HASH_WORDS * Long.BYTES;
+    private static final int MIN_CAPACITY = 16;
+    /** resize when more than 5/8 of the slots are used */
+    private static final int MAX_LOAD_NUMERATOR = 5;
+    private static final int MAX_LOAD_DENOMINATOR = 8;
+    private static final int NO_ADDRESS = -1;
+    /** outer instance of the outputs created by the index, which don't belong to an actual transaction */
+    private static final Transaction OUTPUTS_OWNER = new Transaction();
+
+    private final AddressTable addresses;
+    /** hash length + 1 of the UTXO in each slot, 0 for empty slots */
+    private byte[] hashLengths;
+    /** {@link #HASH_WORDS} per slot, big endian and zero padded */
+    private long[] hashWords;
+    private int[] outputIndexes;
+    /** output values, in satoshis */
+    private long[] values;
+    private int[] addressIds;
+    private int size;
+    /** UTXOs whose hash is too long to be packed */
+    private final Map<UTXO, Transaction.Output> overflow;
+
+    CompactUTXOIndex() {
+        this(new AddressTable(), MIN_CAPACITY, new HashMap<>());
+    }
+
+    private CompactUTXOIndex(AddressTable addresses, int capacity, Map<UTXO, Transaction.Output> overflow) {
+        this.addresses = addresses;
+        this.overflow = overflow;
+        allocate(capacity);
+    }
+
+    /** @return a copy of this index (sharing the address table), in O(n) */
+    CompactUTXOIndex copy() {
+        CompactUTXOIndex copy = new CompactUTXOIndex(addresses, 0, new HashMap<>(overflow));
+        copy.hashLengths = hashLengths.clone();
+        copy.hashWords = hashWords.clone();
+        copy.outputIndexes = outputIndexes.clone();
+        copy.values = values.clone();
+        copy.addressIds = addressIds.clone();
+        copy.size = size;
+        return copy;
+    }
+
+    @Override
+    public int size() {
+        return size + overflow.size();
+    }
+
+    @Override
+    public boolean containsKey(UTXO utxo) {
+        if (! isPackable(utxo)) return overflow.containsKey(utxo);
+        return findSlot(utxo.getTxHash(), utxo.getIndex()) >= 0;
+    }
+
+    /** @return the output of {@code utxo} (a new instance on each call), or null if it is not in the index */
+    @Override
+    public Transaction.Output get(UTXO utxo) {
+        if (! isPackable(utxo)) return overflow.get(utxo);
+
+        int slot = findSlot(utxo.getTxHash(), utxo.getIndex());
+        return slot >= 0 ? outputAt(slot) : null;
+    }
+
+    /** @return true if {@code utxo} was not in the index */
+    boolean put(UTXO utxo, Transaction.Output output) {
+        if (! isPackable(utxo)) return overflow.put(utxo, output) == null;
+
+        byte[] hash = utxo.getTxHash();
+        int slot = findSlot(hash, utxo.getIndex());
+        boolean isNew = slot < 0;
+        if (isNew) {
+            if ((size + 1) * MAX_LOAD_DENOMINATOR > capacity() * MAX_LOAD_NUMERATOR) {
+                resize(capacity() * 2);
+                slot = findSlot(hash, utxo.getIndex());
+            }
+            slot = -slot - 1;
+            hashLengths[slot] = (byte) (hash.length + 1);
+            for (int w = 0; w < HASH_WORDS; w++) {
+                hashWords[slot * HASH_WORDS + w] = word(hash, w);
+            }
+            outputIndexes[slot] = utxo.getIndex();
+            ++size;
+        }
+        values[slot] = output.value;
+        addressIds[slot] = output.address != null ? addresses.intern(output.address) : NO_ADDRESS;
+        return isNew;
+    }
+
+    /** @return true if {@code utxo} was in the index */
+    boolean remove(UTXO utxo) {
+        if (! isPackable(utxo)) return overflow.remove(utxo) != null;
+
+        int slot = findSlot(utxo.getTxHash(), utxo.getIndex());
+        if (slot < 0) return false;
+
+        int mask = capacity() - 1;
+        int hole = slot;
+        for (int next = (hole + 1) & mask; hashLengths[next] != 0; next = (next + 1) & mask) {
+            //moved back unless its home slot is after the hole (in probe order)
+            int home = homeSlot(next);
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                moveSlot(next, hole);
+                hole = next;
+            }
+        }
+        hashLengths[hole] = 0;
+        --size;
+        return true;
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super UTXO, ? super Transaction.Output> action) {
+        for (int slot = 0; slot < capacity(); slot++) {
+            if (hashLengths[slot] != 0) action.accept(utxoAt(slot), outputAt(slot));
+        }
+        overflow.forEach(action);
+    }
+
+    @Override
+    public void forEachUTXO(Consumer<? super UTXO> action) {
+        for (int slot = 0; slot < capacity(); slot++) {
+            if (hashLengths[slot] != 0) action.accept(utxoAt(slot));
+        }
+        overflow.keySet().forEach(action);
+    }
+
+    // ------------------------------------------------------------------
+    /**
+     * Interned addresses, identified by their position. Addresses are never removed, so the table grows with the
+     * distinct addresses ever added to the index (and its copies).
+     */
+    private static final class AddressTable {
+        private final Map<PublicKey, Integer> ids = new HashMap<>();
+        private volatile PublicKey[] keys = new PublicKey[MIN_CAPACITY];
+
+        synchronized int intern(PublicKey key) {
+            Integer id = ids.get(key);
+            if (id != null) return id;
+
+            id = ids.size();
+            PublicKey[] current = keys;
+            if (id == current.length) current = Arrays.copyOf(current, id * 2);
+            current[id] = key;
+            keys = current;
+            ids.put(key, id);
+            return id;
+        }
+
+        PublicKey get(int id) {
+            return keys[id];
+        }
+    }
+
+    /** @return true if the hash of {@code utxo} fits in {@link #word}s (UTXOs without hash are kept in the overflow) */
+    static boolean isPackable(UTXO utxo) {
+        byte[] hash = utxo.getTxHash();
+        return hash != null && hash.length <= MAX_PACKED_HASH_LENGTH;
+    }
+
+    private int capacity() {
+        return hashLengths.length;
+    }
+
+    private void allocate(int capacity) {
+        hashLengths = new byte[capacity];
+        hashWords = new long[capacity * HASH_WORDS];
+        outputIndexes = new int[capacity];
+        values = new long[capacity];
+        addressIds = new int[capacity];
+    }
+
+    private void resize(int capacity) {
+        byte[] oldHashLengths = hashLengths;
+        long[] oldHashWords = hashWords;
+        int[] oldOutputIndexes = outputIndexes;
+        long[] oldValues = values;
+        int[] oldAddressIds = addressIds;
+        allocate(capacity);
+
+        int mask = capacity - 1;
+        for (int old = 0; old < oldHashLengths.length; old++) {
+            if (oldHashLengths[old] == 0) continue;
+
+            int slot = slotFor(oldHashLengths[old], oldHashWords, old * HASH_WORDS, oldOutputIndexes[old]);
+            while (hashLengths[slot] != 0) slot = (slot + 1) & mask;
+            hashLengths[slot] = oldHashLengths[old];
+            System.arraycopy(oldHashWords, old * HASH_WORDS, hashWords, slot * HASH_WORDS, HASH_WORDS);
+            outputIndexes[slot] = oldOutputIndexes[old];
+            values[slot] = oldValues[old];
+            addressIds[slot] = oldAddressIds[old];
+        }
+    }
+
+    /** @return the slot of the UTXO, or {@code -(slot where it would be inserted) - 1} if it is not in the index */
+    private int findSlot(byte[] hash, int index) {
+        byte length = (byte) (hash.length + 1);
+        long w0 = word(hash, 0), w1 = word(hash, 1), w2 = word(hash, 2), w3 = word(hash, 3);
+        int mask = capacity() - 1;
+        for (int slot = slotFor(length, w0, w1, w2, w3, index); ; slot = (slot + 1) & mask) {
+            if (hashLengths[slot] == 0) return -slot - 1;
+
+            int words = slot * HASH_WORDS;
+            if (hashLengths[slot] == length && outputIndexes[slot] == index
+                && hashWords[words] == w0 && hashWords[words + 1] == w1
+                && hashWords[words + 2] == w2 && hashWords[words + 3] == w3) {
+                return slot;
+            }
+        }
+    }
+
+    private int homeSlot(int slot) {
+        return slotFor(hashLengths[slot], hashWords, slot * HASH_WORDS, outputIndexes[slot]);
+    }
+
+    private int slotFor(byte length, long[] words, int offset, int index) {
+        return slotFor(length, words[offset], words[offset + 1], words[offset + 2], words[offset + 3], index);
+    }
+
+    private int slotFor(byte length, long w0, long w1, long w2, long w3, int index) {
+        long h = index * 0x9E3779B97F4A7C15L + length;
+        h = (h ^ w0) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ w1) * 0x94D049BB133111EBL;
+        h = (h ^ w2) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ w3) * 0x94D049BB133111EBL;
+        h ^= h >>> 31;
+        return (int) h & (capacity() - 1);
+    }
+
+    /** @return the bytes {@code [w * 8, w * 8 + 8)} of {@code hash} as a big endian long, zero padded */
+    static long word(byte[] hash, int w) {
+        long word = 0;
+        for (int i = w * Long.BYTES; i < (w + 1) * Long.BYTES; i++) {
+            word = (word << 8) | (i < hash.length ? hash[i] & 0xFF : 0);
+        }
+        return word;
+    }
+
+    private void moveSlot(int from, int to) {
+        hashLengths[to] = hashLengths[from];
+        System.arraycopy(hashWords, from * HASH_WORDS, hashWords, to * HASH_WORDS, HASH_WORDS);
+        outputIndexes[to] = outputIndexes[from];
+        values[to] = values[from];
+        addressIds[to] = addressIds[from];
+    }
+
+    private UTXO utxoAt(int slot) {
+        byte[] hash = new byte[hashLengths[slot] - 1];
+        for (int i = 0; i < hash.length; i++) {
+            hash[i] = (byte) (hashWords[slot * HASH_WORDS + i / Long.BYTES] >>> (56 - 8 * (i % Long.BYTES)));
+        }
+        return new UTXO(hash, outputIndexes[slot]);
+    }
+
+    private Transaction.Output outputAt(int slot) {
+        PublicKey address = addressIds[slot] != NO_ADDRESS ? addresses.get(addressIds[slot]) : null;
+        return OUTPUTS_OWNER.new Output(values[slot], address);
+    }
+}
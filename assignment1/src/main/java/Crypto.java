@@ -1,8 +1,7 @@
-import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
 import java.security.PublicKey;
-import java.security.Signature;
-import java.security.SignatureException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 public class Crypto {
 
@@ -10,27 +9,31 @@ public class Crypto {
      * @return true is {@code signature} is a valid digital signature of {@code message} under the
      *         key {@code pubKey}. Internally, this uses RSA signature, but the student does not
      *         have to deal with any of the implementation details of the specific signature
-     *         algorithm
+     *         algorithm (see {@link CryptoService})
      */
     public static boolean verifySignature(PublicKey pubKey, byte[] message, byte[] signature) {
-        Signature sig = null;
-        try {
-            sig = Signature.getInstance("SHA256withRSA");
-        } catch (NoSuchAlgorithmException e) {
-            e.printStackTrace();
+        return CryptoService.verify(pubKey, message, signature).isValid();
+    }
+
+    /**
+     * @return whether each {@code signatures[i]} is a valid signature of {@code messages[i]} under {@code pubKeys[i]},
+     *         as {@link #verifySignature} would. The signatures are verified in parallel (on the common
+     *         {@link ForkJoinPool}), grouped by key so each key is set up once per worker (see
+     *         {@link CryptoService#verifyAll(List, ForkJoinPool)}).
+     */
+    public static boolean[] verifySignatures(PublicKey[] pubKeys, byte[][] messages, byte[][] signatures) {
+        if (pubKeys.length != messages.length || pubKeys.length != signatures.length) {
+            throw new IllegalArgumentException("Different number of keys, messages and signatures");
         }
-        try {
-            sig.initVerify(pubKey);
-        } catch (InvalidKeyException e) {
-            e.printStackTrace();
+        List<CryptoService.VerifyRequest> requests = new ArrayList<>(pubKeys.length);
+        for (int i = 0; i < pubKeys.length; i++) {
+            requests.add(new CryptoService.VerifyRequest(pubKeys[i], messages[i], signatures[i]));
         }
-        try {
-            sig.update(message);
-            return sig.verify(signature);
-        } catch (SignatureException e) {
-            e.printStackTrace();
+        List<CryptoService.VerifyResult> results = CryptoService.verifyAll(requests, ForkJoinPool.commonPool());
+        boolean[] valid = new boolean[results.size()];
+        for (int i = 0; i < valid.length; i++) {
+            valid[i] = results.get(i).isValid();
         }
-        return false;
-
+        return valid;
     }
 }
@@ -0,0 +1,177 @@
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntFunction;
+
+/**
+ * Signature verification and hashing reusing, per thread, the {@link Signature} and {@link MessageDigest} instances
+ * (instead of looking up the provider and creating them on each call).
+ * <p>
+ * Each thread keeps a {@code Signature} initialized with each of the last {@value #KEYS_PER_THREAD} keys it verified
+ * with, so verifications with a recently used key (even if interleaved with other keys) skip parsing the key and
+ * initializing the signature with it. Batches are grouped by key (see {@link #verifyAll}), and can also be verified in
+ * parallel, each worker verifying whole runs of requests with the same key. Failures are reported as
+ * {@link VerifyResult}s instead of exceptions.
+ */
+public final class CryptoService {
+    private static final String SIGNATURE_ALGORITHM = "SHA256withRSA";
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+    /** runs of requests with the same key per worker thread, so a key used by most requests is still spread */
+    private static final int RUNS_PER_THREAD = 4;
+    /** keys each thread keeps an initialized signature for */
+    static final int KEYS_PER_THREAD = 64;
+
+    private static final ThreadLocal<Verifier> VERIFIERS = ThreadLocal.withInitial(Verifier::new);
+    private static final ThreadLocal<MessageDigest> DIGESTS = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private CryptoService() {}
+
+    public enum VerifyResult {
+        VALID,
+        /** well formed signature, but not of the message with the key */
+        INVALID,
+        /** the key is not a valid RSA key (or null) */
+        INVALID_KEY,
+        /** the signature can't be a signature with the key (e.g. it has the wrong length, or is null) */
+        MALFORMED_SIGNATURE;
+
+        public boolean isValid() {
+            return this == VALID;
+        }
+    }
+
+    public static final class VerifyRequest {
+        public final PublicKey key;
+        public final byte[] message;
+        public final byte[] signature;
+
+        public VerifyRequest(PublicKey key, byte[] message, byte[] signature) {
+            this.key = key;
+            this.message = message;
+            this.signature = signature;
+        }
+    }
+
+    /** Verifies that {@code signature} is a SHA256withRSA signature of {@code message} with {@code key} */
+    public static VerifyResult verify(PublicKey key, byte[] message, byte[] signature) {
+        return VERIFIERS.get().verify(key, message, signature);
+    }
+
+    /** @return the result of verifying each request, in the same order */
+    public static List<VerifyResult> verifyAll(List<VerifyRequest> requests) {
+        //grouped by key, to initialize the signature once per key
+        VerifyResult[] results = new VerifyResult[requests.size()];
+        for (int[] run : groupByKey(requests.size(), i -> requests.get(i).key, Integer.MAX_VALUE)) {
+            verifyRun(requests, run, results);
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Same as {@link #verifyAll(List)}, verifying the runs of requests with the same key in parallel on {@code pool}
+     * (each one by a single worker, which initializes its signature once per run).
+     */
+    public static List<VerifyResult> verifyAll(List<VerifyRequest> requests, ForkJoinPool pool) {
+        VerifyResult[] results = new VerifyResult[requests.size()];
+        List<int[]> runs = groupByKey(requests.size(), i -> requests.get(i).key, maxRunSize(requests.size(), pool));
+        pool.submit(() -> runs.parallelStream().forEach(run -> verifyRun(requests, run, results))).join();
+        return Arrays.asList(results);
+    }
+
+    /** @return the SHA-256 hash of {@code data} */
+    public static byte[] sha256(byte[] data) {
+        //digest() leaves it reset
+        return DIGESTS.get().digest(data);
+    }
+
+    /**
+     * @return the indexes in [0, {@code count}) grouped by (the identity of) their key, in runs of at most
+     *         {@code maxRunSize} indexes, each one in increasing order.
+     */
+    static List<int[]> groupByKey(int count, IntFunction<PublicKey> keyOf, int maxRunSize) {
+        Map<PublicKey, List<Integer>> byKey = new IdentityHashMap<>();
+        for (int i = 0; i < count; i++) {
+            byKey.computeIfAbsent(keyOf.apply(i), k -> new ArrayList<>()).add(i);
+        }
+
+        List<int[]> runs = new ArrayList<>();
+        for (List<Integer> indexes : byKey.values()) {
+            for (int from = 0; from < indexes.size(); from += maxRunSize) {
+                runs.add(indexes.subList(from, Math.min(indexes.size(), from + maxRunSize)).stream()
+                    .mapToInt(Integer::intValue).toArray());
+            }
+        }
+        return runs;
+    }
+
+    /** @return the maximum size of the runs {@code count} requests are split into, to be verified on {@code pool} */
+    static int maxRunSize(int count, ForkJoinPool pool) {
+        int runs = pool.getParallelism() * RUNS_PER_THREAD;
+        return Math.max(1, (count + runs - 1) / runs);
+    }
+
+    // ------------------------------------------------------------------
+    private static void verifyRun(List<VerifyRequest> requests, int[] run, VerifyResult[] results) {
+        Verifier verifier = VERIFIERS.get();
+        for (int i : run) {
+            VerifyRequest request = requests.get(i);
+            results[i] = verifier.verify(request.key, request.message, request.signature);
+        }
+    }
+
+    private static class Verifier {
+        /** signatures initialized with each key, least recently used first */
+        private final LinkedHashMap<PublicKey, Signature> signatures = new LinkedHashMap<>(16, 0.75f, true);
+
+        VerifyResult verify(PublicKey key, byte[] message, byte[] sig) {
+            if (key == null) return VerifyResult.INVALID_KEY;
+            if (sig == null) return VerifyResult.MALFORMED_SIGNATURE;
+
+            Signature signature = signatures.get(key);
+            if (signature == null) {
+                signature = evictedOrNewSignature();
+                try {
+                    signature.initVerify(key);
+                } catch (InvalidKeyException e) {
+                    return VerifyResult.INVALID_KEY;
+                }
+                signatures.put(key, signature);
+            }
+            try {
+                //verify() resets it to the state after initVerify(key)
+                signature.update(message);
+                return signature.verify(sig) ? VerifyResult.VALID : VerifyResult.INVALID;
+            } catch (SignatureException e) {
+                //its state is unknown, so it will be initialized again
+                signatures.remove(key);
+                return VerifyResult.MALFORMED_SIGNATURE;
+            }
+        }
+
+        /** @return the signature of the least recently used key if there are too many, a new one otherwise */
+        private Signature evictedOrNewSignature() {
+            if (signatures.size() >= KEYS_PER_THREAD) {
+                Iterator<Signature> leastRecentlyUsed = signatures.values().iterator();
+                Signature signature = leastRecentlyUsed.next();
+                leastRecentlyUsed.remove();
+                return signature;
+            }
+            try {
+                return Signature.getInstance(SIGNATURE_ALGORITHM);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Durable UTXO set kept in a directory as a memory-mapped snapshot ({@link MappedUTXOIndex}) plus a log of the
+ * changes committed after it ({@link UTXOLog}).
+ * <p>
+ * Opening the store maps the snapshot and replays the log on top of it (in the heap), so startup doesn't depend on the
+ * size of the UTXO set and the set doesn't need to fit in the heap. Once the log grows past {@code maxLogBytes} a new
+ * snapshot is written to a temporary file and atomically renamed, and then the log is reset.
+ * <p>
+ * Each {@link #commit} is durable once it returns. If the process dies at any point (even while committing or taking
+ * a snapshot) the store is opened again with the state of the last commit which returned (or the one in progress, if
+ * it was completely written). A directory must be used by a single store at a time. Not thread-safe.
+ */
+public class DiskUTXOStore implements AutoCloseable {
+    public static final long DEFAULT_MAX_LOG_BYTES = 64 << 20;
+
+    private static final String SNAPSHOT_FILE = "utxos.snapshot";
+    private static final String LOG_FILE = "utxos.log";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final Path directory;
+    private final long maxLogBytes;
+    private final TransactionCodec codec = new TransactionCodec();
+    private final UTXOLog log;
+    private UTXOPool committed;
+
+    public DiskUTXOStore(Path directory) throws IOException {
+        this(directory, DEFAULT_MAX_LOG_BYTES);
+    }
+
+    /** Opens the store in {@code directory}, creating an empty one if it doesn't exist */
+    public DiskUTXOStore(Path directory, long maxLogBytes) throws IOException {
+        this.directory = directory;
+        this.maxLogBytes = maxLogBytes;
+        Files.createDirectories(directory);
+        Path snapshotFile = directory.resolve(SNAPSHOT_FILE);
+        Files.deleteIfExists(directory.resolve(SNAPSHOT_FILE + TEMP_SUFFIX));
+
+        MappedUTXOIndex snapshot = Files.exists(snapshotFile) ? MappedUTXOIndex.open(snapshotFile, codec) : null;
+        committed = snapshot != null ? new UTXOPool(snapshot) : new UTXOPool();
+        log = new UTXOLog(
+            directory.resolve(LOG_FILE), snapshot != null ? snapshot.sequence() : 0, committed, codec);
+    }
+
+    /** @return a copy of the pool as of the last commit */
+    public UTXOPool getUTXOPool() {
+        return new UTXOPool(committed);
+    }
+
+    /**
+     * Durably records that {@code acceptedTxs} were applied (in any order) to the pool of the last commit, resulting in
+     * {@code utxoPool}. Afterwards {@link #getUTXOPool()} should be used instead of {@code utxoPool}, as it may be
+     * backed by a new snapshot.
+     */
+    public void commit(Transaction[] acceptedTxs, UTXOPool utxoPool) throws IOException {
+        log.append(UndoRecord.of(Arrays.asList(acceptedTxs), committed), utxoPool);
+        committed = new UTXOPool(utxoPool);
+        if (log.size() > maxLogBytes) {
+            installSnapshot(log.lastSequence());
+        }
+    }
+
+    /** Durably replaces the whole UTXO set with {@code utxoPool} (e.g. to initialize the store) */
+    public void reset(UTXOPool utxoPool) throws IOException {
+        committed = new UTXOPool(utxoPool);
+        installSnapshot(log.lastSequence() + 1);
+    }
+
+    @Override
+    public void close() throws IOException {
+        log.close();
+    }
+
+    // ------------------------------------------------------------------
+    private void installSnapshot(long sequence) throws IOException {
+        Path snapshotFile = directory.resolve(SNAPSHOT_FILE);
+        Path tempFile = directory.resolve(SNAPSHOT_FILE + TEMP_SUFFIX);
+        Files.deleteIfExists(tempFile);
+        MappedUTXOIndex.write(tempFile, committed, sequence);
+        Files.move(tempFile, snapshotFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        forceDirectory();
+
+        //from here on the log commits up to sequence are skipped when opening
+        committed = new UTXOPool(MappedUTXOIndex.open(snapshotFile, codec));
+        log.reset(sequence);
+    }
+
+    /** Makes the rename durable, where supported (directories can't be opened on some platforms) */
+    private void forceDirectory() {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            //best effort
+        }
+    }
+}
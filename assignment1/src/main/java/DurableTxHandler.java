@@ -0,0 +1,81 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * {@link TxHandler} whose UTXO pool is persisted in a {@link DiskUTXOStore}: it starts from the pool of the last
+ * commit of the store and commits each handled block (streamed ones once they end) and each transaction applied alone,
+ * so a restarted process continues from the last block or transaction handled.
+ * <p>
+ * {@link #rollback Rolling back} replaces the whole UTXO set of the store with the rolled back pool, so it costs the
+ * size of the pool.
+ * <p>
+ * If committing fails {@link #handleTxs} (or {@link #applyTx}, or {@link #rollback}) throws an
+ * {@link UncheckedIOException} and the handler must be discarded, as the change is applied to its pool but not to the
+ * store.
+ */
+public class DurableTxHandler extends TxHandler {
+    private final DiskUTXOStore store;
+
+    public DurableTxHandler(DiskUTXOStore store) {
+        this(store, newBuilder());
+    }
+
+    /** Same as {@link #DurableTxHandler(DiskUTXOStore)} but with the options of {@code builder} */
+    public DurableTxHandler(DiskUTXOStore store, TxHandler.Builder builder) {
+        super(store.getUTXOPool(), builder);
+        this.store = store;
+    }
+
+    @Override
+    public Transaction[] handleTxs(Transaction[] possibleTxs) {
+        Transaction[] acceptedTxs = super.handleTxs(possibleTxs);
+        commit(acceptedTxs);
+        return acceptedTxs;
+    }
+
+    /** Same as {@link TxHandler#applyTx}, committing {@code tx} if applied */
+    @Override
+    public ValidationResult applyTx(Transaction tx) {
+        ValidationResult result = super.applyTx(tx);
+        if (result.isValid()) commit(new Transaction[] {tx});
+        return result;
+    }
+
+    /** Same as {@link TxHandler#rollback}, replacing the UTXO set of the store with the rolled back pool */
+    @Override
+    public void rollback(long epoch) {
+        super.rollback(epoch);
+        try {
+            store.reset(getUTXOPool());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't commit the rollback", e);
+        }
+        replaceUTXOPool(store.getUTXOPool());
+    }
+
+    /** Same as {@link TxHandler#handleTxs(Iterator, Consumer)}, committing the block once it ends */
+    @Override
+    public int handleTxs(Iterator<Transaction> possibleTxs, Consumer<Transaction> acceptedTxs) {
+        List<Transaction> block = new ArrayList<>();
+        int acceptedCount = super.handleTxs(possibleTxs, tx -> {
+            block.add(tx);
+            acceptedTxs.accept(tx);
+        });
+        commit(block.toArray(new Transaction[0]));
+        return acceptedCount;
+    }
+
+    private void commit(Transaction[] acceptedTxs) {
+        try {
+            store.commit(acceptedTxs, getUTXOPool());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't commit the block", e);
+        }
+        //may be backed by a new snapshot
+        replaceUTXOPool(store.getUTXOPool());
+    }
+}
@@ -0,0 +1,319 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.PublicKey;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
+
+/**
+ * Read-only UTXO index stored in a memory-mapped snapshot file, so opening it doesn't read the UTXOs and they don't
+ * need to fit in the heap (the OS pages them in and out as needed).
+ * <p>
+ * The file is an open addressing (linear probing) table with the same slot layout as {@link CompactUTXOIndex}:
+ * <pre>
+ * header   int magic, int version, long sequence, int capacity, int size, int addressCount, int overflowCount,
+ *          long addressesOffset, long overflowOffset
+ * slots    capacity * (byte hash length + 1 (0 if empty), long[4] hash, int output index, long value,
+ *          int address id)
+ * addresses  addressCount * long offset (from the start of the addresses), followed by each address: byte[] X.509
+ *            encoded
+ * overflow   overflowCount * (byte[] hash, int output index, long value, int address id)
+ * </pre>
+ * All integers are big-endian and arrays are preceded by their length. Slots are mapped in segments of
+ * {@link #SEGMENT_SLOTS}, while the addresses must fit in a single mapping (2GB). Addresses are decoded when first
+ * needed and UTXOs with hashes longer than 32 bytes are loaded in the heap.
+ */
+final class MappedUTXOIndex implements UTXOIndex {
+    private static final int MAGIC = 0x55545853; //"UTXS"
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 4 * Integer.BYTES + Long.BYTES + 2 * Integer.BYTES + 2 * Long.BYTES;
+    private static final int HASH_OFFSET = 1;
+    private static final int INDEX_OFFSET = HASH_OFFSET + CompactUTXOIndex.HASH_WORDS * Long.BYTES;
+    private static final int VALUE_OFFSET = INDEX_OFFSET + Integer.BYTES;
+    private static final int ADDRESS_OFFSET = VALUE_OFFSET + Long.BYTES;
+    private static final int SLOT_BYTES = ADDRESS_OFFSET + Integer.BYTES;
+    private static final int SEGMENT_SLOTS = 1 << 24;
+    private static final int NO_ADDRESS = -1;
+    /** outer instance of the outputs created by the index, which don't belong to an actual transaction */
+    private static final Transaction OUTPUTS_OWNER = new Transaction();
+
+    private final long sequence;
+    private final int capacity;
+    private final int size;
+    private final MappedByteBuffer[] segments;
+    private final MappedByteBuffer addresses;
+    private final PublicKey[] decodedAddresses;
+    private final Map<UTXO, Transaction.Output> overflow = new HashMap<>();
+    private final TransactionCodec codec;
+
+    private MappedUTXOIndex(FileChannel channel, TransactionCodec codec) throws IOException {
+        this.codec = codec;
+        ByteBuffer header = channel.map(READ_ONLY, 0, HEADER_BYTES);
+        if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+            throw new IOException("Not a UTXO snapshot (or unsupported version)");
+        }
+        sequence = header.getLong();
+        capacity = header.getInt();
+        size = header.getInt();
+        int addressCount = header.getInt();
+        int overflowCount = header.getInt();
+        long addressesOffset = header.getLong();
+        long overflowOffset = header.getLong();
+
+        segments = mapSegments(channel, READ_ONLY, capacity);
+        addresses = channel.map(READ_ONLY, addressesOffset, overflowOffset - addressesOffset);
+        decodedAddresses = new PublicKey[addressCount];
+
+        ByteBuffer overflowData = channel.map(READ_ONLY, overflowOffset, channel.size() - overflowOffset);
+        for (int i = 0; i < overflowCount; i++) {
+            UTXO utxo = new UTXO(TransactionCodec.getArray(overflowData), overflowData.getInt());
+            overflow.put(utxo, output(overflowData.getLong(), overflowData.getInt()));
+        }
+    }
+
+    /** Maps the snapshot {@code file}, decoding its addresses with {@code codec} (used from a single thread) */
+    static MappedUTXOIndex open(Path file, TransactionCodec codec) throws IOException {
+        //mappings stay valid once the channel is closed
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new MappedUTXOIndex(channel, codec);
+        }
+    }
+
+    /**
+     * Writes a snapshot with the UTXOs of {@code utxoPool} to {@code file}, which must not exist, and forces it to
+     * the storage device. {@code sequence} identifies the state of the pool.
+     */
+    static void write(Path file, UTXOPool utxoPool, long sequence) throws IOException {
+        //1st pass: sizes and address ids
+        int[] packedCount = {0};
+        Map<PublicKey, Integer> addressIds = new HashMap<>();
+        Map<UTXO, Transaction.Output> overflow = new HashMap<>();
+        utxoPool.forEach((utxo, output) -> {
+            if (output.address != null) addressIds.putIfAbsent(output.address, addressIds.size());
+            if (CompactUTXOIndex.isPackable(utxo)) {
+                ++packedCount[0];
+            } else {
+                overflow.put(utxo, output);
+            }
+        });
+        byte[][] encodedAddresses = new byte[addressIds.size()][];
+        addressIds.forEach((address, id) -> encodedAddresses[id] = address.getEncoded());
+
+        int capacity = Integer.highestOneBit(Math.max(16, packedCount[0] * 2 - 1)) * 2;
+        long addressesOffset = HEADER_BYTES + (long) capacity * SLOT_BYTES;
+        long addressesSize = (long) encodedAddresses.length * Long.BYTES;
+        for (byte[] encoded : encodedAddresses) {
+            addressesSize += TransactionCodec.arraySize(encoded);
+        }
+        if (addressesSize > Integer.MAX_VALUE) throw new IOException("Too many addresses for a snapshot");
+        long overflowOffset = addressesOffset + addressesSize;
+
+        try (FileChannel channel = FileChannel.open(
+            file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE))
+        {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(VERSION).putLong(sequence).putInt(capacity).putInt(packedCount[0])
+                .putInt(encodedAddresses.length).putInt(overflow.size()).putLong(addressesOffset)
+                .putLong(overflowOffset);
+            header.flip();
+            channel.write(header, 0);
+
+            //2nd pass: slots
+            MappedByteBuffer[] segments = mapSegments(channel, READ_WRITE, capacity);
+            utxoPool.forEach((utxo, output) -> {
+                if (! CompactUTXOIndex.isPackable(utxo)) return;
+
+                byte[] hash = utxo.getTxHash();
+                long w0 = CompactUTXOIndex.word(hash, 0), w1 = CompactUTXOIndex.word(hash, 1);
+                long w2 = CompactUTXOIndex.word(hash, 2), w3 = CompactUTXOIndex.word(hash, 3);
+                byte length = (byte) (hash.length + 1);
+                int slot = slotFor(capacity, length, w0, w1, w2, w3, utxo.getIndex());
+                while (segment(segments, slot).get(offset(slot)) != 0) slot = (slot + 1) & (capacity - 1);
+
+                ByteBuffer segment = segment(segments, slot);
+                int offset = offset(slot);
+                segment.put(offset, length);
+                segment.putLong(offset + HASH_OFFSET, w0).putLong(offset + HASH_OFFSET + 8, w1)
+                    .putLong(offset + HASH_OFFSET + 16, w2).putLong(offset + HASH_OFFSET + 24, w3);
+                segment.putInt(offset + INDEX_OFFSET, utxo.getIndex());
+                segment.putLong(offset + VALUE_OFFSET, output.value);
+                segment.putInt(offset + ADDRESS_OFFSET, addressId(addressIds, output));
+            });
+            for (MappedByteBuffer segment : segments) {
+                segment.force();
+            }
+
+            ByteBuffer data = ByteBuffer.allocate((int) addressesSize);
+            long addressOffset = (long) encodedAddresses.length * Long.BYTES;
+            for (byte[] encoded : encodedAddresses) {
+                data.putLong(addressOffset);
+                addressOffset += TransactionCodec.arraySize(encoded);
+            }
+            for (byte[] encoded : encodedAddresses) {
+                TransactionCodec.putArray(data, encoded);
+            }
+            data.flip();
+            writeFully(channel, data, addressesOffset);
+
+            for (Map.Entry<UTXO, Transaction.Output> entry : overflow.entrySet()) {
+                Transaction.Output output = entry.getValue();
+                data = ByteBuffer.allocate(TransactionCodec.arraySize(entry.getKey().getTxHash()) + 16);
+                TransactionCodec.putArray(data, entry.getKey().getTxHash());
+                data.putInt(entry.getKey().getIndex());
+                data.putLong(output.value);
+                data.putInt(addressId(addressIds, output));
+                data.flip();
+                overflowOffset += writeFully(channel, data, overflowOffset);
+            }
+            channel.force(true);
+        }
+    }
+
+    /** @return the sequence the snapshot was written with */
+    long sequence() {
+        return sequence;
+    }
+
+    @Override
+    public int size() {
+        return size + overflow.size();
+    }
+
+    @Override
+    public boolean containsKey(UTXO utxo) {
+        if (! CompactUTXOIndex.isPackable(utxo)) return overflow.containsKey(utxo);
+        return findSlot(utxo.getTxHash(), utxo.getIndex()) >= 0;
+    }
+
+    /** @return the output of {@code utxo} (a new instance on each call), or null if it is not in the index */
+    @Override
+    public Transaction.Output get(UTXO utxo) {
+        if (! CompactUTXOIndex.isPackable(utxo)) return overflow.get(utxo);
+
+        int slot = findSlot(utxo.getTxHash(), utxo.getIndex());
+        return slot >= 0 ? outputAt(slot) : null;
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super UTXO, ? super Transaction.Output> action) {
+        for (int slot = 0; slot < capacity; slot++) {
+            if (segment(segments, slot).get(offset(slot)) != 0) action.accept(utxoAt(slot), outputAt(slot));
+        }
+        overflow.forEach(action);
+    }
+
+    @Override
+    public void forEachUTXO(Consumer<? super UTXO> action) {
+        for (int slot = 0; slot < capacity; slot++) {
+            if (segment(segments, slot).get(offset(slot)) != 0) action.accept(utxoAt(slot));
+        }
+        overflow.keySet().forEach(action);
+    }
+
+    // ------------------------------------------------------------------
+    private static MappedByteBuffer[] mapSegments(FileChannel channel, FileChannel.MapMode mode, int capacity)
+        throws IOException
+    {
+        MappedByteBuffer[] segments = new MappedByteBuffer[(capacity + SEGMENT_SLOTS - 1) / SEGMENT_SLOTS];
+        for (int i = 0; i < segments.length; i++) {
+            int slots = Math.min(SEGMENT_SLOTS, capacity - i * SEGMENT_SLOTS);
+            segments[i] = channel.map(mode, HEADER_BYTES + (long) i * SEGMENT_SLOTS * SLOT_BYTES,
+                (long) slots * SLOT_BYTES);
+        }
+        return segments;
+    }
+
+    private static ByteBuffer segment(ByteBuffer[] segments, int slot) {
+        return segments[slot / SEGMENT_SLOTS];
+    }
+
+    private static int offset(int slot) {
+        return (slot % SEGMENT_SLOTS) * SLOT_BYTES;
+    }
+
+    /** Slot hash function, part of the file format */
+    private static int slotFor(int capacity, byte length, long w0, long w1, long w2, long w3, int index) {
+        long h = index * 0x9E3779B97F4A7C15L + length;
+        h = (h ^ w0) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ w1) * 0x94D049BB133111EBL;
+        h = (h ^ w2) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ w3) * 0x94D049BB133111EBL;
+        h ^= h >>> 31;
+        return (int) h & (capacity - 1);
+    }
+
+    private static int addressId(Map<PublicKey, Integer> addressIds, Transaction.Output output) {
+        return output.address != null ? addressIds.get(output.address) : NO_ADDRESS;
+    }
+
+    private static int writeFully(FileChannel channel, ByteBuffer data, long position) throws IOException {
+        int written = 0;
+        while (data.hasRemaining()) {
+            written += channel.write(data, position + written);
+        }
+        return written;
+    }
+
+    /** @return the slot of the UTXO, or -1 if it is not in the index */
+    private int findSlot(byte[] hash, int index) {
+        byte length = (byte) (hash.length + 1);
+        long w0 = CompactUTXOIndex.word(hash, 0), w1 = CompactUTXOIndex.word(hash, 1);
+        long w2 = CompactUTXOIndex.word(hash, 2), w3 = CompactUTXOIndex.word(hash, 3);
+        for (int slot = slotFor(capacity, length, w0, w1, w2, w3, index); ; slot = (slot + 1) & (capacity - 1)) {
+            ByteBuffer segment = segment(segments, slot);
+            int offset = offset(slot);
+            byte slotLength = segment.get(offset);
+            if (slotLength == 0) return -1;
+
+            if (slotLength == length && segment.getInt(offset + INDEX_OFFSET) == index
+                && segment.getLong(offset + HASH_OFFSET) == w0
+                && segment.getLong(offset + HASH_OFFSET + 8) == w1
+                && segment.getLong(offset + HASH_OFFSET + 16) == w2
+                && segment.getLong(offset + HASH_OFFSET + 24) == w3) {
+                return slot;
+            }
+        }
+    }
+
+    private UTXO utxoAt(int slot) {
+        ByteBuffer segment = segment(segments, slot);
+        int offset = offset(slot);
+        byte[] hash = new byte[segment.get(offset) - 1];
+        for (int i = 0; i < hash.length; i++) {
+            hash[i] = segment.get(offset + HASH_OFFSET + i);
+        }
+        return new UTXO(hash, segment.getInt(offset + INDEX_OFFSET));
+    }
+
+    private Transaction.Output outputAt(int slot) {
+        ByteBuffer segment = segment(segments, slot);
+        int offset = offset(slot);
+        return output(segment.getLong(offset + VALUE_OFFSET), segment.getInt(offset + ADDRESS_OFFSET));
+    }
+
+    private Transaction.Output output(long value, int addressId) {
+        PublicKey address = addressId != NO_ADDRESS ? address(addressId) : null;
+        return OUTPUTS_OWNER.new Output(value, address);
+    }
+
+    private PublicKey address(int id) {
+        PublicKey address = decodedAddresses[id];
+        if (address == null) {
+            ByteBuffer data = addresses.duplicate();
+            data.position((int) data.getLong(id * Long.BYTES));
+            synchronized (codec) {
+                address = codec.decodeKey(TransactionCodec.getArray(data));
+            }
+            decodedAddresses[id] = address;
+        }
+        return address;
+    }
+}
@@ -0,0 +1,10 @@
+/**
+ * {@link TxHandler} which, instead of accepting transactions in the proposed order, selects the mutually valid set
+ * with the highest total fee it can find (see {@link MaxFeeValidationEngine}).
+ */
+public class MaxFeeTxHandler extends TxHandler {
+
+    public MaxFeeTxHandler(UTXOPool utxoPool) {
+        super(utxoPool, newBuilder().validationEngine(new MaxFeeValidationEngine()));
+    }
+}
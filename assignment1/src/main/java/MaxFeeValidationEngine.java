@@ -0,0 +1,236 @@
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * Selects the transactions of a block trying to maximize the total fee (sum of the inputs minus sum of the outputs of
+ * each transaction), using the ancestor package fee rate heuristic.
+ * <p>
+ * A transaction can only be accepted along with the in-block transactions it depends on, so each one is ranked by the
+ * fee rate (fee per byte of {@link Transaction#getRawTx()}) of its package: itself plus its ancestors not accepted yet.
+ * The best ranked package is validated (parents first) and, if all its transactions are valid, accepted; the packages
+ * including any of them are then ranked again without them. If the package is not valid, it can't be valid later
+ * either (it only spends outputs of the pool, which can only get spent, and its own outputs), so the transaction is
+ * discarded along with its descendants. Double spends are then resolved in favour of the best ranked package.
+ * <p>
+ * Ranking a transaction requires walking its ancestors (and accepting it, walking its descendants), so the cost is
+ * linear in the block size for shallow dependency chains.
+ */
+class MaxFeeValidationEngine implements BlockValidationEngine {
+
+    @Override
+    public Result validate(
+        Transaction[] possibleTxs, Map<ByteBuffer, Transaction> idToTx, UTXOPool utxoPool, TxCheck txCheck)
+    {
+        return new Selection(possibleTxs, utxoPool, txCheck).run();
+    }
+
+    // ------------------------------------------------------------------
+    private static class Selection {
+        private final Transaction[] txs;
+        private final TxCheck txCheck;
+        private final TopologicalValidationEngine.DependencyGraph graph;
+        private final TopologicalValidationEngine.DependencyWalk walk;
+        private final UTXOPool workingPool;
+        private final TopologicalValidationEngine.UndoLog undoLog;
+
+        /** fee of each tx, in satoshis */
+        private final long[] fees;
+        private final int[] sizes;
+        /**
+         * fee and size of each tx plus its ancestors which are not accepted yet (fees are only used for ranking, so
+         * they are summed as doubles, which can't overflow)
+         */
+        private final double[] packageFees;
+        private final long[] packageSizes;
+        /** incremented each time the package of a tx changes, to discard outdated queue entries */
+        private final int[] versions;
+        private final boolean[] accepted;
+        private final boolean[] discarded;
+        private final PriorityQueue<Candidate> queue = new PriorityQueue<>();
+
+        Selection(Transaction[] txs, UTXOPool utxoPool, TxCheck txCheck) {
+            this.txs = txs;
+            this.txCheck = txCheck;
+            this.graph = new TopologicalValidationEngine.DependencyGraph(txs);
+            this.walk = new TopologicalValidationEngine.DependencyWalk(graph);
+            this.workingPool = new UTXOPool(utxoPool);
+            this.undoLog = new TopologicalValidationEngine.UndoLog(workingPool);
+
+            fees = new long[txs.length];
+            sizes = new int[txs.length];
+            packageFees = new double[txs.length];
+            packageSizes = new long[txs.length];
+            versions = new int[txs.length];
+            accepted = new boolean[txs.length];
+            discarded = graph.findUnresolvable();
+        }
+
+        Result run() {
+            computeFees(workingPool);
+            for (int i = 0; i < txs.length; i++) {
+                if (discarded[i]) continue;
+
+                for (PrimitiveIterator.OfInt it = walk.parentsFirst(i, discarded); it.hasNext(); ) {
+                    int idx = it.nextInt();
+                    packageFees[i] += fees[idx];
+                    packageSizes[i] += sizes[idx];
+                }
+                queue.add(new Candidate(i));
+            }
+
+            while (! queue.isEmpty()) {
+                Candidate best = queue.poll();
+                if (best.version == versions[best.txIdx] && ! accepted[best.txIdx] && ! discarded[best.txIdx]) {
+                    tryPackage(best.txIdx);
+                }
+            }
+
+            List<Transaction> result = new ArrayList<>();
+            for (int i = 0; i < txs.length; i++) {
+                if (accepted[i]) result.add(txs[i]);
+            }
+            return new Result(result, workingPool);
+        }
+
+        /**
+         * Computes the fee of each tx, discarding the ones spending outputs which don't exist or exceed the inputs (or
+         * whose amounts overflow)
+         */
+        private void computeFees(UTXOPool utxoPool) {
+            for (int i = 0; i < txs.length; i++) {
+                sizes[i] = txs[i].getRawTx().length;
+                try {
+                    fees[i] = fee(i, utxoPool);
+                } catch (ArithmeticException e) {
+                    fees[i] = -1;
+                }
+                if (fees[i] < 0) discarded[i] = true;
+            }
+            //descendants of discarded txs can't be valid either
+            for (int i = 0; i < txs.length; i++) {
+                if (discarded[i]) discardDescendants(i);
+            }
+        }
+
+        /** @return fee of tx {@code txIdx}, or -1 if it spends an output which doesn't exist */
+        private long fee(int txIdx, UTXOPool utxoPool) {
+            Transaction tx = txs[txIdx];
+            long fee = 0;
+            for (Transaction.Input input : tx.getInputs()) {
+                Transaction.Output spent = input.prevTxHash != null
+                    ? utxoPool.getTxOutput(new UTXO(input.prevTxHash, input.outputIndex))
+                    : null;
+                if (spent == null) {
+                    spent = findInBlockOutput(txIdx, input);
+                }
+                if (spent == null) return -1;
+                fee = Math.addExact(fee, spent.value);
+            }
+            for (Transaction.Output output : tx.getOutputs()) {
+                fee = Math.subtractExact(fee, output.value);
+            }
+            return fee;
+        }
+
+        private Transaction.Output findInBlockOutput(int txIdx, Transaction.Input input) {
+            for (int parent : graph.parents[txIdx]) {
+                if (Arrays.equals(txs[parent].getHash(), input.prevTxHash)) {
+                    return txs[parent].getOutput(input.outputIndex);
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Validates {@code txIdx} along with its ancestors not accepted yet, accepting them if all are valid.
+         * Otherwise {@code txIdx} is discarded: the package only depends on outputs of the pool (which can only be
+         * spent by the txs accepted later) and its own outputs, so it can't be valid later either. Its ancestors may
+         * still be valid by themselves.
+         */
+        private void tryPackage(int txIdx) {
+            int undoMark = undoLog.size();
+            List<Integer> tried = new ArrayList<>();
+            for (PrimitiveIterator.OfInt it = walk.parentsFirst(txIdx, accepted); it.hasNext(); ) {
+                int idx = it.nextInt();
+                if (! txCheck.isValid(txs[idx], workingPool)) {
+                    undoLog.rollback(undoMark);
+                    discarded[txIdx] = true;
+                    discardDescendants(txIdx);
+                    return;
+                }
+                undoLog.apply(txs[idx]);
+                tried.add(idx);
+            }
+
+            undoLog.commit();
+            for (int idx : tried) {
+                accepted[idx] = true;
+            }
+            for (int idx : tried) {
+                updateDescendantPackages(idx);
+            }
+        }
+
+        /** Removes the (just accepted) {@code txIdx} from the packages of its descendants, ranking them again */
+        private void updateDescendantPackages(int txIdx) {
+            forEachDescendant(txIdx, idx -> {
+                if (discarded[idx]) return false;
+                //accepted along with txIdx, but its descendants may also depend on txIdx
+                if (accepted[idx]) return true;
+
+                packageFees[idx] -= fees[txIdx];
+                packageSizes[idx] -= sizes[txIdx];
+                ++versions[idx];
+                queue.add(new Candidate(idx));
+                return true;
+            });
+        }
+
+        private void discardDescendants(int txIdx) {
+            forEachDescendant(txIdx, idx -> {
+                //the descendants of already discarded txs are discarded along with them
+                if (discarded[idx]) return false;
+                discarded[idx] = true;
+                return true;
+            });
+        }
+
+        /** Visits each descendant of {@code txIdx} once, not going further from the ones {@code visitor} rejects */
+        private void forEachDescendant(int txIdx, DescendantVisitor visitor) {
+            Set<Integer> visited = new HashSet<>();
+            Deque<Integer> pending = new ArrayDeque<>();
+            pending.push(txIdx);
+            while (! pending.isEmpty()) {
+                for (int child : graph.children[pending.pop()]) {
+                    if (visited.add(child) && visitor.visit(child)) {
+                        pending.push(child);
+                    }
+                }
+            }
+        }
+
+        private interface DescendantVisitor {
+            /** @return true to continue with the descendants of {@code txIdx} */
+            boolean visit(int txIdx);
+        }
+
+        /** Queue entry, the best ranked (highest package fee rate, then first proposed) first */
+        private class Candidate implements Comparable<Candidate> {
+            private final int txIdx;
+            private final int version;
+            private final double feeRate;
+
+            Candidate(int txIdx) {
+                this.txIdx = txIdx;
+                this.version = versions[txIdx];
+                this.feeRate = packageSizes[txIdx] > 0 ? packageFees[txIdx] / packageSizes[txIdx] : packageFees[txIdx];
+            }
+
+            @Override
+            public int compareTo(Candidate other) {
+                int byFeeRate = Double.compare(other.feeRate, feeRate);
+                return byFeeRate != 0 ? byFeeRate : Integer.compare(txIdx, other.txIdx);
+            }
+        }
+    }
+}
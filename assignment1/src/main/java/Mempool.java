@@ -0,0 +1,210 @@
+import java.nio.ByteBuffer;
+import java.util.*;
+
+import static java.nio.ByteBuffer.wrap;
+
+/**
+ * Long-lived pool of pending transactions which validates them one at a time, as they arrive, on top of a
+ * {@link TxHandler} (so its UTXOPool always reflects the accepted transactions). Transactions are applied with
+ * {@link TxHandler#applyTx}, so they don't end epochs of the handler, which must not have an undo journal.
+ * <p>
+ * Transactions spending outputs of transactions not seen yet are kept as orphans, indexed by the missing parents, and
+ * are validated again as soon as all of them arrive. At most {@code maxOrphans} orphans are kept, evicting the oldest
+ * ones when needed.
+ * <p>
+ * The last {@code maxAccepted} transactions accepted are remembered, even once taken, along with the outputs they
+ * spent: a transaction spending an output they spent, or an output of theirs which is not in the pool, is rejected
+ * instead of kept as orphan (so double spends can't flush the orphans). Outputs spent by older transactions are not
+ * distinguished from the ones not seen yet, so such transactions stay as orphans until evicted.
+ * <p>
+ * At most {@code maxAccepted} accepted transactions wait to be taken (plus the orphans accepted along with them), the
+ * ones submitted meanwhile are {@link Status#FULL}.
+ */
+public class Mempool {
+    public enum Status {
+        /** valid for the current pool, so it was applied to it */
+        ACCEPTED,
+        /** kept until its missing parents arrive */
+        ORPHAN,
+        /** invalid for the current pool */
+        REJECTED,
+        /** accepted recently (see {@link Mempool}) or kept as orphan */
+        DUPLICATE,
+        /** not validated, as {@code maxAccepted} accepted transactions wait to be {@link #takeAccepted() taken} */
+        FULL
+    }
+
+    public static final int DEFAULT_MAX_ACCEPTED = 100_000;
+
+    private final TxHandler txHandler;
+    private final int maxOrphans;
+    private final int maxAccepted;
+    /** accepted since the last {@link #takeAccepted()}, in acceptance order */
+    private List<Transaction> pending = new ArrayList<>();
+    /** last {@link #maxAccepted} accepted, by hash, oldest first */
+    private final LinkedHashMap<ByteBuffer, Transaction> accepted = new LinkedHashMap<>();
+    /** hash of the transaction of {@link #accepted} spending each output */
+    private final Map<UTXO, ByteBuffer> spentBy = new HashMap<>();
+    /** orphans by hash, oldest first */
+    private final LinkedHashMap<ByteBuffer, Orphan> orphans = new LinkedHashMap<>();
+    /** hashes of the orphans waiting for each missing parent */
+    private final Map<ByteBuffer, Set<ByteBuffer>> orphansByParent = new HashMap<>();
+
+    /**
+     * Creates a mempool over {@code txHandler}, which is used (and updated) to validate each transaction, remembering
+     * {@link #DEFAULT_MAX_ACCEPTED} accepted transactions
+     */
+    public Mempool(TxHandler txHandler, int maxOrphans) {
+        this(txHandler, maxOrphans, DEFAULT_MAX_ACCEPTED);
+    }
+
+    /** Same as {@link #Mempool(TxHandler, int)}, remembering {@code maxAccepted} accepted transactions */
+    public Mempool(TxHandler txHandler, int maxOrphans, int maxAccepted) {
+        if (maxAccepted < 1) throw new IllegalArgumentException("maxAccepted must be positive: " + maxAccepted);
+
+        this.txHandler = txHandler;
+        this.maxOrphans = maxOrphans;
+        this.maxAccepted = maxAccepted;
+    }
+
+    /** Same as {@link #Mempool(TxHandler, int)} with a new {@link TxHandler} for {@code utxoPool} */
+    public Mempool(UTXOPool utxoPool, int maxOrphans) {
+        this(new TxHandler(utxoPool), maxOrphans);
+    }
+
+    /**
+     * Validates {@code tx} for the current pool, applying it if valid. If accepted, the orphans waiting for it are
+     * validated again (and so on for the ones accepted).
+     */
+    public Status submit(Transaction tx) {
+        ByteBuffer txId = wrap(tx.getHash());
+        if (accepted.containsKey(txId) || orphans.containsKey(txId)) return Status.DUPLICATE;
+        if (pending.size() >= maxAccepted) return Status.FULL;
+
+        Status status = validate(tx);
+        if (status == Status.ACCEPTED) {
+            promoteOrphansOf(txId);
+        }
+        return status;
+    }
+
+    /** @return the transactions accepted since the last call, in the order they were accepted */
+    public List<Transaction> takeAccepted() {
+        List<Transaction> result = pending;
+        pending = new ArrayList<>();
+        return result;
+    }
+
+    /** @return the current UTXO pool, which must not be modified */
+    public UTXOPool getUTXOPool() {
+        return txHandler.getUTXOPool();
+    }
+
+    public int orphanCount() {
+        return orphans.size();
+    }
+
+    // ------------------------------------------------------------------
+    private static class Orphan {
+        private final Transaction tx;
+        private final Set<ByteBuffer> missingParents;
+
+        Orphan(Transaction tx, Set<ByteBuffer> missingParents) {
+            this.tx = tx;
+            this.missingParents = missingParents;
+        }
+    }
+
+    private Status validate(Transaction tx) {
+        Set<ByteBuffer> missingParents = findMissingParents(tx);
+        if (! missingParents.isEmpty()) {
+            addOrphan(tx, missingParents);
+            return Status.ORPHAN;
+        }
+
+        if (! txHandler.applyTx(tx).isValid()) return Status.REJECTED;
+
+        addAccepted(tx);
+        return Status.ACCEPTED;
+    }
+
+    /**
+     * @return hashes of the txs {@code tx} spends from which are unknown (neither in the pool nor accepted). Outputs
+     *         known to be spent or missing are left for the handler to reject.
+     */
+    private Set<ByteBuffer> findMissingParents(Transaction tx) {
+        Set<ByteBuffer> missingParents = new HashSet<>();
+        UTXOPool utxoPool = txHandler.getUTXOPool();
+        for (Transaction.Input input : tx.getInputs()) {
+            if (input.prevTxHash == null) continue;
+            UTXO utxo = new UTXO(input.prevTxHash, input.outputIndex);
+            if (utxoPool.contains(utxo) || spentBy.containsKey(utxo)) continue;
+
+            ByteBuffer parentId = wrap(input.prevTxHash);
+            if (! accepted.containsKey(parentId)) {
+                missingParents.add(parentId);
+            }
+        }
+        return missingParents;
+    }
+
+    private void addAccepted(Transaction tx) {
+        pending.add(tx);
+        if (accepted.size() >= maxAccepted) {
+            Iterator<Map.Entry<ByteBuffer, Transaction>> oldest = accepted.entrySet().iterator();
+            Map.Entry<ByteBuffer, Transaction> forgotten = oldest.next();
+            oldest.remove();
+            for (Transaction.Input input : forgotten.getValue().getInputs()) {
+                spentBy.remove(new UTXO(input.prevTxHash, input.outputIndex), forgotten.getKey());
+            }
+        }
+
+        ByteBuffer txId = wrap(tx.getHash());
+        accepted.put(txId, tx);
+        for (Transaction.Input input : tx.getInputs()) {
+            spentBy.put(new UTXO(input.prevTxHash, input.outputIndex), txId);
+        }
+    }
+
+    private void addOrphan(Transaction tx, Set<ByteBuffer> missingParents) {
+        if (maxOrphans <= 0) return;
+        if (orphans.size() >= maxOrphans) {
+            removeOrphan(orphans.keySet().iterator().next());
+        }
+
+        ByteBuffer txId = wrap(tx.getHash());
+        orphans.put(txId, new Orphan(tx, missingParents));
+        for (ByteBuffer parentId : missingParents) {
+            orphansByParent.computeIfAbsent(parentId, k -> new LinkedHashSet<>()).add(txId);
+        }
+    }
+
+    private Orphan removeOrphan(ByteBuffer txId) {
+        Orphan orphan = orphans.remove(txId);
+        for (ByteBuffer parentId : orphan.missingParents) {
+            Set<ByteBuffer> siblings = orphansByParent.get(parentId);
+            siblings.remove(txId);
+            if (siblings.isEmpty()) orphansByParent.remove(parentId);
+        }
+        return orphan;
+    }
+
+    private void promoteOrphansOf(ByteBuffer acceptedId) {
+        Deque<ByteBuffer> parents = new ArrayDeque<>();
+        parents.add(acceptedId);
+        while (! parents.isEmpty()) {
+            Set<ByteBuffer> waiting = orphansByParent.get(parents.poll());
+            if (waiting == null) continue;
+
+            for (ByteBuffer orphanId : new ArrayList<>(waiting)) {
+                if (! orphans.containsKey(orphanId)) continue;
+
+                Orphan orphan = removeOrphan(orphanId);
+                //validated again from scratch, it may still be missing other parents
+                if (validate(orphan.tx) == Status.ACCEPTED) {
+                    parents.add(orphanId);
+                }
+            }
+        }
+    }
+}
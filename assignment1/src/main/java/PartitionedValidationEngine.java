@@ -0,0 +1,209 @@
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import static java.nio.ByteBuffer.wrap;
+
+/**
+ * Validates the transactions of a block in parallel, splitting them into independent groups which are validated
+ * concurrently by another engine.
+ * <p>
+ * Two transactions are in the same group if one spends an output of the other, or both claim the same output
+ * (transitively, using a union-find over the transactions). Transactions of different groups can't affect each other,
+ * so each group is accepted or rejected exactly as it would be along with the whole block, and the accepted set is the
+ * same (and as deterministic) as the one of the engine validating the groups on its own, regardless of the number of
+ * threads. Groups are packed into a few batches of similar size, each one validated (as a block) against its own
+ * copy of the pool, and the changes of the accepted transactions are finally applied to a single pool.
+ * <p>
+ * The {@link BlockValidationEngine.TxCheck} must be thread-safe, as the one used by {@link TxHandler}.
+ */
+class PartitionedValidationEngine implements BlockValidationEngine {
+    /** batches per thread, so a batch of slow transactions is balanced by the rest */
+    private static final int BATCHES_PER_THREAD = 4;
+
+    private final ForkJoinPool pool;
+    private final BlockValidationEngine groupEngine;
+
+    /** Creates an engine validating each group with a {@link TopologicalValidationEngine} */
+    PartitionedValidationEngine(ForkJoinPool pool) {
+        this(pool, new TopologicalValidationEngine());
+    }
+
+    /** Creates an engine validating the groups on {@code pool} with {@code groupEngine} */
+    PartitionedValidationEngine(ForkJoinPool pool, BlockValidationEngine groupEngine) {
+        this.pool = pool;
+        this.groupEngine = groupEngine;
+    }
+
+    @Override
+    public Result validate(
+        Transaction[] possibleTxs, Map<ByteBuffer, Transaction> idToTx, UTXOPool utxoPool, TxCheck txCheck)
+    {
+        return validate(possibleTxs, idToTx, utxoPool, txCheck, TxHandlerMetrics.NONE);
+    }
+
+    @Override
+    public Result validate(
+        Transaction[] possibleTxs, Map<ByteBuffer, Transaction> idToTx, UTXOPool utxoPool, TxCheck txCheck,
+        TxHandlerMetrics metrics)
+    {
+        List<int[]> batches = batches(groups(possibleTxs), pool.getParallelism() * BATCHES_PER_THREAD);
+        //copied here, as copying marks the pool as shared
+        UTXOPool[] batchPools = new UTXOPool[batches.size()];
+        for (int i = 0; i < batchPools.length; i++) {
+            batchPools[i] = new UTXOPool(utxoPool);
+        }
+
+        boolean[] accepted = new boolean[possibleTxs.length];
+        pool.submit(() -> IntStream.range(0, batches.size()).parallel().forEach(b -> {
+            int[] batch = batches.get(b);
+            Transaction[] batchTxs = new Transaction[batch.length];
+            Map<ByteBuffer, Transaction> batchIdToTx = new HashMap<>(batch.length * 2);
+            for (int i = 0; i < batch.length; i++) {
+                batchTxs[i] = possibleTxs[batch[i]];
+                batchIdToTx.put(wrap(batchTxs[i].getHash()), batchTxs[i]);
+            }
+            Set<Transaction> batchAccepted = Collections.newSetFromMap(new IdentityHashMap<>());
+            batchAccepted.addAll(groupEngine.validate(batchTxs, batchIdToTx, batchPools[b], txCheck, metrics).accepted);
+            for (int i = 0; i < batch.length; i++) {
+                //batches are disjoint, so each slot is written by a single task
+                accepted[batch[i]] = batchAccepted.contains(batchTxs[i]);
+            }
+        })).join();
+
+        return merge(possibleTxs, accepted, utxoPool);
+    }
+
+    // ------------------------------------------------------------------
+    /** @return the indexes of the txs of each group, in the proposed order (and groups by their first tx) */
+    private static List<int[]> groups(Transaction[] txs) {
+        UnionFind sets = new UnionFind(txs.length);
+        Map<ByteBuffer, Integer> txIdxs = new HashMap<>(txs.length * 2);
+        for (int i = 0; i < txs.length; i++) {
+            txIdxs.put(wrap(txs[i].getHash()), i);
+        }
+        Map<UTXO, Integer> claimants = new HashMap<>();
+        for (int i = 0; i < txs.length; i++) {
+            for (Transaction.Input input : txs[i].getInputs()) {
+                if (input.prevTxHash == null) continue;
+
+                Integer parent = txIdxs.get(wrap(input.prevTxHash));
+                if (parent != null) sets.union(i, parent);
+                Integer claimant = claimants.putIfAbsent(new UTXO(input.prevTxHash, input.outputIndex), i);
+                if (claimant != null) sets.union(i, claimant);
+            }
+        }
+
+        Map<Integer, List<Integer>> byRoot = new LinkedHashMap<>();
+        for (int i = 0; i < txs.length; i++) {
+            byRoot.computeIfAbsent(sets.find(i), k -> new ArrayList<>()).add(i);
+        }
+        List<int[]> groups = new ArrayList<>(byRoot.size());
+        for (List<Integer> group : byRoot.values()) {
+            groups.add(group.stream().mapToInt(Integer::intValue).toArray());
+        }
+        return groups;
+    }
+
+    /**
+     * @return at most {@code maxBatches} batches of whole {@code groups}, largest groups first to the smallest batch
+     * (each batch sorted, so its txs keep the proposed order).
+     */
+    private static List<int[]> batches(List<int[]> groups, int maxBatches) {
+        int batchCount = Math.max(1, Math.min(maxBatches, groups.size()));
+        List<int[]> bySize = new ArrayList<>(groups);
+        bySize.sort((a, b) -> Integer.compare(b.length, a.length));
+
+        PriorityQueue<Batch> smallestFirst = new PriorityQueue<>(
+            Comparator.comparingInt((Batch b) -> b.size).thenComparingInt(b -> b.id));
+        for (int i = 0; i < batchCount; i++) {
+            smallestFirst.add(new Batch(i));
+        }
+        for (int[] group : bySize) {
+            Batch batch = smallestFirst.poll();
+            batch.groups.add(group);
+            batch.size += group.length;
+            smallestFirst.add(batch);
+        }
+
+        List<int[]> batches = new ArrayList<>(batchCount);
+        for (Batch batch : smallestFirst) {
+            int[] txIdxs = batch.groups.stream().flatMapToInt(Arrays::stream).sorted().toArray();
+            if (txIdxs.length > 0) batches.add(txIdxs);
+        }
+        return batches;
+    }
+
+    /** @return the result of applying the {@code accepted} txs to (a copy of) {@code utxoPool} */
+    private static Result merge(Transaction[] possibleTxs, boolean[] accepted, UTXOPool utxoPool) {
+        List<Transaction> acceptedTxs = new ArrayList<>();
+        //outputs spent by other accepted txs are neither added nor removed, so long chains don't churn the pool
+        Map<UTXO, Transaction.Output> created = new LinkedHashMap<>();
+        for (int i = 0; i < possibleTxs.length; i++) {
+            if (! accepted[i]) continue;
+
+            Transaction tx = possibleTxs[i];
+            acceptedTxs.add(tx);
+            for (int o = 0; o < tx.numOutputs(); o++) {
+                created.put(new UTXO(tx.getHash(), o), tx.getOutput(o));
+            }
+        }
+        UTXOPool resultPool = new UTXOPool(utxoPool);
+        for (Transaction tx : acceptedTxs) {
+            for (Transaction.Input input : tx.getInputs()) {
+                UTXO utxo = new UTXO(input.prevTxHash, input.outputIndex);
+                if (created.remove(utxo) == null) resultPool.removeUTXO(utxo);
+            }
+        }
+        created.forEach(resultPool::addUTXO);
+        return new Result(acceptedTxs, resultPool);
+    }
+
+    private static class Batch {
+        private final int id;
+        private final List<int[]> groups = new ArrayList<>();
+        private int size;
+
+        Batch(int id) {
+            this.id = id;
+        }
+    }
+
+    /** Disjoint sets of the integers in [0, size), with path halving and union by size */
+    private static class UnionFind {
+        private final int[] parents;
+        private final int[] sizes;
+
+        UnionFind(int size) {
+            parents = new int[size];
+            sizes = new int[size];
+            for (int i = 0; i < size; i++) {
+                parents[i] = i;
+                sizes[i] = 1;
+            }
+        }
+
+        int find(int element) {
+            while (parents[element] != element) {
+                parents[element] = parents[parents[element]];
+                element = parents[element];
+            }
+            return element;
+        }
+
+        void union(int a, int b) {
+            int rootA = find(a);
+            int rootB = find(b);
+            if (rootA == rootB) return;
+
+            if (sizes[rootA] < sizes[rootB]) {
+                int swap = rootA;
+                rootA = rootB;
+                rootB = swap;
+            }
+            parents[rootB] = rootA;
+            sizes[rootA] += sizes[rootB];
+        }
+    }
+}
@@ -0,0 +1,348 @@
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+
+/**
+ * Hash map implemented as a hash array mapped trie (HAMT) which supports O(1) snapshots by structural sharing.
+ * <p>
+ * Lookups, insertions and removals are O(log32 n). Modifications copy only the path from the root to the modified
+ * entry, unless the nodes in that path were created by this same map after its last snapshot, in which case they are
+ * modified in place (so a map which is not snapshotted behaves as a regular mutable map, without extra garbage).
+ * <p>
+ * Null keys are not supported. Not thread-safe, although distinct snapshots may be used from different threads.
+ */
+final class PersistentHashMap<K, V> {
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    private Node root;
+    private int size;
+    /** identifies the nodes this map can modify in place; replaced on each snapshot */
+    private Object owner = new Object();
+    /** reused to return the side effects of a modification */
+    private final Change change = new Change();
+
+    PersistentHashMap() {
+        this(BitmapNode.EMPTY, 0);
+    }
+
+    private PersistentHashMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /** @return a copy of this map, in O(1). Further modifications to any of them are not visible to the other. */
+    PersistentHashMap<K, V> snapshot() {
+        owner = new Object(); //nodes created so far are now shared
+        return new PersistentHashMap<>(root, size);
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    boolean containsKey(Object key) {
+        return root.find(key, hash(key), 0) != NOT_FOUND;
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(Object key) {
+        Object value = root.find(key, hash(key), 0);
+        return value != NOT_FOUND ? (V) value : null;
+    }
+
+    /** @return the previous value for {@code key}, or null if there was none */
+    @SuppressWarnings("unchecked")
+    V put(K key, V value) {
+        if (key == null) throw new NullPointerException("null keys are not supported");
+        change.reset();
+        root = root.put(owner, key, hash(key), value, 0, change);
+        if (change.sizeDelta != 0) ++size;
+        return (V) change.oldValue;
+    }
+
+    /** @return the removed value for {@code key}, or null if there was none */
+    @SuppressWarnings("unchecked")
+    V remove(Object key) {
+        change.reset();
+        Node newRoot = root.remove(owner, key, hash(key), 0, change);
+        root = newRoot != null ? newRoot : BitmapNode.EMPTY;
+        if (change.sizeDelta != 0) --size;
+        return (V) change.oldValue;
+    }
+
+    @SuppressWarnings("unchecked")
+    void forEach(BiConsumer<? super K, ? super V> action) {
+        root.forEach((BiConsumer<Object, Object>) action);
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    // ------------------------------------------------------------------
+    private static final Object NOT_FOUND = new Object();
+
+    private static class Change {
+        private int sizeDelta;
+        private Object oldValue;
+
+        void reset() {
+            sizeDelta = 0;
+            oldValue = null;
+        }
+    }
+
+    private abstract static class Node {
+        /** the map allowed to modify this node in place (if any) */
+        final Object owner;
+
+        Node(Object owner) {
+            this.owner = owner;
+        }
+
+        /** @return the value mapped to {@code key} or {@link #NOT_FOUND} */
+        abstract Object find(Object key, int hash, int shift);
+
+        /** @return the resulting node (which may be this same node if modified in place) */
+        abstract Node put(Object owner, Object key, int hash, Object value, int shift, Change change);
+
+        /** @return the resulting node (which may be this same node if modified in place), or null if empty */
+        abstract Node remove(Object owner, Object key, int hash, int shift, Change change);
+
+        abstract void forEach(BiConsumer<Object, Object> action);
+
+        /** @return the key/value array if this node holds a single entry and no sub-nodes, null otherwise */
+        abstract Object[] singleEntry();
+    }
+
+    /**
+     * Node indexed by 5 bits of the hash. {@code array} holds a key/value pair for each bit set in {@code bitmap}:
+     * either the entry itself, or a null key and the sub-node for the keys sharing those bits.
+     */
+    private static final class BitmapNode extends Node {
+        static final BitmapNode EMPTY = new BitmapNode(null, 0, new Object[0]);
+
+        private int bitmap;
+        private Object[] array;
+
+        BitmapNode(Object owner, int bitmap, Object[] array) {
+            super(owner);
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        @Override
+        Object find(Object key, int hash, int shift) {
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) return NOT_FOUND;
+
+            int i = 2 * index(bit);
+            Object k = array[i];
+            if (k == null) return ((Node) array[i + 1]).find(key, hash, shift + BITS);
+            return key.equals(k) ? array[i + 1] : NOT_FOUND;
+        }
+
+        @Override
+        Node put(Object owner, Object key, int hash, Object value, int shift, Change change) {
+            int bit = bit(hash, shift);
+            int i = 2 * index(bit);
+            if ((bitmap & bit) == 0) {
+                change.sizeDelta = 1;
+                Object[] newArray = new Object[array.length + 2];
+                System.arraycopy(array, 0, newArray, 0, i);
+                newArray[i] = key;
+                newArray[i + 1] = value;
+                System.arraycopy(array, i, newArray, i + 2, array.length - i);
+                return editable(owner, bitmap | bit, newArray);
+            }
+
+            Object k = array[i];
+            Object v = array[i + 1];
+            if (k == null) {
+                Node sub = (Node) v;
+                Node newSub = sub.put(owner, key, hash, value, shift + BITS, change);
+                return newSub == sub ? this : withValue(owner, i + 1, newSub);
+            }
+            if (key.equals(k)) {
+                change.oldValue = v;
+                return v == value ? this : withValue(owner, i + 1, value);
+            }
+
+            change.sizeDelta = 1;
+            Node sub = createNode(owner, shift + BITS, k, v, hash(k), key, value, hash);
+            BitmapNode result = withValue(owner, i + 1, sub);
+            result.array[i] = null;
+            return result;
+        }
+
+        @Override
+        Node remove(Object owner, Object key, int hash, int shift, Change change) {
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) return this;
+
+            int i = 2 * index(bit);
+            Object k = array[i];
+            if (k == null) {
+                Node sub = (Node) array[i + 1];
+                Node newSub = sub.remove(owner, key, hash, shift + BITS, change);
+                if (newSub == sub) return this;
+                if (newSub == null) return without(owner, bit, i);
+
+                Object[] entry = newSub.singleEntry();
+                if (entry == null) return withValue(owner, i + 1, newSub);
+                //inline the remaining entry
+                BitmapNode result = withValue(owner, i + 1, entry[1]);
+                result.array[i] = entry[0];
+                return result;
+            }
+            if (! key.equals(k)) return this;
+
+            change.sizeDelta = -1;
+            change.oldValue = array[i + 1];
+            return bitmap == bit ? null : without(owner, bit, i);
+        }
+
+        @Override
+        void forEach(BiConsumer<Object, Object> action) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (array[i] == null) {
+                    ((Node) array[i + 1]).forEach(action);
+                } else {
+                    action.accept(array[i], array[i + 1]);
+                }
+            }
+        }
+
+        @Override
+        Object[] singleEntry() {
+            return array.length == 2 && array[0] != null ? array : null;
+        }
+
+        private int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        private BitmapNode without(Object owner, int bit, int i) {
+            Object[] newArray = new Object[array.length - 2];
+            System.arraycopy(array, 0, newArray, 0, i);
+            System.arraycopy(array, i + 2, newArray, i, newArray.length - i);
+            return editable(owner, bitmap ^ bit, newArray);
+        }
+
+        private BitmapNode withValue(Object owner, int i, Object value) {
+            BitmapNode result = editable(owner, bitmap, this.owner == owner ? array : array.clone());
+            result.array[i] = value;
+            return result;
+        }
+
+        private BitmapNode editable(Object owner, int bitmap, Object[] array) {
+            if (this.owner != owner) return new BitmapNode(owner, bitmap, array);
+            this.bitmap = bitmap;
+            this.array = array;
+            return this;
+        }
+
+        private static int bit(int hash, int shift) {
+            return 1 << ((hash >>> shift) & MASK);
+        }
+    }
+
+    /** Node for keys whose hashes are fully equal */
+    private static final class CollisionNode extends Node {
+        private final int hash;
+        private Object[] array;
+
+        CollisionNode(Object owner, int hash, Object[] array) {
+            super(owner);
+            this.hash = hash;
+            this.array = array;
+        }
+
+        @Override
+        Object find(Object key, int hash, int shift) {
+            int i = indexOf(key);
+            return i >= 0 ? array[i + 1] : NOT_FOUND;
+        }
+
+        @Override
+        Node put(Object owner, Object key, int hash, Object value, int shift, Change change) {
+            if (hash != this.hash) {
+                //a key with a different hash reached this level, so nest this node to split them
+                return new BitmapNode(owner, BitmapNode.bit(this.hash, shift), new Object[] {null, this})
+                    .put(owner, key, hash, value, shift, change);
+            }
+
+            int i = indexOf(key);
+            if (i >= 0) {
+                change.oldValue = array[i + 1];
+                if (array[i + 1] == value) return this;
+                Object[] newArray = this.owner == owner ? array : array.clone();
+                newArray[i + 1] = value;
+                return editable(owner, newArray);
+            }
+
+            change.sizeDelta = 1;
+            Object[] newArray = Arrays.copyOf(array, array.length + 2);
+            newArray[array.length] = key;
+            newArray[array.length + 1] = value;
+            return editable(owner, newArray);
+        }
+
+        @Override
+        Node remove(Object owner, Object key, int hash, int shift, Change change) {
+            int i = indexOf(key);
+            if (i < 0) return this;
+
+            change.sizeDelta = -1;
+            change.oldValue = array[i + 1];
+            if (array.length == 2) return null;
+
+            Object[] newArray = new Object[array.length - 2];
+            System.arraycopy(array, 0, newArray, 0, i);
+            System.arraycopy(array, i + 2, newArray, i, newArray.length - i);
+            return editable(owner, newArray);
+        }
+
+        @Override
+        void forEach(BiConsumer<Object, Object> action) {
+            for (int i = 0; i < array.length; i += 2) {
+                action.accept(array[i], array[i + 1]);
+            }
+        }
+
+        @Override
+        Object[] singleEntry() {
+            return array.length == 2 ? array : null;
+        }
+
+        private int indexOf(Object key) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i])) return i;
+            }
+            return -1;
+        }
+
+        private CollisionNode editable(Object owner, Object[] array) {
+            if (this.owner != owner) return new CollisionNode(owner, hash, array);
+            this.array = array;
+            return this;
+        }
+    }
+
+    private static Node createNode(
+        Object owner, int shift, Object key1, Object value1, int hash1, Object key2, Object value2, int hash2)
+    {
+        if (hash1 == hash2) {
+            return new CollisionNode(owner, hash1, new Object[] {key1, value1, key2, value2});
+        }
+        Change ignored = new Change();
+        return BitmapNode.EMPTY
+            .put(owner, key1, hash1, value1, shift, ignored)
+            .put(owner, key2, hash2, value2, shift, ignored);
+    }
+}
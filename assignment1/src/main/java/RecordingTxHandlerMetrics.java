@@ -0,0 +1,126 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link TxHandlerMetrics} keeping counters and histograms in memory, which may be read at any time (e.g. to be
+ * reported periodically). Thread-safe.
+ */
+public class RecordingTxHandlerMetrics implements TxHandlerMetrics {
+    private final Histogram blockNanos = new Histogram();
+    private final Histogram utxoPoolSize = new Histogram();
+    private final Histogram dependencyDepth = new Histogram();
+    private final LongAdder proposedTxs = new LongAdder();
+    private final LongAdder acceptedTxs = new LongAdder();
+    private final LongAdder signaturesChecked = new LongAdder();
+    private final LongAdder signaturesVerified = new LongAdder();
+    private final LongAdder[] rejections = new LongAdder[ValidationRule.values().length];
+
+    public RecordingTxHandlerMetrics() {
+        for (int i = 0; i < rejections.length; i++) {
+            rejections[i] = new LongAdder();
+        }
+    }
+
+    @Override
+    public void blockHandled(long nanos, int proposedTxs, int acceptedTxs, int utxoPoolSize) {
+        blockNanos.record(nanos);
+        this.utxoPoolSize.record(utxoPoolSize);
+        this.proposedTxs.add(proposedTxs);
+        this.acceptedTxs.add(acceptedTxs);
+    }
+
+    @Override
+    public void signatureChecked() {
+        signaturesChecked.increment();
+    }
+
+    @Override
+    public void signatureVerified() {
+        signaturesVerified.increment();
+    }
+
+    @Override
+    public void txRejected(ValidationRule rule) {
+        rejections[rule.ordinal()].increment();
+    }
+
+    @Override
+    public void dependencyDepth(int depth) {
+        dependencyDepth.record(depth);
+    }
+
+    /** @return time taken by each block, in nanoseconds */
+    public Histogram blockNanos() {
+        return blockNanos;
+    }
+
+    /** @return pool size after each block */
+    public Histogram utxoPoolSize() {
+        return utxoPoolSize;
+    }
+
+    public Histogram dependencyDepth() {
+        return dependencyDepth;
+    }
+
+    public long proposedTxs() {
+        return proposedTxs.sum();
+    }
+
+    public long acceptedTxs() {
+        return acceptedTxs.sum();
+    }
+
+    public long signaturesChecked() {
+        return signaturesChecked.sum();
+    }
+
+    public long signaturesVerified() {
+        return signaturesVerified.sum();
+    }
+
+    /** @return signature checks answered by the signature cache */
+    public long signatureCacheHits() {
+        return signaturesChecked() - signaturesVerified();
+    }
+
+    public long rejections(ValidationRule rule) {
+        return rejections[rule.ordinal()].sum();
+    }
+
+    // ------------------------------------------------------------------
+    /** Histogram of non-negative values with power of 2 buckets (so values are known within a factor of 2) */
+    public static class Histogram {
+        /** bucket {@code i} counts the values with {@code i} significant bits */
+        private final AtomicLongArray buckets = new AtomicLongArray(Long.SIZE);
+        private final LongAdder sum = new LongAdder();
+
+        void record(long value) {
+            buckets.incrementAndGet(Long.SIZE - Long.numberOfLeadingZeros(Math.max(0, value)));
+            sum.add(value);
+        }
+
+        public long count() {
+            long count = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                count += buckets.get(i);
+            }
+            return count;
+        }
+
+        public long sum() {
+            return sum.sum();
+        }
+
+        /** @return an upper bound of the {@code percentile} (in [0, 100]) of the values, 0 if there are none */
+        public long percentile(double percentile) {
+            long rank = (long) Math.ceil(count() * percentile / 100);
+            long seen = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                seen += buckets.get(i);
+                if (seen >= rank && seen > 0) return (1L << i) - 1;
+            }
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static java.nio.ByteBuffer.wrap;
+
+/**
+ * Validates the transactions of a block in the proposed order, recursively validating first the in-block
+ * transactions each one depends on.
+ */
+class RecursiveValidationEngine implements BlockValidationEngine {
+
+    @Override
+    public Result validate(
+        Transaction[] possibleTxs, Map<ByteBuffer, Transaction> idToTx, UTXOPool utxoPool, TxCheck txCheck)
+    {
+        return validate(possibleTxs, idToTx, utxoPool, txCheck, TxHandlerMetrics.NONE);
+    }
+
+    /** Reports the depth of the recursion for each proposed tx to {@code metrics} */
+    @Override
+    public Result validate(
+        Transaction[] possibleTxs, Map<ByteBuffer, Transaction> idToTx, UTXOPool utxoPool, TxCheck txCheck,
+        TxHandlerMetrics metrics)
+    {
+        /*
+        Note: this implementation is intended to be clear not performing.
+
+        Starts with a ValidationCtx with empty txIds and the current UTXOPool.
+        For each Transaction, check if it is valid.
+        To validate a transaction, the ValidationCtx is used. If the required tx is in the Ctx, nothing needs to be
+        done and the same context is returned. Otherwise, recurse to check all in-block TXs required for this to be
+        valid. Since a tx may be valid for one context but not for another, the TXs need to be checked each time.
+
+        Txs with an unrecoverable error (bad signature, negative output, etc) are remembered by the TxHandler (see
+        RejectedTxCache), so they are not checked twice.
+         */
+
+        ValidationCtx ctx = new ValidationCtx(new PersistentHashMap<>(), utxoPool);
+        List<Transaction> accepted = new ArrayList<>(possibleTxs.length);
+        //deepest recursion reached by the current proposed tx
+        int[] maxDepth = new int[1];
+
+        for (Transaction possibleTx : possibleTxs) {
+            maxDepth[0] = 0;
+            try {
+                ValidationCtx newValidCtx = generateValidationContext(possibleTx, ctx, idToTx, txCheck, 0, maxDepth);
+                accepted.add(possibleTx);
+                ctx = newValidCtx;
+            } catch (InvalidTxException e) {
+                //invalid tx will be ignored
+            }
+            metrics.dependencyDepth(maxDepth[0]);
+        }
+
+        return new Result(accepted, ctx.utxoPool);
+    }
+
+    // ------------------------------------------------------------------
+    private static class InvalidTxException extends Exception {}
+
+    private static class ValidationCtx {
+        /** ids of the in-block txs already accepted in this context */
+        private final PersistentHashMap<ByteBuffer, Transaction> txIds;
+        private final UTXOPool utxoPool;
+
+        ValidationCtx(PersistentHashMap<ByteBuffer, Transaction> txIds, UTXOPool utxoPool) {
+            this.txIds = txIds;
+            this.utxoPool = utxoPool;
+        }
+    }
+
+    private ValidationCtx generateValidationContext(
+        Transaction possibleTx, ValidationCtx ctx, Map<ByteBuffer, Transaction> idToTx, TxCheck txCheck,
+        int depth, int[] maxDepth)
+        throws InvalidTxException
+    {
+        //nothing to be done, the TX is already valid for this ctx
+        if (ctx.txIds.containsKey(wrap(possibleTx.getHash()))) return ctx;
+        maxDepth[0] = Math.max(maxDepth[0], depth);
+
+        ValidationCtx newValidCtx = ctx;
+        for (Transaction.Input input : possibleTx.getInputs()) {
+            Transaction txInBlock = idToTx.get(wrap(input.prevTxHash));
+            if (txInBlock != null) {
+                /* possibleTx can only be valid if the TX for the input is also valid
+                 * Note: due to causality of transactions I assume there are no loops in the dependency graph between
+                 * in-block transactions (additional state would validate this assumption)
+                 */
+                newValidCtx = generateValidationContext(txInBlock, newValidCtx, idToTx, txCheck, depth + 1, maxDepth);
+            }
+        }
+
+        //verify this TX is valid
+        if (! txCheck.isValid(possibleTx, newValidCtx.utxoPool)) {
+            throw new InvalidTxException();
+        }
+
+        //update UTXOPool to generate resulting validation context (copies are O(1), see PersistentHashMap)
+        UTXOPool resultPool = new UTXOPool(newValidCtx.utxoPool);
+        for (Transaction.Input input : possibleTx.getInputs()) {
+            resultPool.removeUTXO(new UTXO(input.prevTxHash, input.outputIndex));
+        }
+        for (int i = 0; i < possibleTx.getOutputs().size(); i++) {
+            resultPool.addUTXO(new UTXO(possibleTx.getHash(), i), possibleTx.getOutput(i));
+        }
+        PersistentHashMap<ByteBuffer, Transaction> newTxIds = newValidCtx.txIds.snapshot();
+        newTxIds.put(wrap(possibleTx.getHash()), possibleTx);
+
+        return new ValidationCtx(newTxIds, resultPool);
+    }
+}
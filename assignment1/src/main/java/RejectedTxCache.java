@@ -0,0 +1,57 @@
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded, thread-safe cache of the transactions found permanently invalid (see
+ * {@link ValidationResult#isPermanent()}), by the digest of their content ({@link Transaction#getRawTx()}), so
+ * transactions proposed again (in the same block or in later ones) are rejected without verifying anything. Least
+ * recently used entries are evicted first.
+ * <p>
+ * The digest is computed from the transaction itself, not taken from its claimed hash, so an invalid transaction
+ * carrying the hash of a valid one doesn't get the valid one rejected.
+ */
+public class RejectedTxCache {
+    public static final long DEFAULT_MAXIMUM_SIZE = 100_000;
+
+    private final Cache<ByteBuffer, ValidationResult> rejections;
+    private final LongAdder hits = new LongAdder();
+
+    public RejectedTxCache() {
+        this(DEFAULT_MAXIMUM_SIZE);
+    }
+
+    public RejectedTxCache(long maximumSize) {
+        rejections = CacheBuilder.newBuilder().maximumSize(maximumSize).build();
+    }
+
+    /** @return the result {@code tx} was permanently rejected with, null if it is not cached */
+    public ValidationResult get(Transaction tx) {
+        ValidationResult rejection = rejections.getIfPresent(digest(tx));
+        if (rejection != null) hits.increment();
+        return rejection;
+    }
+
+    /** @return the number of transactions rejected from the cache */
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long size() {
+        return rejections.size();
+    }
+
+    /** Caches {@code result} for {@code tx}, if it is a permanent rejection */
+    void record(Transaction tx, ValidationResult result) {
+        if (result.isPermanent()) {
+            rejections.put(digest(tx), result);
+        }
+    }
+
+    // ------------------------------------------------------------------
+    private static ByteBuffer digest(Transaction tx) {
+        return ByteBuffer.wrap(CryptoService.sha256(tx.getRawTx()));
+    }
+}
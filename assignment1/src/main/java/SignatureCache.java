@@ -0,0 +1,101 @@
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.security.PublicKey;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded, thread-safe cache of signature verification results, keyed by the digest of the signed data
+ * ({@link Transaction#getRawDataToSign(int)}) and the address, so transactions validated more than once (tried in
+ * different contexts of a block or proposed again in later blocks) are verified once. Least recently used results are
+ * evicted first.
+ * <p>
+ * A cached result is only used if the signature of the input is also the same. The digest is computed from the
+ * transaction itself, not taken from its claimed hash, so a transaction carrying the hash of another one can't reuse
+ * its results.
+ */
+public class SignatureCache {
+    public static final long DEFAULT_MAXIMUM_SIZE = 100_000;
+
+    private final Cache<Key, Result> results;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public SignatureCache() {
+        this(DEFAULT_MAXIMUM_SIZE);
+    }
+
+    public SignatureCache(long maximumSize) {
+        results = CacheBuilder.newBuilder().maximumSize(maximumSize).build();
+    }
+
+    /** @return the number of signature checks answered from the cache */
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    /** @return the number of signature checks which had to be verified */
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long size() {
+        return results.size();
+    }
+
+    /** @return a check answering from this cache, and verifying with {@code check} (caching the result) otherwise */
+    BlockSignatureVerifier.SignatureCheck cached(BlockSignatureVerifier.SignatureCheck check) {
+        return (tx, inputIdx, address) -> {
+            byte[] signature = tx.getInput(inputIdx).signature;
+            Key key = new Key(CryptoService.sha256(tx.getRawDataToSign(inputIdx)), address);
+            Result cached = results.getIfPresent(key);
+            if (cached != null && Arrays.equals(cached.signature, signature)) {
+                hits.increment();
+                return cached.isValid;
+            }
+
+            misses.increment();
+            boolean isValid = check.isValid(tx, inputIdx, address);
+            results.put(key, new Result(signature, isValid));
+            return isValid;
+        };
+    }
+
+    // ------------------------------------------------------------------
+    private static final class Key {
+        /** digest of the signed data */
+        private final byte[] digest;
+        private final PublicKey address;
+        private final int hash;
+
+        Key(byte[] digest, PublicKey address) {
+            this.digest = digest;
+            this.address = address;
+            this.hash = Arrays.hashCode(digest) * 31 + (address != null ? address.hashCode() : 0);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (! (o instanceof Key)) return false;
+            Key other = (Key) o;
+            return hash == other.hash && Arrays.equals(digest, other.digest)
+                && (address == null ? other.address == null : address.equals(other.address));
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class Result {
+        private final byte[] signature;
+        private final boolean isValid;
+
+        Result(byte[] signature, boolean isValid) {
+            this.signature = signature;
+            this.isValid = isValid;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.function.Consumer;
+
+import static java.nio.ByteBuffer.wrap;
+
+/**
+ * Validates the transactions of a block as they are pulled from an {@link Iterator}, for
+ * {@link TxHandler#handleTxs(Iterator, Consumer)}.
+ * <p>
+ * Transactions are validated in arrival order and applied to the pool as soon as they are accepted. The ones spending
+ * outputs of transactions which didn't arrive yet are kept until their parents are resolved: they are validated again
+ * once all of them are accepted, and rejected as soon as one of them is rejected (or at the end of the block). Only
+ * these pending transactions and the hashes of the resolved ones are kept, not the whole block.
+ * <p>
+ * If a {@link BlockSignatureVerifier} is given, up to {@code readAhead} transactions are pulled before being
+ * validated so their signatures are verified in parallel in the meantime.
+ */
+class StreamingBlockValidator {
+    private final TxHandler txHandler;
+    private final UTXOPool utxoPool;
+    private final BlockSignatureVerifier.SignatureCheck signatureCheck;
+    private final BlockSignatureVerifier signatureVerifier;
+    private final int readAhead;
+    private final Consumer<Transaction> acceptedTxs;
+    private final TxHandlerMetrics metrics;
+
+    /** whether each tx of the block already resolved was accepted, by hash */
+    private final Map<ByteBuffer, Boolean> resolved = new HashMap<>();
+    /** txs waiting for their parents, by hash */
+    private final Map<ByteBuffer, Pending> pending = new HashMap<>();
+    /** hashes of the pending txs waiting for each unresolved parent */
+    private final Map<ByteBuffer, Set<ByteBuffer>> pendingByParent = new HashMap<>();
+    private int proposedCount;
+    private int acceptedCount;
+
+    /**
+     * @param txHandler handler validating each tx.
+     * @param utxoPool pool the accepted txs are applied to.
+     * @param signatureVerifier verifier used to verify signatures ahead, null to verify them with
+     *                          {@code signatureCheck} when validating each tx.
+     */
+    StreamingBlockValidator(
+        TxHandler txHandler, UTXOPool utxoPool, BlockSignatureVerifier.SignatureCheck signatureCheck,
+        BlockSignatureVerifier signatureVerifier, int readAhead, Consumer<Transaction> acceptedTxs,
+        TxHandlerMetrics metrics)
+    {
+        this.txHandler = txHandler;
+        this.utxoPool = utxoPool;
+        this.signatureCheck = signatureCheck;
+        this.signatureVerifier = signatureVerifier;
+        this.readAhead = signatureVerifier != null ? Math.max(1, readAhead) : 1;
+        this.acceptedTxs = acceptedTxs;
+        this.metrics = metrics;
+    }
+
+    /** Validates all the txs of {@code possibleTxs}, which may be pulled ahead up to the read ahead */
+    void validate(Iterator<Transaction> possibleTxs) {
+        Deque<Pending> window = new ArrayDeque<>(readAhead);
+        while (possibleTxs.hasNext() || ! window.isEmpty()) {
+            while (window.size() < readAhead && possibleTxs.hasNext()) {
+                Transaction tx = possibleTxs.next();
+                ++proposedCount;
+                ValidationResult knownRejection = txHandler.knownRejection(tx);
+                window.add(new Pending(tx, signatureVerifier != null && knownRejection == null
+                    ? signatureVerifier.verifyAsync(tx, utxoPool)
+                    : signatureCheck, knownRejection));
+            }
+            process(window.poll());
+        }
+        //their parents never arrived
+        pending.forEach((txId, tx) -> metrics.txRejected(ValidationRule.OUTPUT_IN_POOL));
+        pending.clear();
+        pendingByParent.clear();
+    }
+
+    /** @return the pool with the accepted txs applied */
+    UTXOPool utxoPool() {
+        return utxoPool;
+    }
+
+    int proposedCount() {
+        return proposedCount;
+    }
+
+    int acceptedCount() {
+        return acceptedCount;
+    }
+
+    // ------------------------------------------------------------------
+    private static class Pending {
+        private final Transaction tx;
+        private final BlockSignatureVerifier.SignatureCheck signatureCheck;
+        /** cached permanent rejection, if any */
+        private final ValidationResult knownRejection;
+        private Set<ByteBuffer> missingParents;
+
+        Pending(
+            Transaction tx, BlockSignatureVerifier.SignatureCheck signatureCheck, ValidationResult knownRejection)
+        {
+            this.tx = tx;
+            this.signatureCheck = signatureCheck;
+            this.knownRejection = knownRejection;
+        }
+    }
+
+    private void process(Pending next) {
+        Deque<Pending> toProcess = new ArrayDeque<>();
+        toProcess.add(next);
+        while (! toProcess.isEmpty()) {
+            Pending tx = toProcess.poll();
+            ByteBuffer txId = wrap(tx.tx.getHash());
+            if (resolved.containsKey(txId) || pending.containsKey(txId)) continue;
+            if (tx.knownRejection != null) {
+                metrics.txRejected(tx.knownRejection.getBrokenRule());
+                resolve(txId, false, toProcess);
+                continue;
+            }
+
+            tx.missingParents = findMissingParents(tx.tx);
+            if (tx.missingParents == null) {
+                metrics.txRejected(ValidationRule.OUTPUT_IN_POOL);
+                resolve(txId, false, toProcess);
+            } else if (! tx.missingParents.isEmpty()) {
+                addPending(txId, tx);
+            } else if (txHandler.validateTx(tx.tx, utxoPool, tx.signatureCheck).isValid()) {
+                apply(tx.tx);
+                acceptedTxs.accept(tx.tx);
+                ++acceptedCount;
+                resolve(txId, true, toProcess);
+            } else {
+                resolve(txId, false, toProcess);
+            }
+        }
+    }
+
+    /** @return hashes of the unresolved txs {@code tx} spends from, or null if one of them was rejected */
+    private Set<ByteBuffer> findMissingParents(Transaction tx) {
+        Set<ByteBuffer> missingParents = new HashSet<>();
+        for (Transaction.Input input : tx.getInputs()) {
+            if (input.prevTxHash == null || utxoPool.contains(new UTXO(input.prevTxHash, input.outputIndex))) continue;
+
+            ByteBuffer parentId = wrap(input.prevTxHash);
+            Boolean parentAccepted = resolved.get(parentId);
+            if (parentAccepted == null) {
+                missingParents.add(parentId);
+            } else if (! parentAccepted) {
+                return null;
+            }
+        }
+        return missingParents;
+    }
+
+    private void addPending(ByteBuffer txId, Pending tx) {
+        pending.put(txId, tx);
+        for (ByteBuffer parentId : tx.missingParents) {
+            pendingByParent.computeIfAbsent(parentId, k -> new LinkedHashSet<>()).add(txId);
+        }
+    }
+
+    /** Records the result of {@code txId}, queueing the txs waiting for it to be processed again */
+    private void resolve(ByteBuffer txId, boolean isAccepted, Deque<Pending> toProcess) {
+        resolved.put(txId, isAccepted);
+        Set<ByteBuffer> waiting = pendingByParent.remove(txId);
+        if (waiting == null) return;
+
+        for (ByteBuffer childId : waiting) {
+            Pending child = pending.get(childId);
+            child.missingParents.remove(txId);
+            if (isAccepted && ! child.missingParents.isEmpty()) continue;
+
+            removePending(childId, child);
+            toProcess.add(child);
+        }
+    }
+
+    private void removePending(ByteBuffer txId, Pending tx) {
+        pending.remove(txId);
+        for (ByteBuffer parentId : tx.missingParents) {
+            Set<ByteBuffer> siblings = pendingByParent.get(parentId);
+            siblings.remove(txId);
+            if (siblings.isEmpty()) pendingByParent.remove(parentId);
+        }
+    }
+
+    private void apply(Transaction tx) {
+        for (Transaction.Input input : tx.getInputs()) {
+            utxoPool.removeUTXO(new UTXO(input.prevTxHash, input.outputIndex));
+        }
+        for (int i = 0; i < tx.numOutputs(); i++) {
+            utxoPool.addUTXO(new UTXO(tx.getHash(), i), tx.getOutput(i));
+        }
+    }
+}
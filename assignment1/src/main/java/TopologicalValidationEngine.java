@@ -0,0 +1,237 @@
+import java.nio.ByteBuffer;
+import java.util.*;
+
+import static java.nio.ByteBuffer.wrap;
+
+/**
+ * Validates the transactions of a block walking their in-block dependency graph, which is built once per block.
+ * <p>
+ * Transactions are tried in the proposed order. Trying one means validating, parents first, the in-block
+ * transactions it depends on (and were not accepted yet) and then itself. Each one is applied to a single working
+ * UTXOPool as soon as it is valid, recording the changes in an undo log, so if any of them is invalid all the changes
+ * done while trying that transaction are reverted. This accepts the same transactions as
+ * {@link RecursiveValidationEngine}, without copying pools nor using the call stack to follow dependency chains.
+ * <p>
+ * Transactions in a dependency cycle (and the ones depending on them) can never be valid, so they are rejected
+ * without being checked.
+ */
+class TopologicalValidationEngine implements BlockValidationEngine {
+
+    @Override
+    public Result validate(
+        Transaction[] possibleTxs, Map<ByteBuffer, Transaction> idToTx, UTXOPool utxoPool, TxCheck txCheck)
+    {
+        DependencyGraph graph = new DependencyGraph(possibleTxs);
+        boolean[] unresolvable = graph.findUnresolvable();
+        boolean[] accepted = new boolean[possibleTxs.length];
+
+        UTXOPool workingPool = new UTXOPool(utxoPool);
+        UndoLog undoLog = new UndoLog(workingPool);
+        DependencyWalk walk = new DependencyWalk(graph);
+        List<Integer> tried = new ArrayList<>();
+
+        for (int txIdx = 0; txIdx < possibleTxs.length; txIdx++) {
+            if (accepted[txIdx] || unresolvable[txIdx]) continue;
+
+            int undoMark = undoLog.size();
+            tried.clear();
+            boolean isValid = true;
+            for (PrimitiveIterator.OfInt it = walk.parentsFirst(txIdx, accepted); it.hasNext() && isValid; ) {
+                int idx = it.nextInt();
+                Transaction tx = possibleTxs[idx];
+                isValid = txCheck.isValid(tx, workingPool);
+                if (isValid) {
+                    undoLog.apply(tx);
+                    tried.add(idx);
+                }
+            }
+
+            if (isValid) {
+                tried.forEach(idx -> accepted[idx] = true);
+                undoLog.commit();
+            } else {
+                undoLog.rollback(undoMark);
+            }
+        }
+
+        List<Transaction> result = new ArrayList<>();
+        for (int i = 0; i < possibleTxs.length; i++) {
+            if (accepted[i]) result.add(possibleTxs[i]);
+        }
+        return new Result(result, workingPool);
+    }
+
+    // ------------------------------------------------------------------
+    /** In-block dependencies, with transactions identified by their index in the block */
+    static class DependencyGraph {
+        /** in-block txs each tx spends from, without repetitions and in the order of the inputs */
+        final int[][] parents;
+        final int[][] children;
+
+        DependencyGraph(Transaction[] txs) {
+            Map<ByteBuffer, Integer> idToIdx = new HashMap<>(txs.length * 2);
+            for (int i = 0; i < txs.length; i++) {
+                idToIdx.put(wrap(txs[i].getHash()), i);
+            }
+
+            parents = new int[txs.length][];
+            int[] childCount = new int[txs.length];
+            for (int i = 0; i < txs.length; i++) {
+                Set<Integer> txParents = new LinkedHashSet<>();
+                for (Transaction.Input input : txs[i].getInputs()) {
+                    Integer parentIdx = input.prevTxHash != null ? idToIdx.get(wrap(input.prevTxHash)) : null;
+                    if (parentIdx != null && txParents.add(parentIdx)) {
+                        ++childCount[parentIdx];
+                    }
+                }
+                parents[i] = txParents.stream().mapToInt(Integer::intValue).toArray();
+            }
+
+            children = new int[txs.length][];
+            for (int i = 0; i < txs.length; i++) {
+                children[i] = new int[childCount[i]];
+                childCount[i] = 0;
+            }
+            for (int i = 0; i < txs.length; i++) {
+                for (int parent : parents[i]) {
+                    children[parent][childCount[parent]++] = i;
+                }
+            }
+        }
+
+        int size() {
+            return parents.length;
+        }
+
+        /**
+         * @return which txs are part of a dependency cycle or depend on one (Kahn's algorithm, what can't be sorted
+         *         topologically)
+         */
+        boolean[] findUnresolvable() {
+            int[] pendingParents = new int[size()];
+            int[] queue = new int[size()];
+            int queueEnd = 0;
+            for (int i = 0; i < size(); i++) {
+                pendingParents[i] = parents[i].length;
+                if (pendingParents[i] == 0) queue[queueEnd++] = i;
+            }
+            for (int queueStart = 0; queueStart < queueEnd; queueStart++) {
+                for (int child : children[queue[queueStart]]) {
+                    if (--pendingParents[child] == 0) queue[queueEnd++] = child;
+                }
+            }
+
+            boolean[] unresolvable = new boolean[size()];
+            for (int i = 0; i < size(); i++) {
+                unresolvable[i] = pendingParents[i] > 0;
+            }
+            return unresolvable;
+        }
+    }
+
+    /** Iterative post-order walk of the dependencies of a tx (requires an acyclic graph) */
+    static class DependencyWalk {
+        private final DependencyGraph graph;
+        /** walk in which each tx was last visited, to visit each one once per walk */
+        private final int[] visitedOn;
+        private int walkId = 0;
+        private final int[] stack;
+        private final int[] nextParent;
+
+        DependencyWalk(DependencyGraph graph) {
+            this.graph = graph;
+            this.visitedOn = new int[graph.size()];
+            this.stack = new int[graph.size()];
+            this.nextParent = new int[graph.size()];
+        }
+
+        /** @return {@code txIdx} and the txs it depends on (skipping {@code excluded} ones), parents first */
+        PrimitiveIterator.OfInt parentsFirst(int txIdx, boolean[] excluded) {
+            int id = ++walkId;
+            return new PrimitiveIterator.OfInt() {
+                private int depth = push(0, txIdx);
+
+                @Override
+                public boolean hasNext() {
+                    return depth > 0;
+                }
+
+                @Override
+                public int nextInt() {
+                    if (depth == 0) throw new NoSuchElementException();
+                    while (true) {
+                        int current = stack[depth - 1];
+                        int[] currentParents = graph.parents[current];
+                        if (nextParent[depth - 1] == currentParents.length) {
+                            --depth;
+                            return current;
+                        }
+                        int parent = currentParents[nextParent[depth - 1]++];
+                        if (visitedOn[parent] != id && ! excluded[parent]) {
+                            depth = push(depth, parent);
+                        }
+                    }
+                }
+
+                private int push(int depth, int idx) {
+                    visitedOn[idx] = id;
+                    stack[depth] = idx;
+                    nextParent[depth] = 0;
+                    return depth + 1;
+                }
+            };
+        }
+    }
+
+    /** Applies transactions to a pool keeping what is needed to revert them */
+    static class UndoLog {
+        private final UTXOPool utxoPool;
+        /** modified UTXOs along with their previous output (null if they were not in the pool) */
+        private final List<UTXO> utxos = new ArrayList<>();
+        private final List<Transaction.Output> previousOutputs = new ArrayList<>();
+
+        UndoLog(UTXOPool utxoPool) {
+            this.utxoPool = utxoPool;
+        }
+
+        int size() {
+            return utxos.size();
+        }
+
+        void apply(Transaction tx) {
+            for (Transaction.Input input : tx.getInputs()) {
+                UTXO utxo = record(new UTXO(input.prevTxHash, input.outputIndex));
+                utxoPool.removeUTXO(utxo);
+            }
+            for (int i = 0; i < tx.numOutputs(); i++) {
+                UTXO utxo = record(new UTXO(tx.getHash(), i));
+                utxoPool.addUTXO(utxo, tx.getOutput(i));
+            }
+        }
+
+        /** reverts all the changes done after the log had {@code size} entries */
+        void rollback(int size) {
+            for (int i = utxos.size() - 1; i >= size; i--) {
+                Transaction.Output previous = previousOutputs.remove(i);
+                UTXO utxo = utxos.remove(i);
+                if (previous != null) {
+                    utxoPool.addUTXO(utxo, previous);
+                } else {
+                    utxoPool.removeUTXO(utxo);
+                }
+            }
+        }
+
+        /** forgets the changes done so far, they can't be reverted anymore */
+        void commit() {
+            utxos.clear();
+            previousOutputs.clear();
+        }
+
+        private UTXO record(UTXO utxo) {
+            utxos.add(utxo);
+            previousOutputs.add(utxoPool.getTxOutput(utxo));
+            return utxo;
+        }
+    }
+}
@@ -1,11 +1,11 @@
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.security.PublicKey;
 
 public class Transaction {
+    /** satoshis per bitcoin, amounts are integral numbers of satoshis */
+    public static final long COIN = 100_000_000L;
 
     public class Input {
         /** hash of the Transaction whose output is being used */
@@ -32,21 +32,35 @@ public class Transaction {
     }
 
     public class Output {
-        /** value in bitcoins of the output */
-        public double value;
+        /** value of the output, in satoshis (see {@link #COIN}) */
+        public long value;
         /** the address or public key of the recipient */
         public PublicKey address;
+        /** {@code address.getEncoded()}, cached for the {@link #encodedAddressKey} it was computed for */
+        private byte[] encodedAddress;
+        private PublicKey encodedAddressKey;
 
-        public Output(double v, PublicKey addr) {
+        public Output(long v, PublicKey addr) {
             value = v;
             address = addr;
         }
+
+        /** @return the encoded {@code address}, which must not be modified */
+        byte[] getEncodedAddress() {
+            if (encodedAddressKey != address || encodedAddress == null) {
+                encodedAddress = address.getEncoded();
+                encodedAddressKey = address;
+            }
+            return encodedAddress;
+        }
     }
 
     /** hash of the transaction, its unique id */
     private byte[] hash;
     private ArrayList<Input> inputs;
     private ArrayList<Output> outputs;
+    /** outputs section of the raw data, encoded once for all the inputs (until the outputs change) */
+    private RawOutputs rawOutputs;
 
     public Transaction() {
         inputs = new ArrayList<Input>();
@@ -57,6 +71,7 @@ public class Transaction {
         hash = tx.hash.clone();
         inputs = new ArrayList<Input>(tx.inputs);
         outputs = new ArrayList<Output>(tx.outputs);
+        rawOutputs = tx.rawOutputs;
     }
 
     public void addInput(byte[] prevTxHash, int outputIndex) {
@@ -64,8 +79,27 @@ public class Transaction {
         inputs.add(in);
     }
 
+    /** Adds an output of {@code value} satoshis to {@code address} */
+    public void addOutput(long value, PublicKey address) {
+        Output op = new Output(value, address);
+        outputs.add(op);
+    }
+
+    /**
+     * Adds an output of {@code value} bitcoins to {@code address}, rounded to satoshis.
+     *
+     * @deprecated values are in satoshis, use {@link #addOutput(long, PublicKey)}
+     */
+    @Deprecated
     public void addOutput(double value, PublicKey address) {
+        addOutput(Math.round(value * COIN), address);
+    }
+
+    /** Same as {@link #addOutput(long, PublicKey)}, given the already known {@code address} encoding */
+    void addOutput(long value, PublicKey address, byte[] encodedAddress) {
         Output op = new Output(value, address);
+        op.encodedAddress = encodedAddress;
+        op.encodedAddressKey = address;
         outputs.add(op);
     }
 
@@ -86,35 +120,17 @@ public class Transaction {
 
     public byte[] getRawDataToSign(int index) {
         // ith input and all outputs
-        ArrayList<Byte> sigData = new ArrayList<Byte>();
         if (index > inputs.size())
             return null;
         Input in = inputs.get(index);
-        byte[] prevTxHash = in.prevTxHash;
-        ByteBuffer b = ByteBuffer.allocate(Integer.SIZE / 8);
-        b.putInt(in.outputIndex);
-        byte[] outputIndex = b.array();
-        if (prevTxHash != null)
-            for (int i = 0; i < prevTxHash.length; i++)
-                sigData.add(prevTxHash[i]);
-        for (int i = 0; i < outputIndex.length; i++)
-            sigData.add(outputIndex[i]);
-        for (Output op : outputs) {
-            ByteBuffer bo = ByteBuffer.allocate(Double.SIZE / 8);
-            bo.putDouble(op.value);
-            byte[] value = bo.array();
-            byte[] addressBytes = op.address.getEncoded();
-            for (int i = 0; i < value.length; i++)
-                sigData.add(value[i]);
-
-            for (int i = 0; i < addressBytes.length; i++)
-                sigData.add(addressBytes[i]);
-        }
-        byte[] sigD = new byte[sigData.size()];
-        int i = 0;
-        for (Byte sb : sigData)
-            sigD[i++] = sb;
-        return sigD;
+        byte[] rawOutputs = getRawOutputs();
+        int size = (in.prevTxHash != null ? in.prevTxHash.length : 0) + Integer.BYTES + rawOutputs.length;
+        ByteBuffer sigData = ByteBuffer.allocate(size);
+        if (in.prevTxHash != null)
+            sigData.put(in.prevTxHash);
+        sigData.putInt(in.outputIndex);
+        sigData.put(rawOutputs);
+        return sigData.array();
     }
 
     public void addSignature(byte[] signature, int index) {
@@ -122,50 +138,40 @@ public class Transaction {
     }
 
     public byte[] getRawTx() {
-        ArrayList<Byte> rawTx = new ArrayList<Byte>();
+        byte[] rawOutputs = getRawOutputs();
+        int size = rawOutputs.length;
         for (Input in : inputs) {
-            byte[] prevTxHash = in.prevTxHash;
-            ByteBuffer b = ByteBuffer.allocate(Integer.SIZE / 8);
-            b.putInt(in.outputIndex);
-            byte[] outputIndex = b.array();
-            byte[] signature = in.signature;
-            if (prevTxHash != null)
-                for (int i = 0; i < prevTxHash.length; i++)
-                    rawTx.add(prevTxHash[i]);
-            for (int i = 0; i < outputIndex.length; i++)
-                rawTx.add(outputIndex[i]);
-            if (signature != null)
-                for (int i = 0; i < signature.length; i++)
-                    rawTx.add(signature[i]);
+            size += (in.prevTxHash != null ? in.prevTxHash.length : 0) + Integer.BYTES
+                + (in.signature != null ? in.signature.length : 0);
         }
-        for (Output op : outputs) {
-            ByteBuffer b = ByteBuffer.allocate(Double.SIZE / 8);
-            b.putDouble(op.value);
-            byte[] value = b.array();
-            byte[] addressBytes = op.address.getEncoded();
-            for (int i = 0; i < value.length; i++) {
-                rawTx.add(value[i]);
-            }
-            for (int i = 0; i < addressBytes.length; i++) {
-                rawTx.add(addressBytes[i]);
-            }
-
+        ByteBuffer rawTx = ByteBuffer.allocate(size);
+        for (Input in : inputs) {
+            if (in.prevTxHash != null)
+                rawTx.put(in.prevTxHash);
+            rawTx.putInt(in.outputIndex);
+            if (in.signature != null)
+                rawTx.put(in.signature);
+        }
+        rawTx.put(rawOutputs);
+        return rawTx.array();
+    }
+
+    /**
+     * @return the outputs section of {@link #getRawTx()} and {@link #getRawDataToSign(int)}, which must not be
+     *         modified, encoded again only if an output was added, replaced or changed since it was last encoded.
+     */
+    private byte[] getRawOutputs() {
+        //immutable, so it can be shared by threads reading the transaction (at worst, each one encodes its own)
+        RawOutputs cached = rawOutputs;
+        if (cached == null || ! cached.isFor(outputs)) {
+            cached = new RawOutputs(outputs);
+            rawOutputs = cached;
         }
-        byte[] tx = new byte[rawTx.size()];
-        int i = 0;
-        for (Byte b : rawTx)
-            tx[i++] = b;
-        return tx;
+        return cached.bytes;
     }
 
     public void finalize() {
-        try {
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
-            md.update(getRawTx());
-            hash = md.digest();
-        } catch (NoSuchAlgorithmException x) {
-            x.printStackTrace(System.err);
-        }
+        hash = CryptoService.sha256(getRawTx());
     }
 
     public void setHash(byte[] h) {
@@ -205,4 +211,43 @@ public class Transaction {
     public int numOutputs() {
         return outputs.size();
     }
+
+    // ------------------------------------------------------------------
+    /** The outputs section of the raw data, along with the outputs (and their fields) it was encoded from */
+    private static final class RawOutputs {
+        private final Output[] outputs;
+        private final long[] values;
+        private final PublicKey[] addresses;
+        private final byte[] bytes;
+
+        /** Encodes {@code outputs} in the original format, with values as doubles in bitcoins (as they are hashed) */
+        RawOutputs(ArrayList<Output> outputs) {
+            this.outputs = outputs.toArray(new Output[0]);
+            values = new long[this.outputs.length];
+            addresses = new PublicKey[this.outputs.length];
+            int size = 0;
+            for (int i = 0; i < this.outputs.length; i++) {
+                values[i] = this.outputs[i].value;
+                addresses[i] = this.outputs[i].address;
+                size += Double.BYTES + this.outputs[i].getEncodedAddress().length;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(size);
+            for (int i = 0; i < this.outputs.length; i++) {
+                buffer.putDouble((double) values[i] / COIN);
+                buffer.put(this.outputs[i].getEncodedAddress());
+            }
+            bytes = buffer.array();
+        }
+
+        /** @return true if it was encoded from {@code outputs}, as they are now */
+        boolean isFor(ArrayList<Output> outputs) {
+            if (outputs.size() != this.outputs.length) return false;
+
+            for (int i = 0; i < this.outputs.length; i++) {
+                Output op = outputs.get(i);
+                if (op != this.outputs[i] || op.value != values[i] || op.address != addresses[i]) return false;
+            }
+            return true;
+        }
+    }
 }
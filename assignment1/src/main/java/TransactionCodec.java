@@ -0,0 +1,206 @@
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.security.KeyFactory;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.spec.InvalidKeySpecException;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compact binary wire format for {@link Transaction}s, written directly into (and read directly from) a
+ * {@link ByteBuffer}, which may be a heap or a direct one.
+ * <p>
+ * Format (version 2), with all integers in big-endian order and arrays preceded by their length (-1 for null):
+ * <pre>
+ * byte     version
+ * byte[]   hash
+ * int      number of inputs, followed by each input:
+ *          byte[] prevTxHash, int outputIndex, byte[] signature
+ * int      number of outputs, followed by each output:
+ *          long value (satoshis), byte[] address (X.509 encoded)
+ * </pre>
+ * Version 1, with values as doubles in bitcoins, can still be decoded (rounding them to satoshis).
+ * This is independent of {@link Transaction#getRawTx()}, which must stay as it is since it defines the hash and the
+ * signed data.
+ * <p>
+ * Decoded addresses are interned, so the same key is decoded (and its bytes copied out of the buffer) once per codec:
+ * addresses already seen are looked up through a view of the buffer, and the outputs share the interned encoding.
+ * Hashes and signatures are copied, as {@link Transaction} keeps them in arrays. Not thread-safe.
+ */
+class TransactionCodec {
+    static final byte VERSION = 2;
+    private static final byte DOUBLE_VALUES_VERSION = 1;
+
+    /** keys decoded, by their X.509 encoding */
+    private final Map<ByteBuffer, DecodedKey> decodedKeys = new HashMap<>();
+    private final KeyFactory keyFactory;
+
+    TransactionCodec() {
+        try {
+            keyFactory = KeyFactory.getInstance("RSA");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** @return the number of bytes {@link #encode(Transaction, ByteBuffer)} writes for {@code tx} */
+    static int encodedSize(Transaction tx) {
+        int size = 1 + arraySize(tx.getHash()) + Integer.BYTES;
+        for (Transaction.Input in : tx.getInputs()) {
+            size += arraySize(in.prevTxHash) + Integer.BYTES + arraySize(in.signature);
+        }
+        size += Integer.BYTES;
+        for (Transaction.Output op : tx.getOutputs()) {
+            size += Long.BYTES + arraySize(op.getEncodedAddress());
+        }
+        return size;
+    }
+
+    /** @return a heap buffer, ready to be read, with {@code tx} encoded */
+    static ByteBuffer encode(Transaction tx) {
+        ByteBuffer buffer = ByteBuffer.allocate(encodedSize(tx));
+        encode(tx, buffer);
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Writes {@code tx} at the current position of {@code buffer}, which must have at least
+     * {@link #encodedSize(Transaction)} bytes remaining.
+     */
+    static void encode(Transaction tx, ByteBuffer buffer) {
+        buffer.put(VERSION);
+        putArray(buffer, tx.getHash());
+        buffer.putInt(tx.numInputs());
+        for (Transaction.Input in : tx.getInputs()) {
+            putArray(buffer, in.prevTxHash);
+            buffer.putInt(in.outputIndex);
+            putArray(buffer, in.signature);
+        }
+        buffer.putInt(tx.numOutputs());
+        for (Transaction.Output op : tx.getOutputs()) {
+            buffer.putLong(op.value);
+            putArray(buffer, op.getEncodedAddress());
+        }
+    }
+
+    /**
+     * Reads a transaction from the current position of {@code buffer}, leaving it after the transaction.
+     * @throws IllegalArgumentException if the data is not a valid encoded transaction.
+     */
+    Transaction decode(ByteBuffer buffer) {
+        try {
+            byte version = buffer.get();
+            if (version != VERSION && version != DOUBLE_VALUES_VERSION) {
+                throw new IllegalArgumentException("Unsupported transaction encoding version: " + version);
+            }
+
+            Transaction tx = new Transaction();
+            byte[] hash = getArray(buffer);
+            int numInputs = getCount(buffer);
+            for (int i = 0; i < numInputs; i++) {
+                byte[] prevTxHash = getArray(buffer);
+                tx.addInput(null, buffer.getInt());
+                Transaction.Input in = tx.getInput(i);
+                in.prevTxHash = prevTxHash;
+                in.signature = getArray(buffer);
+            }
+            int numOutputs = getCount(buffer);
+            for (int i = 0; i < numOutputs; i++) {
+                long value = version == VERSION
+                    ? buffer.getLong()
+                    : Math.round(buffer.getDouble() * Transaction.COIN);
+                DecodedKey address = getKey(buffer);
+                tx.addOutput(value, address.key, address.encoded);
+            }
+            tx.setHash(hash);
+            return tx;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated transaction", e);
+        }
+    }
+
+    /** @return the (interned) key X.509 encoded as {@code encodedAddress} */
+    PublicKey decodeKey(byte[] encodedAddress) {
+        if (encodedAddress == null) {
+            throw new IllegalArgumentException("Output without address");
+        }
+        return intern(encodedAddress).key;
+    }
+
+    static int arraySize(byte[] array) {
+        return Integer.BYTES + (array != null ? array.length : 0);
+    }
+
+    static void putArray(ByteBuffer buffer, byte[] array) {
+        if (array == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(array.length);
+            buffer.put(array);
+        }
+    }
+
+    static byte[] getArray(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length == -1) return null;
+        if (length < -1 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("Invalid array length: " + length);
+        }
+        byte[] array = new byte[length];
+        buffer.get(array);
+        return array;
+    }
+
+    private static final class DecodedKey {
+        final PublicKey key;
+        /** shared by all the outputs decoded with this key */
+        final byte[] encoded;
+
+        DecodedKey(PublicKey key, byte[] encoded) {
+            this.key = key;
+            this.encoded = encoded;
+        }
+    }
+
+    private DecodedKey intern(byte[] encodedAddress) {
+        return decodedKeys.computeIfAbsent(ByteBuffer.wrap(encodedAddress), k -> {
+            try {
+                return new DecodedKey(
+                    keyFactory.generatePublic(new X509EncodedKeySpec(encodedAddress)), encodedAddress);
+            } catch (InvalidKeySpecException e) {
+                throw new IllegalArgumentException("Invalid address", e);
+            }
+        });
+    }
+
+    /** Same as {@link #decodeKey} for the array at the current position of {@code buffer}, copied only if not known */
+    private DecodedKey getKey(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length == -1) throw new IllegalArgumentException("Output without address");
+        if (length < -1 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("Invalid array length: " + length);
+        }
+
+        ByteBuffer view = buffer.slice();
+        view.limit(length);
+        DecodedKey key = decodedKeys.get(view);
+        if (key == null) {
+            byte[] encodedAddress = new byte[length];
+            view.get(encodedAddress);
+            key = intern(encodedAddress);
+        }
+        buffer.position(buffer.position() + length);
+        return key;
+    }
+
+    private static int getCount(ByteBuffer buffer) {
+        int count = buffer.getInt();
+        if (count < 0 || count > buffer.remaining()) {
+            throw new IllegalArgumentException("Invalid element count: " + count);
+        }
+        return count;
+    }
+}
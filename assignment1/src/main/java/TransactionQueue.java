@@ -0,0 +1,77 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Bounded queue to stream the transactions of a block from a producer thread to
+ * {@link TxHandler#handleTxs(Iterator, java.util.function.Consumer)}: {@link #put} blocks while the queue is full, so
+ * the producer can't get ahead of the validation by more than the capacity of the queue.
+ * <p>
+ * The producer must {@link #close()} the queue at the end of the block (even if it fails, so the validation ends).
+ * Closing never blocks, so it is safe in a try-with-resources block even if the validation stopped consuming. The
+ * queue is iterated once, by a single consumer thread, whose {@link #hasNext()} blocks until a transaction is available
+ * or the queue is closed and drained.
+ */
+public class TransactionQueue implements Iterator<Transaction>, AutoCloseable {
+    /** put after the last transaction */
+    private static final Transaction END = new Transaction();
+
+    private final BlockingQueue<Transaction> queue;
+    /** set before offering {@link #END} */
+    private volatile boolean closed;
+    private Transaction next;
+
+    public TransactionQueue(int capacity) {
+        queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Adds {@code tx} at the end of the block, waiting for space if the queue is full
+     * @throws IllegalStateException if the queue is closed.
+     */
+    public void put(Transaction tx) throws InterruptedException {
+        if (closed) throw new IllegalStateException("The queue is closed");
+        queue.put(tx);
+    }
+
+    /** Ends the block, without waiting for space if the queue is full (the consumer ends once it drains it) */
+    @Override
+    public void close() {
+        closed = true;
+        queue.offer(END);
+    }
+
+    /** @throws IllegalStateException if the thread is interrupted while waiting. */
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            next = queue.poll();
+        }
+        if (next == null) {
+            //txs are put before closing, and END is offered after, so a closed queue is drained without waiting (END
+            //doesn't fit if it was full)
+            if (closed) {
+                next = queue.poll();
+                if (next == null) next = END;
+            } else {
+                try {
+                    next = queue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for transactions", e);
+                }
+            }
+        }
+        return next != END;
+    }
+
+    @Override
+    public Transaction next() {
+        if (! hasNext()) throw new NoSuchElementException();
+
+        Transaction tx = next;
+        next = null;
+        return tx;
+    }
+}
@@ -1,5 +1,7 @@
 import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -7,8 +9,20 @@ import static java.nio.ByteBuffer.wrap;
 
 @SuppressWarnings("WeakerAccess")
 public class TxHandler {
+    /** maximum transactions pulled ahead by {@link #handleTxs(Iterator, Consumer)} to verify their signatures */
+    public static final int STREAM_READ_AHEAD = 1024;
 
     private UTXOPool utxoPool;
+    private final BlockSignatureVerifier signatureVerifier;
+    private final BlockValidationEngine validationEngine;
+    private final SignatureCache signatureCache;
+    /** verifies a single signature, through the cache if any */
+    private final BlockSignatureVerifier.SignatureCheck signatureCheck;
+    private final TxHandlerMetrics metrics;
+    private final RejectedTxCache rejectedTxCache;
+    private final UndoJournal undoJournal;
+    /** blocks handled, net of the ones rolled back */
+    private long epoch;
 
     /**
      * Creates a public ledger whose current UTXOPool (collection of unspent transaction outputs) is
@@ -16,7 +30,90 @@ public class TxHandler {
      * constructor.
      */
     public TxHandler(UTXOPool utxoPool) {
+        this(utxoPool, newBuilder());
+    }
+
+    /** Same as {@link #TxHandler(UTXOPool)} but with the options of {@code builder} (see {@link Builder}) */
+    protected TxHandler(UTXOPool utxoPool, Builder builder) {
         this.utxoPool = new UTXOPool(utxoPool);
+        this.undoJournal = builder.undoJournal;
+        this.validationEngine = builder.validationEngine;
+        this.signatureCache = builder.signatureCache;
+        this.metrics = builder.metrics;
+        this.rejectedTxCache = builder.rejectedTxCache;
+        BlockSignatureVerifier.SignatureCheck verification = isMeasured()
+            ? counted(BlockSignatureVerifier.SERIAL, metrics::signatureVerified)
+            : BlockSignatureVerifier.SERIAL;
+        BlockSignatureVerifier.SignatureCheck cachedVerification = signatureCache != null
+            ? signatureCache.cached(verification)
+            : verification;
+        this.signatureCheck = isMeasured()
+            ? counted(cachedVerification, metrics::signatureChecked)
+            : cachedVerification;
+        this.signatureVerifier = builder.verificationPool != null
+            ? new BlockSignatureVerifier(builder.verificationPool, signatureCheck)
+            : null;
+    }
+
+    /** @return a builder of handlers with the default options, which {@link #TxHandler(UTXOPool)} uses */
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /** @return the current UTXO pool, which must not be modified */
+    public UTXOPool getUTXOPool() {
+        return utxoPool;
+    }
+
+    /** @return the signature verification cache, null if there is none */
+    public SignatureCache getSignatureCache() {
+        return signatureCache;
+    }
+
+    /** @return the cache of permanently invalid transactions, null if there is none */
+    public RejectedTxCache getRejectedTxCache() {
+        return rejectedTxCache;
+    }
+
+    /** @return the journal of undo records, null if there is none */
+    public UndoJournal getUndoJournal() {
+        return undoJournal;
+    }
+
+    /** @return the number of blocks handled (the current epoch), net of the ones rolled back */
+    public long getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * Reverts the blocks handled after {@code epoch}, so the pool is again the one at the end of that epoch, undoing
+     * the records of the {@link UndoJournal} (so the cost is proportional to the size of the blocks undone).
+     * @throws IllegalStateException if there's no undo journal.
+     * @throws IllegalArgumentException if {@code epoch} is later than the current one or earlier than the oldest one
+     *         kept by the journal.
+     * @throws java.io.UncheckedIOException if reading a spilled record fails, in which case the blocks after it are
+     *         already rolled back (see {@link #getEpoch()}).
+     */
+    public void rollback(long epoch) {
+        if (undoJournal == null) throw new IllegalStateException("There's no undo journal");
+        if (epoch > this.epoch || epoch < undoJournal.earliestEpoch()) {
+            throw new IllegalArgumentException("Can't roll back from epoch " + this.epoch + " to " + epoch);
+        }
+
+        UTXOPool pool = new UTXOPool(utxoPool);
+        try {
+            while (this.epoch > epoch) {
+                undoJournal.pop().undo(pool);
+                --this.epoch;
+            }
+        } finally {
+            utxoPool = pool;
+        }
+    }
+
+    /** Replaces the current UTXO pool with {@code utxoPool}, which must have the same UTXOs */
+    void replaceUTXOPool(UTXOPool utxoPool) {
+        this.utxoPool = utxoPool;
     }
 
     /**
@@ -29,7 +126,39 @@ public class TxHandler {
      *     values; and false otherwise.
      */
     public boolean isValidTx(Transaction tx) {
-        return isValidTx(tx, utxoPool);
+        return validateTx(tx).isValid();
+    }
+
+    /**
+     * Same as {@link #isValidTx(Transaction)}, but telling which rule {@code tx} breaks, if any, and whether it can
+     * be valid later (e.g. it spends outputs which are not in the pool yet).
+     */
+    public ValidationResult validateTx(Transaction tx) {
+        return validateTx(tx, utxoPool, signatureCheck);
+    }
+
+    /**
+     * Same as {@link #validateTx(Transaction)}, applying {@code tx} to the current pool if valid. Unlike
+     * {@link #handleTxs}, it doesn't end an epoch (no undo record is kept nor block measured), so it is the way to
+     * accept transactions one at a time as they arrive (see {@link Mempool}).
+     * @throws IllegalStateException if there's an undo journal, as {@code tx} couldn't be rolled back.
+     */
+    public ValidationResult applyTx(Transaction tx) {
+        if (undoJournal != null) throw new IllegalStateException("A transaction applied alone can't be rolled back");
+
+        ValidationResult result = validateTx(tx);
+        if (result.isValid()) {
+            //the current pool may be held by callers, so it is replaced (copies are O(1), see PersistentHashMap)
+            UTXOPool pool = new UTXOPool(utxoPool);
+            for (Transaction.Input input : tx.getInputs()) {
+                pool.removeUTXO(new UTXO(input.prevTxHash, input.outputIndex));
+            }
+            for (int i = 0; i < tx.numOutputs(); i++) {
+                pool.addUTXO(new UTXO(tx.getHash(), i), tx.getOutput(i));
+            }
+            utxoPool = pool;
+        }
+        return result;
     }
 
     /**
@@ -38,101 +167,172 @@ public class TxHandler {
      * updating the current UTXO pool as appropriate.
      */
     public Transaction[] handleTxs(Transaction[] possibleTxs) {
-        /*
-        Note: this implementation is intended to be clear not performing.
+        long start = isMeasured() ? System.nanoTime() : 0;
+        //known to be invalid, so neither their signatures are verified nor their dependents are found in the block
+        Transaction[] candidateTxs = rejectedTxCache != null
+            ? Arrays.stream(possibleTxs).filter(this::isNotKnownInvalid).toArray(Transaction[]::new)
+            : possibleTxs;
+        Map<ByteBuffer, Transaction> idToTx =
+            Arrays.stream(candidateTxs).collect(Collectors.toMap(t -> wrap(t.getHash()), Function.identity()));
 
-        Starts with a ValidationCtx with empty txIds and the current UTXOPool.
-        For each Transaction, check if it is valid.
-        To validate a transaction, the ValidationCtx is used. If the required tx is in the Ctx, nothing needs to be
-        done and the same context is returned. Otherwise, recurse to check all in-block TXs required for this to be
-        valid. Since a tx may be valid for one context but not for another, the TXs need to be checked each time.
+        BlockSignatureVerifier.SignatureCheck blockSignatureCheck = signatureVerifier != null
+            ? signatureVerifier.verify(candidateTxs, idToTx, utxoPool)
+            : signatureCheck;
 
-        Possible optimizations, check if there is an unrecoverable error (bad signature, negative output, etc) to avoid
-        double checking a tx.
-         */
+        BlockValidationEngine.Result result = validationEngine.validate(
+            candidateTxs, idToTx, utxoPool, (tx, pool) -> validateTx(tx, pool, blockSignatureCheck).isValid(),
+            metrics);
 
-        Map<ByteBuffer, Transaction> idToTx =
-            Arrays.stream(possibleTxs).collect(Collectors.toMap(t -> wrap(t.getHash()), Function.identity()));
+        endEpoch(result.accepted, result.utxoPool);
+        if (isMeasured()) {
+            metrics.blockHandled(
+                System.nanoTime() - start, possibleTxs.length, result.accepted.size(), utxoPool.size());
+        }
+        return result.accepted.stream().toArray(Transaction[]::new);
+    }
 
-        ValidationCtx ctx = new ValidationCtx(Collections.emptySet(), utxoPool);
-        List<Transaction> accepted = new ArrayList<>(possibleTxs.length);
+    /**
+     * Streaming version of {@link #handleTxs(Transaction[])}, which doesn't need the whole block in memory: validates
+     * the transactions as they are pulled from {@code possibleTxs} and passes each one accepted to
+     * {@code acceptedTxs} right away. So the block can be produced as it is validated, e.g. through a
+     * {@link TransactionQueue}, which blocks the producer while the validation is behind.
+     * <p>
+     * Transactions are validated in arrival order (regardless of the validation engine), keeping only the ones whose
+     * parents didn't arrive yet until they do (see {@link StreamingBlockValidator}). If signatures are verified up
+     * front, up to {@link #STREAM_READ_AHEAD} transactions are pulled ahead to verify them in parallel.
+     * <p>
+     * The pool is updated once the block ends. If either {@code possibleTxs} or {@code acceptedTxs} throw, the block is
+     * discarded (although some transactions may have been passed to {@code acceptedTxs}).
+     * @return the number of accepted transactions.
+     */
+    public int handleTxs(Iterator<Transaction> possibleTxs, Consumer<Transaction> acceptedTxs) {
+        long start = isMeasured() ? System.nanoTime() : 0;
+        List<Transaction> block = undoJournal != null ? new ArrayList<>() : null;
+        StreamingBlockValidator validator = new StreamingBlockValidator(
+            this, new UTXOPool(utxoPool), signatureCheck, signatureVerifier, STREAM_READ_AHEAD,
+            block != null ? acceptedTxs.andThen(block::add) : acceptedTxs, metrics);
+        validator.validate(possibleTxs);
+        endEpoch(block, validator.utxoPool());
+        if (isMeasured()) {
+            metrics.blockHandled(
+                System.nanoTime() - start, validator.proposedCount(), validator.acceptedCount(), utxoPool.size());
+        }
+        return validator.acceptedCount();
+    }
 
-        for (Transaction possibleTx : possibleTxs) {
-            try {
-                ValidationCtx newValidCtx = generateValidationContext(possibleTx, ctx, idToTx);
-                accepted.add(possibleTx);
-                ctx = newValidCtx;
-            } catch (InvalidTxException e) {
-                //invalid tx will be ignored
-            }
+    /**
+     * Validates {@code tx} for {@code utxoPool}, checking signatures with {@code signatureCheck}, unless it is known to
+     * be invalid. The rule broken, if any, is reported to the metrics.
+     */
+    ValidationResult validateTx(
+        Transaction tx, UTXOPool utxoPool, BlockSignatureVerifier.SignatureCheck signatureCheck)
+    {
+        ValidationResult result = rejectedTxCache != null ? rejectedTxCache.get(tx) : null;
+        if (result == null) {
+            result = check(tx, utxoPool, signatureCheck);
+            if (rejectedTxCache != null) rejectedTxCache.record(tx, result);
         }
+        if (! result.isValid()) metrics.txRejected(result.getBrokenRule());
+        return result;
+    }
 
-        utxoPool = ctx.utxoPool;
-        return accepted.stream().toArray(Transaction[]::new);
+    /** @return the result {@code tx} was permanently rejected with, if cached */
+    ValidationResult knownRejection(Transaction tx) {
+        return rejectedTxCache != null ? rejectedTxCache.get(tx) : null;
     }
 
-    // ------------------------------------------------------------------
-    private static class InvalidTxException extends Exception {}
+    /**
+     * Options of {@link TxHandler}s. The caches are created along with the builder, so the handlers it builds share
+     * them.
+     */
+    public static class Builder {
+        private ForkJoinPool verificationPool;
+        private BlockValidationEngine validationEngine = new RecursiveValidationEngine();
+        private SignatureCache signatureCache = new SignatureCache();
+        private TxHandlerMetrics metrics = TxHandlerMetrics.NONE;
+        private RejectedTxCache rejectedTxCache = new RejectedTxCache();
+        private UndoJournal undoJournal;
 
-    private static class ValidationCtx {
-        private final Set<ByteBuffer> txIds;
-        private final UTXOPool utxoPool;
+        Builder() {}
 
-        ValidationCtx(Set<ByteBuffer> txIds, UTXOPool utxoPool) {
-            this.txIds = txIds;
-            this.utxoPool = utxoPool;
+        /**
+         * If not null, {@link TxHandler#handleTxs} verifies all the input signatures of the block up front using
+         * {@code verificationPool} (see {@link BlockSignatureVerifier}). Null by default.
+         */
+        public Builder verificationPool(ForkJoinPool verificationPool) {
+            this.verificationPool = verificationPool;
+            return this;
         }
-    }
 
-    private ValidationCtx generateValidationContext(
-        Transaction possibleTx, ValidationCtx ctx, Map<ByteBuffer, Transaction> idToTx)
-        throws InvalidTxException
-    {
-        //nothing to be done, the TX is already valid for this ctx
-        if (ctx.txIds.contains(wrap(possibleTx.getHash()))) return ctx;
-
-        ValidationCtx newValidCtx = ctx;
-        for (Transaction.Input input : possibleTx.getInputs()) {
-            Transaction txInBlock = idToTx.get(wrap(input.prevTxHash));
-            if (txInBlock != null) {
-                /* possibleTx can only be valid if the TX for the input is also valid
-                 * Note: due to causality of transactions I assume there are no loops in the dependency graph between
-                 * in-block transactions (additional state would validate this assumption)
-                 */
-                newValidCtx = generateValidationContext(txInBlock, newValidCtx, idToTx);
-            }
+        /** Selects the transactions of each block with {@code validationEngine} ({@link RecursiveValidationEngine}) */
+        public Builder validationEngine(BlockValidationEngine validationEngine) {
+            this.validationEngine = validationEngine;
+            return this;
+        }
+
+        /**
+         * Caches signature verifications in {@code signatureCache} (which may be shared between handlers), or doesn't
+         * cache them if it is null. By default a {@link SignatureCache} of
+         * {@link SignatureCache#DEFAULT_MAXIMUM_SIZE}.
+         */
+        public Builder signatureCache(SignatureCache signatureCache) {
+            this.signatureCache = signatureCache;
+            return this;
+        }
+
+        /** Reports measurements to {@code metrics} ({@link TxHandlerMetrics#NONE}) */
+        public Builder metrics(TxHandlerMetrics metrics) {
+            this.metrics = metrics;
+            return this;
         }
 
-        //verify this TX is valid
-        if (! isValidTx(possibleTx, newValidCtx.utxoPool)) {
-            throw new InvalidTxException();
+        /**
+         * Keeps the transactions found permanently invalid in {@code rejectedTxCache} (which may be shared between
+         * handlers), so they are rejected right away when proposed again, or doesn't keep them if it is null. By
+         * default a {@link RejectedTxCache} of {@link RejectedTxCache#DEFAULT_MAXIMUM_SIZE}.
+         */
+        public Builder rejectedTxCache(RejectedTxCache rejectedTxCache) {
+            this.rejectedTxCache = rejectedTxCache;
+            return this;
         }
 
-        //update UTXOPool to generate resulting validation context
-        UTXOPool resultPool = new UTXOPool(newValidCtx.utxoPool);
-        for (Transaction.Input input : possibleTx.getInputs()) {
-            resultPool.removeUTXO(new UTXO(input.prevTxHash, input.outputIndex));
+        /**
+         * Keeps the undo record of each block handled in {@code undoJournal} (which must not be used by other
+         * handlers), so the handler can be {@link TxHandler#rollback rolled back}, or doesn't keep them if it is null
+         * (the default).
+         */
+        public Builder undoJournal(UndoJournal undoJournal) {
+            this.undoJournal = undoJournal;
+            return this;
         }
-        for (int i = 0; i < possibleTx.getOutputs().size(); i++) {
-            resultPool.addUTXO(new UTXO(possibleTx.getHash(), i), possibleTx.getOutput(i));
+
+        /** @return a handler whose pool is a copy of {@code utxoPool} */
+        public TxHandler build(UTXOPool utxoPool) {
+            return new TxHandler(utxoPool, this);
         }
-        Set<ByteBuffer> newTxIds = new HashSet<>(newValidCtx.txIds);
-        newTxIds.add(wrap(possibleTx.getHash()));
+    }
 
-        return new ValidationCtx(newTxIds, resultPool);
+    // ------------------------------------------------------------------
+    private boolean isNotKnownInvalid(Transaction tx) {
+        ValidationResult rejection = knownRejection(tx);
+        if (rejection != null) metrics.txRejected(rejection.getBrokenRule());
+        return rejection == null;
     }
 
     /**
-     * @return true if:
+     * @return {@link ValidationResult#VALID} if:
      * (1) all outputs claimed by {@code tx} are in the {@code utxoPool},
      * (2) the signatures on each input of {@code tx} are valid,
      * (3) no UTXO is claimed multiple times by {@code tx},
      * (4) all of {@code tx}s output values are non-negative, and
      * (5) the sum of {@code tx}s input values is greater than or equal to the sum of its output
-     *     values; and false otherwise.
+     *     values; and the first rule broken otherwise.
+     * Signatures (2) are checked using {@code signatureCheck}. Sums which overflow are not valid either.
      */
-    private static boolean isValidTx(Transaction tx, UTXOPool utxoPool) {
-        double inputSumRemaining = 0;
+    private static ValidationResult check(
+        Transaction tx, UTXOPool utxoPool, BlockSignatureVerifier.SignatureCheck signatureCheck)
+    {
+        long inputSumRemaining = 0;
         Set<UTXO> claimedUtxos = new HashSet<>();
         for (int i = 0; i < tx.getInputs().size(); i++) {
             Transaction.Input input = tx.getInput(i);
@@ -140,32 +340,67 @@ public class TxHandler {
 
             //validate (1)
             if (! utxoPool.contains(utxo))
-                return false;
+                return ValidationResult.invalid(ValidationRule.OUTPUT_IN_POOL, i);
 
             //validate (3)
             if (! claimedUtxos.add(utxo)) {
-                return false;
+                return ValidationResult.invalid(ValidationRule.SINGLE_CLAIM, i);
             }
 
             //validate (2)
-            if (! Crypto.verifySignature(utxoPool.getTxOutput(utxo).address, tx.getRawDataToSign(i), input.signature)) {
-                return false;
+            if (! signatureCheck.isValid(tx, i, utxoPool.getTxOutput(utxo).address)) {
+                return ValidationResult.invalid(ValidationRule.VALID_SIGNATURE, i);
             }
 
             //to validate (5)
             Transaction.Output correspondingOutput = utxoPool.getTxOutput(utxo);
-            inputSumRemaining += correspondingOutput.value;
+            try {
+                inputSumRemaining = Math.addExact(inputSumRemaining, correspondingOutput.value);
+            } catch (ArithmeticException e) {
+                return ValidationResult.invalid(ValidationRule.NO_OVERFLOW, i);
+            }
         }
 
-        for (Transaction.Output output : tx.getOutputs()) {
+        for (int i = 0; i < tx.numOutputs(); i++) {
+            Transaction.Output output = tx.getOutput(i);
             //validate (4)
             if (output.value < 0)
-                return false;
+                return ValidationResult.invalid(ValidationRule.NON_NEGATIVE_OUTPUT, i);
 
             //to validate (5)
-            inputSumRemaining -= output.value;
+            try {
+                inputSumRemaining = Math.subtractExact(inputSumRemaining, output.value);
+            } catch (ArithmeticException e) {
+                return ValidationResult.invalid(ValidationRule.NO_OVERFLOW, -1);
+            }
         }
         //validate (5)
-        return inputSumRemaining >= 0;
+        return inputSumRemaining >= 0
+            ? ValidationResult.VALID
+            : ValidationResult.invalid(ValidationRule.INPUTS_COVER_OUTPUTS, -1);
+    }
+
+    /**
+     * Ends the current epoch, replacing the pool with {@code utxoPool}, the result of applying {@code acceptedTxs}
+     * (only needed if there's an undo journal).
+     */
+    private void endEpoch(List<Transaction> acceptedTxs, UTXOPool utxoPool) {
+        if (undoJournal != null) undoJournal.push(epoch + 1, UndoRecord.of(acceptedTxs, this.utxoPool));
+        this.utxoPool = utxoPool;
+        ++epoch;
+    }
+
+    private boolean isMeasured() {
+        return metrics != TxHandlerMetrics.NONE;
+    }
+
+    /** @return {@code check}, calling {@code counter} on each check */
+    private static BlockSignatureVerifier.SignatureCheck counted(
+        BlockSignatureVerifier.SignatureCheck check, Runnable counter)
+    {
+        return (tx, inputIdx, address) -> {
+            counter.run();
+            return check.isValid(tx, inputIdx, address);
+        };
     }
 }
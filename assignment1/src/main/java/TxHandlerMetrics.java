@@ -0,0 +1,32 @@
+/**
+ * Receives measurements of the hot paths of {@link TxHandler}, e.g. to feed a metrics library. All methods do nothing
+ * by default, so implementations only override the ones they are interested in.
+ * <p>
+ * Methods may be called concurrently (e.g. signatures verified up front) and must be cheap, as they are called for
+ * each transaction or signature. With {@link #NONE} (the default) the handler doesn't even take the measurements.
+ */
+public interface TxHandlerMetrics {
+    /** doesn't record anything */
+    TxHandlerMetrics NONE = new TxHandlerMetrics() {};
+
+    /**
+     * A block was handled, taking {@code nanos}.
+     * @param utxoPoolSize size of the resulting pool.
+     */
+    default void blockHandled(long nanos, int proposedTxs, int acceptedTxs, int utxoPoolSize) {}
+
+    /** A signature was checked, either verified or answered by the signature cache */
+    default void signatureChecked() {}
+
+    /** A signature was actually verified (so checks minus verifications are the cache hits) */
+    default void signatureVerified() {}
+
+    /** A transaction was found invalid for breaking {@code rule} (each time it is checked) */
+    default void txRejected(ValidationRule rule) {}
+
+    /**
+     * A proposed transaction was validated along with a chain of {@code depth} in-block transactions it depends on
+     * (only reported by the engines which recurse into the dependencies).
+     */
+    default void dependencyDepth(int depth) {}
+}
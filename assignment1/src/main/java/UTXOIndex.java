@@ -0,0 +1,17 @@
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/** Read access to a set of UTXOs and their outputs, the base on top of which a {@link UTXOPool} records changes */
+interface UTXOIndex {
+
+    int size();
+
+    boolean containsKey(UTXO utxo);
+
+    /** @return the output of {@code utxo}, or null if it is not in the index */
+    Transaction.Output get(UTXO utxo);
+
+    void forEach(BiConsumer<? super UTXO, ? super Transaction.Output> action);
+
+    void forEachUTXO(Consumer<? super UTXO> action);
+}
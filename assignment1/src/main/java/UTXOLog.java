@@ -0,0 +1,183 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, memory-mapped log of the UTXO changes of each committed block.
+ * <p>
+ * Each commit is written as a single frame which is forced to the storage device before returning:
+ * <pre>
+ * int      frame length, header included (0 marks the end of the log)
+ * long     sequence, consecutive from the previous frame
+ * int      CRC32 of the sequence and the payload
+ * payload  changes: byte REMOVE, byte[] tx hash, int index
+ *                   byte ADD, byte[] tx hash, int index, long value, byte[] address (X.509 encoded)
+ * </pre>
+ * The changes of a commit are the net ones of its block (all the removals, then all the additions), not the ones of
+ * each transaction: the transactions of a block may be in any order (e.g. a child before its parent), so replaying
+ * them in order could restore outputs spent in the same block.
+ * So a frame partially written (e.g. the process being killed) fails its CRC, and it is ignored (and overwritten)
+ * along with anything after it when the log is opened again.
+ */
+final class UTXOLog implements Closeable {
+    private static final int SEQUENCE_OFFSET = Integer.BYTES;
+    private static final int CHECKSUM_OFFSET = SEQUENCE_OFFSET + Long.BYTES;
+    private static final int FRAME_HEADER_BYTES = CHECKSUM_OFFSET + Integer.BYTES;
+    private static final int MIN_MAPPED_BYTES = 1 << 20;
+    private static final byte REMOVE = 1;
+    private static final byte ADD = 2;
+    /** outer instance of the outputs read from the log, which don't belong to an actual transaction */
+    private static final Transaction OUTPUTS_OWNER = new Transaction();
+
+    private final FileChannel channel;
+    private MappedByteBuffer buffer;
+    private long lastSequence;
+
+    /**
+     * Opens (or creates) the log at {@code file}, applying to {@code utxoPool} the commits after
+     * {@code snapshotSequence} (the ones before are already in the pool), decoding addresses with {@code codec}.
+     */
+    UTXOLog(Path file, long snapshotSequence, UTXOPool utxoPool, TransactionCodec codec) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(MIN_MAPPED_BYTES, channel.size()));
+        lastSequence = snapshotSequence;
+        replay(snapshotSequence, utxoPool, codec);
+    }
+
+    /** @return sequence of the last commit (the snapshot one if there are none) */
+    long lastSequence() {
+        return lastSequence;
+    }
+
+    /** @return bytes used by the log */
+    int size() {
+        return buffer.position();
+    }
+
+    /**
+     * Appends (and forces) a new commit with the UTXO changes of a block: removing the outputs {@code block} spent and
+     * adding the ones it created, whose {@link Transaction.Output}s are taken from {@code utxoPool} (the pool once the
+     * block is applied).
+     */
+    void append(UndoRecord block, UTXOPool utxoPool) throws IOException {
+        int payloadSize = 0;
+        for (UTXO utxo : block.spent()) {
+            payloadSize += 1 + TransactionCodec.arraySize(utxo.getTxHash()) + Integer.BYTES;
+        }
+        for (UTXO utxo : block.created()) {
+            payloadSize += 1 + TransactionCodec.arraySize(utxo.getTxHash()) + Integer.BYTES + Long.BYTES
+                + TransactionCodec.arraySize(utxoPool.getTxOutput(utxo).getEncodedAddress());
+        }
+        ensureRemaining(FRAME_HEADER_BYTES + payloadSize + Integer.BYTES);
+
+        int frameStart = buffer.position();
+        buffer.position(frameStart + FRAME_HEADER_BYTES);
+        for (UTXO utxo : block.spent()) {
+            buffer.put(REMOVE);
+            TransactionCodec.putArray(buffer, utxo.getTxHash());
+            buffer.putInt(utxo.getIndex());
+        }
+        for (UTXO utxo : block.created()) {
+            Transaction.Output op = utxoPool.getTxOutput(utxo);
+            buffer.put(ADD);
+            TransactionCodec.putArray(buffer, utxo.getTxHash());
+            buffer.putInt(utxo.getIndex());
+            buffer.putLong(op.value);
+            TransactionCodec.putArray(buffer, op.getEncodedAddress());
+        }
+        long sequence = lastSequence + 1;
+        buffer.putInt(frameStart + CHECKSUM_OFFSET, checksum(sequence, frameStart, payloadSize));
+        buffer.putLong(frameStart + SEQUENCE_OFFSET, sequence);
+        buffer.putInt(frameStart, FRAME_HEADER_BYTES + payloadSize);
+        buffer.force();
+        lastSequence = sequence;
+    }
+
+    /** Empties the log, whose commits up to {@code sequence} are now in a snapshot */
+    void reset(long sequence) throws IOException {
+        channel.truncate(0);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, MIN_MAPPED_BYTES);
+        channel.force(true);
+        lastSequence = sequence;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // ------------------------------------------------------------------
+    private void replay(long snapshotSequence, UTXOPool utxoPool, TransactionCodec codec) throws IOException {
+        while (buffer.remaining() >= FRAME_HEADER_BYTES) {
+            int frameStart = buffer.position();
+            int payloadSize = buffer.getInt(frameStart) - FRAME_HEADER_BYTES;
+            long sequence = buffer.getLong(frameStart + SEQUENCE_OFFSET);
+            if (payloadSize < 0 || payloadSize > buffer.remaining() - FRAME_HEADER_BYTES) break;
+            if (buffer.getInt(frameStart + CHECKSUM_OFFSET) != checksum(sequence, frameStart, payloadSize)) break;
+            //commits up to the snapshot may remain if the process ended before the log was reset
+            if (sequence > snapshotSequence && sequence != lastSequence + 1) break;
+
+            ByteBuffer payload = buffer.duplicate();
+            payload.position(frameStart + FRAME_HEADER_BYTES).limit(frameStart + FRAME_HEADER_BYTES + payloadSize);
+            if (sequence > snapshotSequence) {
+                apply(payload, utxoPool, codec);
+                lastSequence = sequence;
+            }
+            buffer.position(payload.limit());
+        }
+
+        //whatever follows the last commit is discarded
+        int dataEnd = buffer.limit();
+        while (dataEnd > buffer.position() && buffer.get(dataEnd - 1) == 0) --dataEnd;
+        for (int i = buffer.position(); i < dataEnd; i++) {
+            buffer.put(i, (byte) 0);
+        }
+        buffer.force();
+    }
+
+    private static void apply(ByteBuffer payload, UTXOPool utxoPool, TransactionCodec codec) throws IOException {
+        try {
+            while (payload.hasRemaining()) {
+                byte change = payload.get();
+                UTXO utxo = new UTXO(TransactionCodec.getArray(payload), payload.getInt());
+                if (change == REMOVE) {
+                    utxoPool.removeUTXO(utxo);
+                } else if (change == ADD) {
+                    long value = payload.getLong();
+                    utxoPool.addUTXO(utxo, OUTPUTS_OWNER.new Output(value, codec.decodeKey(
+                        TransactionCodec.getArray(payload))));
+                } else {
+                    throw new IOException("Invalid change type: " + change);
+                }
+            }
+        } catch (RuntimeException e) {
+            //the CRC matched, so it was written this way
+            throw new IOException("Corrupted UTXO log", e);
+        }
+    }
+
+    private int checksum(long sequence, int frameStart, int payloadSize) {
+        CRC32 crc = new CRC32();
+        crc.update((ByteBuffer) ByteBuffer.allocate(Long.BYTES).putLong(sequence).flip());
+        ByteBuffer payload = buffer.duplicate();
+        payload.position(frameStart + FRAME_HEADER_BYTES).limit(frameStart + FRAME_HEADER_BYTES + payloadSize);
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    /** Grows the mapping (and file) if needed to write {@code bytes} more */
+    private void ensureRemaining(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) return;
+
+        long size = Math.max((long) buffer.capacity() * 2, (long) buffer.position() + bytes);
+        if (size > Integer.MAX_VALUE) throw new IOException("UTXO log too big, a snapshot is needed");
+        int position = buffer.position();
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        buffer.position(position);
+    }
+}
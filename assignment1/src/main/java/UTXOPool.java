@@ -1,32 +1,75 @@
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Set;
+import java.util.function.BiConsumer;
 
 public class UTXOPool {
+    /** changes after which they are merged into a new (unshared) base, at least */
+    private static final int MIN_CHANGES_TO_MERGE = 1024;
+    /** marks, in {@link #changes}, the UTXOs removed from {@link #base} */
+    private static final Transaction.Output REMOVED = new Transaction().new Output(0, null);
 
     /**
-     * The current collection of UTXOs, with each one mapped to its corresponding transaction output
+     * The current collection of UTXOs, with each one mapped to its corresponding transaction output, is {@code base}
+     * with {@code changes} on top.
+     * <p>
+     * A compact base is modified in place until the pool is copied. From then on it is shared, so both pools record
+     * their changes in a persistent map (which is also O(1) to copy), until there are enough of them to be worth
+     * merging into a new base owned by the pool. Other bases (as a {@link MappedUTXOIndex}) are never modified nor
+     * merged.
      */
-    private HashMap<UTXO, Transaction.Output> H;
+    private UTXOIndex base;
+    private boolean baseShared;
+    private PersistentHashMap<UTXO, Transaction.Output> changes;
+    private int size;
 
     /** Creates a new empty UTXOPool */
     public UTXOPool() {
-        H = new HashMap<UTXO, Transaction.Output>();
+        base = new CompactUTXOIndex();
+        changes = new PersistentHashMap<UTXO, Transaction.Output>();
     }
 
-    /** Creates a new UTXOPool that is a copy of {@code uPool} */
+    /** Creates a new UTXOPool with the UTXOs of {@code base}, which is not modified */
+    UTXOPool(UTXOIndex base) {
+        this.base = base;
+        baseShared = true;
+        changes = new PersistentHashMap<UTXO, Transaction.Output>();
+        size = base.size();
+    }
+
+    /**
+     * Creates a new UTXOPool that is a copy of {@code uPool}. This is O(1), both pools share their structure and only
+     * the parts being modified afterwards are copied.
+     */
     public UTXOPool(UTXOPool uPool) {
-        H = new HashMap<UTXO, Transaction.Output>(uPool.H);
+        uPool.baseShared = true;
+        base = uPool.base;
+        baseShared = true;
+        changes = uPool.changes.snapshot();
+        size = uPool.size;
     }
 
     /** Adds a mapping from UTXO {@code utxo} to transaction output @code{txOut} to the pool */
     public void addUTXO(UTXO utxo, Transaction.Output txOut) {
-        H.put(utxo, txOut);
+        if (! baseShared) {
+            if (((CompactUTXOIndex) base).put(utxo, txOut)) ++size;
+            return;
+        }
+        Transaction.Output previous = changes.put(utxo, txOut);
+        if (previous == REMOVED || (previous == null && ! base.containsKey(utxo))) ++size;
+        mergeChangesIfNeeded();
     }
 
     /** Removes the UTXO {@code utxo} from the pool */
     public void removeUTXO(UTXO utxo) {
-        H.remove(utxo);
+        if (! baseShared) {
+            if (((CompactUTXOIndex) base).remove(utxo)) --size;
+            return;
+        }
+        if (base.containsKey(utxo)) {
+            if (changes.put(utxo, REMOVED) != REMOVED) --size;
+            mergeChangesIfNeeded();
+        } else if (changes.remove(utxo) != null) {
+            --size;
+        }
     }
 
     /**
@@ -34,21 +77,63 @@ public class UTXOPool {
      *         not in the pool.
      */
     public Transaction.Output getTxOutput(UTXO ut) {
-        return H.get(ut);
+        if (! changes.isEmpty()) {
+            Transaction.Output changed = changes.get(ut);
+            if (changed != null) return changed != REMOVED ? changed : null;
+        }
+        return base.get(ut);
     }
 
     /** @return true if UTXO {@code utxo} is in the pool and false otherwise */
     public boolean contains(UTXO utxo) {
-        return H.containsKey(utxo);
+        if (! changes.isEmpty()) {
+            Transaction.Output changed = changes.get(utxo);
+            if (changed != null) return changed != REMOVED;
+        }
+        return base.containsKey(utxo);
+    }
+
+    /** @return the number of UTXOs in the pool */
+    public int size() {
+        return size;
     }
 
     /** Returns an {@code ArrayList} of all UTXOs in the pool */
     public ArrayList<UTXO> getAllUTXO() {
-        Set<UTXO> setUTXO = H.keySet();
-        ArrayList<UTXO> allUTXO = new ArrayList<UTXO>();
-        for (UTXO ut : setUTXO) {
-            allUTXO.add(ut);
-        }
+        ArrayList<UTXO> allUTXO = new ArrayList<UTXO>(base.size());
+        base.forEachUTXO(ut -> {
+            if (changes.isEmpty() || ! changes.containsKey(ut)) allUTXO.add(ut);
+        });
+        changes.forEach((ut, txOut) -> {
+            if (txOut != REMOVED) allUTXO.add(ut);
+        });
         return allUTXO;
     }
+
+    /** Calls {@code action} for each UTXO in the pool along with its output */
+    void forEach(BiConsumer<? super UTXO, ? super Transaction.Output> action) {
+        base.forEach((ut, txOut) -> {
+            if (changes.isEmpty() || ! changes.containsKey(ut)) action.accept(ut, txOut);
+        });
+        changes.forEach((ut, txOut) -> {
+            if (txOut != REMOVED) action.accept(ut, txOut);
+        });
+    }
+
+    private void mergeChangesIfNeeded() {
+        if (! (base instanceof CompactUTXOIndex)) return;
+        if (changes.size() < Math.max(MIN_CHANGES_TO_MERGE, base.size() / 2)) return;
+
+        CompactUTXOIndex merged = ((CompactUTXOIndex) base).copy();
+        changes.forEach((ut, txOut) -> {
+            if (txOut != REMOVED) {
+                merged.put(ut, txOut);
+            } else {
+                merged.remove(ut);
+            }
+        });
+        base = merged;
+        baseShared = false;
+        changes = new PersistentHashMap<UTXO, Transaction.Output>();
+    }
 }
@@ -0,0 +1,145 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Undo records of the last blocks handled by a {@link TxHandler} (one per epoch), so it can be rolled back to the pool
+ * of any of the last {@code maxEpochs} epochs (see {@link TxHandler#rollback(long)}) at a cost proportional to the
+ * size of the blocks undone, instead of rebuilding the pool.
+ * <p>
+ * The records of the last {@code maxInMemory} epochs are kept in memory. If a spill directory is given, the older ones
+ * are written there (one file per epoch) and read back when rolling back to them. A directory must be used by a single
+ * journal at a time, which deletes its files when closed. A journal must be used by a single handler. Not thread-safe.
+ */
+public class UndoJournal implements AutoCloseable {
+    private static final String FILE_SUFFIX = ".undo";
+
+    private final int maxEpochs;
+    private final int maxInMemory;
+    private final Path spillDirectory;
+    private final TransactionCodec codec = new TransactionCodec();
+    /** records not spilled, the oldest first */
+    private final Deque<UndoRecord> inMemory = new ArrayDeque<>();
+    /** spilled records, which are the oldest ones */
+    private int spilledCount;
+    /** epoch of the last record */
+    private long lastEpoch;
+
+    /** Creates a journal keeping the last {@code maxEpochs} records in memory */
+    public UndoJournal(int maxEpochs) {
+        this(maxEpochs, maxEpochs, null);
+    }
+
+    /** Creates a journal keeping the last {@code maxEpochs} records, spilling to {@code spillDirectory} */
+    public UndoJournal(int maxEpochs, int maxInMemory, Path spillDirectory) {
+        if (maxEpochs < 1 || maxInMemory < 0 || (maxInMemory < maxEpochs && spillDirectory == null)) {
+            throw new IllegalArgumentException(
+                "Can't keep " + maxEpochs + " epochs with " + maxInMemory + " in memory and " + spillDirectory);
+        }
+        this.maxEpochs = maxEpochs;
+        this.maxInMemory = maxInMemory;
+        this.spillDirectory = spillDirectory;
+    }
+
+    /** @return the number of epochs which can be rolled back */
+    public int size() {
+        return inMemory.size() + spilledCount;
+    }
+
+    /** @return the number of records spilled to disk */
+    public int spilledCount() {
+        return spilledCount;
+    }
+
+    /** Deletes the spilled records */
+    @Override
+    public void close() throws IOException {
+        while (spilledCount > 0) {
+            Files.deleteIfExists(file(firstEpoch()));
+            --spilledCount;
+        }
+        inMemory.clear();
+    }
+
+    /** @return the earliest epoch which can be rolled back to */
+    long earliestEpoch() {
+        return lastEpoch - size();
+    }
+
+    /**
+     * Adds the {@code record} of {@code epoch}, the one after the last record, dropping the oldest record if there
+     * are {@code maxEpochs}.
+     * @throws UncheckedIOException if spilling fails, in which case the record is not added.
+     */
+    void push(long epoch, UndoRecord record) {
+        inMemory.addLast(record);
+        if (inMemory.size() > maxInMemory) {
+            try {
+                spill(epoch - inMemory.size() + 1, inMemory.peekFirst());
+            } catch (IOException e) {
+                inMemory.pollLast();
+                throw new UncheckedIOException("Can't spill the undo record", e);
+            }
+            inMemory.pollFirst();
+            ++spilledCount;
+        }
+        lastEpoch = epoch;
+        if (size() > maxEpochs) dropFirst();
+    }
+
+    /**
+     * Removes the last record, which must exist.
+     * @throws UncheckedIOException if reading a spilled record fails, in which case it is not removed.
+     */
+    UndoRecord pop() {
+        UndoRecord record;
+        if (! inMemory.isEmpty()) {
+            record = inMemory.pollLast();
+        } else {
+            try {
+                Path file = file(lastEpoch);
+                record = UndoRecord.decode(ByteBuffer.wrap(Files.readAllBytes(file)), codec);
+                Files.delete(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Can't read the undo record of epoch " + lastEpoch, e);
+            } catch (IllegalArgumentException e) {
+                throw new UncheckedIOException(new IOException("Corrupted undo record of epoch " + lastEpoch, e));
+            }
+            --spilledCount;
+        }
+        --lastEpoch;
+        return record;
+    }
+
+    // ------------------------------------------------------------------
+    private long firstEpoch() {
+        return lastEpoch - size() + 1;
+    }
+
+    private Path file(long epoch) {
+        return spillDirectory.resolve(epoch + FILE_SUFFIX);
+    }
+
+    private void spill(long epoch, UndoRecord record) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(record.encodedSize());
+        record.encode(buffer);
+        Files.write(file(epoch), buffer.array());
+    }
+
+    private void dropFirst() {
+        if (spilledCount == 0) {
+            inMemory.pollFirst();
+            return;
+        }
+        try {
+            Files.deleteIfExists(file(firstEpoch()));
+        } catch (IOException e) {
+            //it won't be read again anyway
+        }
+        --spilledCount;
+    }
+}
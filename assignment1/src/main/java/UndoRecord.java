@@ -0,0 +1,148 @@
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * What undoing a block takes: the outputs it spent from the pool, along with their {@link Transaction.Output}s, and
+ * the outpoints it created (outputs spent by other transactions of the same block are neither). So undoing a block
+ * costs its size, regardless of the size of the pool.
+ * <p>
+ * Encoded format (for {@link UndoJournal} spilling), with arrays preceded by their length as in
+ * {@link TransactionCodec}:
+ * <pre>
+ * int      number of spent outputs, followed by each one:
+ *          byte[] tx hash, int index, long value, byte[] address (X.509 encoded)
+ * int      number of created outpoints, followed by each one:
+ *          byte[] tx hash, int index
+ * </pre>
+ */
+final class UndoRecord {
+    /** outer instance of the decoded outputs, which don't belong to an actual transaction */
+    private static final Transaction OUTPUTS_OWNER = new Transaction();
+
+    private final UTXO[] spent;
+    private final Transaction.Output[] spentOutputs;
+    private final UTXO[] created;
+
+    private UndoRecord(UTXO[] spent, Transaction.Output[] spentOutputs, UTXO[] created) {
+        this.spent = spent;
+        this.spentOutputs = spentOutputs;
+        this.created = created;
+    }
+
+    /** @return the record to undo applying {@code txs} (valid for {@code pool}, in any order) to {@code pool} */
+    static UndoRecord of(List<Transaction> txs, UTXOPool pool) {
+        Set<UTXO> created = new LinkedHashSet<>();
+        List<UTXO> spent = new ArrayList<>();
+        for (Transaction tx : txs) {
+            for (int i = 0; i < tx.numOutputs(); i++) {
+                UTXO utxo = new UTXO(tx.getHash(), i);
+                created.add(utxo);
+                //replaced, so it is restored too
+                if (pool.contains(utxo)) spent.add(utxo);
+            }
+        }
+        for (Transaction tx : txs) {
+            for (Transaction.Input input : tx.getInputs()) {
+                UTXO utxo = new UTXO(input.prevTxHash, input.outputIndex);
+                if (! created.remove(utxo)) spent.add(utxo);
+            }
+        }
+
+        Transaction.Output[] spentOutputs = new Transaction.Output[spent.size()];
+        for (int i = 0; i < spentOutputs.length; i++) {
+            spentOutputs[i] = pool.getTxOutput(spent.get(i));
+        }
+        return new UndoRecord(spent.toArray(new UTXO[0]), spentOutputs, created.toArray(new UTXO[0]));
+    }
+
+    /** @return the outputs the block spent (or replaced) from the pool, which must not be modified */
+    UTXO[] spent() {
+        return spent;
+    }
+
+    /** @return the outpoints the block created in the pool, which must not be modified */
+    UTXO[] created() {
+        return created;
+    }
+
+    /** Reverts, in {@code pool}, the block this record was created for */
+    void undo(UTXOPool pool) {
+        for (UTXO utxo : created) {
+            pool.removeUTXO(utxo);
+        }
+        for (int i = 0; i < spent.length; i++) {
+            pool.addUTXO(spent[i], spentOutputs[i]);
+        }
+    }
+
+    int encodedSize() {
+        int size = 2 * Integer.BYTES;
+        for (int i = 0; i < spent.length; i++) {
+            size += TransactionCodec.arraySize(spent[i].getTxHash()) + Integer.BYTES + Long.BYTES
+                + TransactionCodec.arraySize(spentOutputs[i].getEncodedAddress());
+        }
+        for (UTXO utxo : created) {
+            size += TransactionCodec.arraySize(utxo.getTxHash()) + Integer.BYTES;
+        }
+        return size;
+    }
+
+    /** Writes the record at the current position of {@code buffer}, with {@link #encodedSize()} bytes remaining */
+    void encode(ByteBuffer buffer) {
+        buffer.putInt(spent.length);
+        for (int i = 0; i < spent.length; i++) {
+            TransactionCodec.putArray(buffer, spent[i].getTxHash());
+            buffer.putInt(spent[i].getIndex());
+            buffer.putLong(spentOutputs[i].value);
+            TransactionCodec.putArray(buffer, spentOutputs[i].getEncodedAddress());
+        }
+        buffer.putInt(created.length);
+        for (UTXO utxo : created) {
+            TransactionCodec.putArray(buffer, utxo.getTxHash());
+            buffer.putInt(utxo.getIndex());
+        }
+    }
+
+    /**
+     * Reads a record from the current position of {@code buffer}, decoding addresses with {@code codec}.
+     * @throws IllegalArgumentException if the data is not a valid encoded record.
+     */
+    static UndoRecord decode(ByteBuffer buffer, TransactionCodec codec) {
+        try {
+            UTXO[] spent = new UTXO[getCount(buffer)];
+            Transaction.Output[] spentOutputs = new Transaction.Output[spent.length];
+            for (int i = 0; i < spent.length; i++) {
+                spent[i] = getUTXO(buffer);
+                long value = buffer.getLong();
+                spentOutputs[i] = OUTPUTS_OWNER.new Output(value, codec.decodeKey(TransactionCodec.getArray(buffer)));
+            }
+            UTXO[] created = new UTXO[getCount(buffer)];
+            for (int i = 0; i < created.length; i++) {
+                created[i] = getUTXO(buffer);
+            }
+            return new UndoRecord(spent, spentOutputs, created);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated undo record", e);
+        }
+    }
+
+    // ------------------------------------------------------------------
+    private static UTXO getUTXO(ByteBuffer buffer) {
+        byte[] txHash = TransactionCodec.getArray(buffer);
+        if (txHash == null) throw new IllegalArgumentException("Outpoint without tx hash");
+
+        return new UTXO(txHash, buffer.getInt());
+    }
+
+    private static int getCount(ByteBuffer buffer) {
+        int count = buffer.getInt();
+        if (count < 0 || count > buffer.remaining()) {
+            throw new IllegalArgumentException("Invalid element count: " + count);
+        }
+        return count;
+    }
+}
@@ -0,0 +1,45 @@
+/** Result of validating a transaction: either {@link #VALID} or the first {@link ValidationRule} it breaks */
+public final class ValidationResult {
+    public static final ValidationResult VALID = new ValidationResult(null, -1);
+
+    private final ValidationRule brokenRule;
+    private final int index;
+
+    private ValidationResult(ValidationRule brokenRule, int index) {
+        this.brokenRule = brokenRule;
+        this.index = index;
+    }
+
+    /** @param index see {@link #getIndex()}. */
+    static ValidationResult invalid(ValidationRule brokenRule, int index) {
+        return new ValidationResult(brokenRule, index);
+    }
+
+    public boolean isValid() {
+        return brokenRule == null;
+    }
+
+    /** @return true if the transaction can never be valid (see {@link ValidationRule#isPermanent()}) */
+    public boolean isPermanent() {
+        return brokenRule != null && brokenRule.isPermanent();
+    }
+
+    /** @return the rule broken, null if valid */
+    public ValidationRule getBrokenRule() {
+        return brokenRule;
+    }
+
+    /**
+     * @return the index of the offending input (or output, for {@link ValidationRule#NON_NEGATIVE_OUTPUT}), -1 if
+     * valid or the rule is not about a particular one (as {@link ValidationRule#INPUTS_COVER_OUTPUTS}, or an
+     * overflow of the output sum).
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    @Override
+    public String toString() {
+        return isValid() ? "VALID" : brokenRule + (index >= 0 ? "[" + index + "]" : "");
+    }
+}
@@ -0,0 +1,29 @@
+/** Rules a transaction must satisfy to be valid (see {@link TxHandler#isValidTx(Transaction)}) */
+public enum ValidationRule {
+    /** (1) all outputs claimed are in the current UTXO pool (they may be added later, so it isn't permanent) */
+    OUTPUT_IN_POOL(false),
+    /** (2) the signatures on each input are valid */
+    VALID_SIGNATURE(true),
+    /** (3) no UTXO is claimed multiple times */
+    SINGLE_CLAIM(true),
+    /** (4) all output values are non-negative */
+    NON_NEGATIVE_OUTPUT(true),
+    /** (5) the sum of input values is greater than or equal to the sum of output values */
+    INPUTS_COVER_OUTPUTS(true),
+    /** the sum of input or output values overflows */
+    NO_OVERFLOW(true);
+
+    private final boolean permanent;
+
+    ValidationRule(boolean permanent) {
+        this.permanent = permanent;
+    }
+
+    /**
+     * @return true if a transaction breaking the rule can never be valid, whatever the pool. Its outputs and the
+     * outputs it claims can't change without changing its hash, so only the presence of the claimed outputs can.
+     */
+    public boolean isPermanent() {
+        return permanent;
+    }
+}
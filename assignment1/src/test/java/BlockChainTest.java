@@ -0,0 +1,110 @@
+import org.junit.Before;
+import org.junit.Test;
+
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BlockChainTest {
+    private final UTXO first = new UTXO(new byte[32], 0);
+    private final UTXO second = new UTXO(new byte[32], 1);
+    private Block genesis;
+    private UTXOPool genesisPool;
+
+    @Before
+    public void createGenesis() {
+        genesis = new Block(null, new Transaction[0]);
+        genesisPool = new UTXOPool();
+        Transaction outputs = new Transaction();
+        outputs.addOutput(10, TestKeys.ALICE.getPublic());
+        outputs.addOutput(10, TestKeys.ALICE.getPublic());
+        genesisPool.addUTXO(first, outputs.getOutput(0));
+        genesisPool.addUTXO(second, outputs.getOutput(1));
+    }
+
+    @Test
+    public void switchesToTheHeaviestFork() throws Exception {
+        BlockChain chain = new BlockChain(genesis, genesisPool);
+        Transaction a1Tx = spend(first, 10);
+        Block a1 = new Block(genesis.getHash(), new Transaction[] {a1Tx});
+        Transaction b1Tx = spend(first, 9);
+        Transaction b1Child = spend(new UTXO(b1Tx.getHash(), 0), 8);
+        Block b1 = new Block(genesis.getHash(), new Transaction[] {b1Child, b1Tx});
+        Transaction b2Tx = spend(second, 7);
+        Block b2 = new Block(b1.getHash(), new Transaction[] {b2Tx});
+
+        assertTrue(chain.addBlock(a1));
+        assertTrue(chain.addBlock(b1));
+        assertArrayEquals("first one on ties", a1.getHash(), chain.getTip().getHash());
+        assertTrue(chain.addBlock(b2));
+        assertArrayEquals(b2.getHash(), chain.getTip().getHash());
+        assertEquals(2, chain.getTipHeight());
+        assertEquals(utxos(new UTXO(b1Child.getHash(), 0), new UTXO(b2Tx.getHash(), 0)), utxos(chain.getUTXOPool()));
+
+        Transaction a2Tx = spend(new UTXO(a1Tx.getHash(), 0), 10);
+        Block a2 = new Block(a1.getHash(), new Transaction[] {a2Tx}, 2);
+        assertTrue(chain.addBlock(a2));
+        assertArrayEquals(a2.getHash(), chain.getTip().getHash());
+        assertEquals(utxos(second, new UTXO(a2Tx.getHash(), 0)), utxos(chain.getUTXOPool()));
+        assertEquals(utxos(first, second), utxos(chain.getUTXOPool(genesis.getHash())));
+        assertEquals(utxos(new UTXO(b1Child.getHash(), 0), second), utxos(chain.getUTXOPool(b1.getHash())));
+        assertEquals(5, chain.size());
+    }
+
+    @Test
+    public void rejectsInvalidBlocks() throws Exception {
+        BlockChain chain = new BlockChain(genesis, genesisPool);
+        Transaction tx = spend(first, 10);
+
+        assertFalse("unknown parent", chain.addBlock(new Block(new byte[32], new Transaction[] {tx})));
+        Transaction doubleSpend = spend(first, 9);
+        assertFalse("invalid tx", chain.addBlock(new Block(genesis.getHash(), new Transaction[] {tx, doubleSpend})));
+        assertFalse("duplicate tx", chain.addBlock(new Block(genesis.getHash(), new Transaction[] {tx, tx})));
+        Block block = new Block(genesis.getHash(), new Transaction[] {tx});
+        assertTrue(chain.addBlock(block));
+        assertFalse("already added", chain.addBlock(block));
+        assertEquals(2, chain.size());
+        assertEquals(utxos(second, new UTXO(tx.getHash(), 0)), utxos(chain.getUTXOPool()));
+    }
+
+    @Test
+    public void prunesBlocksBelowTheStateWindow() throws Exception {
+        BlockChain chain = new BlockChain(genesis, genesisPool, 2, null, new TopologicalValidationEngine());
+        Block fork = new Block(genesis.getHash(), new Transaction[] {spend(second, 10)});
+        assertTrue(chain.addBlock(fork));
+        Block parent = genesis;
+        UTXO utxo = first;
+        for (int i = 0; i < 4; i++) {
+            Transaction tx = spend(utxo, 10);
+            Block block = new Block(parent.getHash(), new Transaction[] {tx});
+            assertTrue(chain.addBlock(block));
+            parent = block;
+            utxo = new UTXO(tx.getHash(), 0);
+        }
+
+        assertEquals(3, chain.size());
+        assertNull(chain.getUTXOPool(genesis.getHash()));
+        assertNull(chain.getUTXOPool(fork.getHash()));
+        assertFalse(chain.addBlock(new Block(genesis.getHash(), new Transaction[0])));
+        assertEquals(utxos(second, utxo), utxos(chain.getUTXOPool()));
+    }
+
+    private static Transaction spend(UTXO utxo, long value) throws GeneralSecurityException {
+        return TestKeys.spend(utxo, TestKeys.ALICE, TestKeys.ALICE, value);
+    }
+
+    private static Set<UTXO> utxos(UTXO... utxos) {
+        return new HashSet<>(Arrays.asList(utxos));
+    }
+
+    private static Set<UTXO> utxos(UTXOPool pool) {
+        return new HashSet<>(pool.getAllUTXO());
+    }
+}
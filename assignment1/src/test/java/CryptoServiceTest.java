@@ -0,0 +1,144 @@
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.PublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CryptoServiceTest {
+    @Test
+    public void reportsTypedResults() throws Exception {
+        PublicKey alice = TestKeys.ALICE.getPublic();
+        byte[] message = {1, 2, 3};
+        byte[] signature = TestKeys.sign(TestKeys.ALICE.getPrivate(), message);
+
+        assertEquals(CryptoService.VerifyResult.VALID, CryptoService.verify(alice, message, signature));
+        assertEquals(
+            CryptoService.VerifyResult.INVALID, CryptoService.verify(TestKeys.BOB.getPublic(), message, signature));
+        assertEquals(CryptoService.VerifyResult.INVALID_KEY, CryptoService.verify(null, message, signature));
+        assertEquals(CryptoService.VerifyResult.MALFORMED_SIGNATURE, CryptoService.verify(alice, message, message));
+        //still usable after a failure
+        assertEquals(CryptoService.VerifyResult.VALID, CryptoService.verify(alice, message, signature));
+    }
+
+    @Test
+    public void verifiesWithInterleavedKeys() throws Exception {
+        byte[] message = {1, 2, 3};
+        byte[] aliceSignature = TestKeys.sign(TestKeys.ALICE.getPrivate(), message);
+        byte[] bobSignature = TestKeys.sign(TestKeys.BOB.getPrivate(), message);
+        //more keys than those a thread keeps initialized, each one only equal to itself
+        List<PublicKey> keys = new ArrayList<>();
+        for (int i = 0; i < CryptoService.KEYS_PER_THREAD * 2; i++) {
+            keys.add(distinctKey((RSAPublicKey) (i % 2 == 0 ? TestKeys.ALICE : TestKeys.BOB).getPublic()));
+        }
+
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < keys.size(); i++) {
+                byte[] signature = i % 2 == 0 ? aliceSignature : bobSignature;
+                assertEquals(CryptoService.VerifyResult.VALID, CryptoService.verify(keys.get(i), message, signature));
+                assertEquals(CryptoService.VerifyResult.VALID,
+                    CryptoService.verify(TestKeys.ALICE.getPublic(), message, aliceSignature));
+            }
+        }
+    }
+
+    @Test
+    public void verifiesBatchesInOrder() throws Exception {
+        byte[] m1 = {1};
+        byte[] m2 = {2};
+        PublicKey alice = TestKeys.ALICE.getPublic();
+        PublicKey bob = TestKeys.BOB.getPublic();
+        List<CryptoService.VerifyResult> results = CryptoService.verifyAll(Arrays.asList(
+            new CryptoService.VerifyRequest(alice, m1, TestKeys.sign(TestKeys.ALICE.getPrivate(), m1)),
+            new CryptoService.VerifyRequest(bob, m1, TestKeys.sign(TestKeys.ALICE.getPrivate(), m1)),
+            new CryptoService.VerifyRequest(alice, m2, TestKeys.sign(TestKeys.ALICE.getPrivate(), m1)),
+            new CryptoService.VerifyRequest(bob, m2, TestKeys.sign(TestKeys.BOB.getPrivate(), m2))));
+
+        assertEquals(Arrays.asList(
+            CryptoService.VerifyResult.VALID, CryptoService.VerifyResult.INVALID,
+            CryptoService.VerifyResult.INVALID, CryptoService.VerifyResult.VALID), results);
+    }
+
+    @Test
+    public void verifiesBatchesInParallel() throws Exception {
+        byte[][] messages = new byte[9][];
+        byte[][] signatures = new byte[9][];
+        PublicKey[] keys = new PublicKey[9];
+        for (int i = 0; i < messages.length; i++) {
+            messages[i] = new byte[] {(byte) i};
+            keys[i] = i % 3 == 0 ? TestKeys.BOB.getPublic() : TestKeys.ALICE.getPublic();
+            signatures[i] = TestKeys.sign(TestKeys.ALICE.getPrivate(), messages[i]);
+        }
+        signatures[4] = signatures[5];
+
+        boolean[] expected = {false, true, true, false, false, true, false, true, true};
+        assertArrayEquals(expected, Crypto.verifySignatures(keys, messages, signatures));
+        List<CryptoService.VerifyRequest> requests = new ArrayList<>();
+        for (int i = 0; i < keys.length; i++) {
+            requests.add(new CryptoService.VerifyRequest(keys[i], messages[i], signatures[i]));
+        }
+        List<CryptoService.VerifyResult> results = CryptoService.verifyAll(requests, new ForkJoinPool(2));
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], results.get(i).isValid());
+        }
+    }
+
+    @Test
+    public void splitsKeyGroupsInRuns() {
+        List<int[]> runs = CryptoService.groupByKey(
+            5, i -> i == 2 ? TestKeys.BOB.getPublic() : TestKeys.ALICE.getPublic(),
+            CryptoService.maxRunSize(5, new ForkJoinPool(1)));
+        runs.sort(Comparator.comparingInt(run -> run[0]));
+        assertEquals(3, runs.size());
+        assertArrayEquals(new int[] {0, 1}, runs.get(0));
+        assertArrayEquals(new int[] {2}, runs.get(1));
+        assertArrayEquals(new int[] {3, 4}, runs.get(2));
+        assertTrue(CryptoService.maxRunSize(0, new ForkJoinPool(1)) > 0);
+    }
+
+    @Test
+    public void hashesWithSha256() throws Exception {
+        byte[] data = {4, 5, 6};
+        CryptoService.sha256(new byte[] {7});
+        assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(data), CryptoService.sha256(data));
+    }
+
+    /** @return a key with the same value as {@code key}, but only equal to itself */
+    private static RSAPublicKey distinctKey(RSAPublicKey key) {
+        return new RSAPublicKey() {
+            @Override
+            public BigInteger getPublicExponent() {
+                return key.getPublicExponent();
+            }
+
+            @Override
+            public BigInteger getModulus() {
+                return key.getModulus();
+            }
+
+            @Override
+            public String getAlgorithm() {
+                return key.getAlgorithm();
+            }
+
+            @Override
+            public String getFormat() {
+                return key.getFormat();
+            }
+
+            @Override
+            public byte[] getEncoded() {
+                return key.getEncoded();
+            }
+        };
+    }
+}
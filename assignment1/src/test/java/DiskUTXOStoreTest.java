@@ -0,0 +1,152 @@
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DiskUTXOStoreTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void ignoresTornCommit() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        DiskUTXOStore store = new DiskUTXOStore(directory);
+        store.reset(initialPool());
+        DurableTxHandler txHandler = new DurableTxHandler(store);
+
+        Transaction tx1 = TestKeys.spend(new UTXO(hash(1), 0), TestKeys.ALICE, TestKeys.BOB, 10);
+        Transaction tx2 = TestKeys.spend(new UTXO(hash(2), 0), TestKeys.ALICE, TestKeys.BOB, 5);
+        assertEquals(1, txHandler.handleTxs(new Transaction[] {tx1}).length);
+        assertEquals(1, txHandler.handleTxs(new Transaction[] {tx2}).length);
+        //the store is not closed, as if the process was killed while writing the 2nd commit
+        corruptSecondFrame(directory.resolve("utxos.log"));
+
+        try (DiskUTXOStore reopened = new DiskUTXOStore(directory)) {
+            UTXOPool pool = reopened.getUTXOPool();
+            assertFalse(pool.contains(new UTXO(hash(1), 0)));
+            assertTrue(pool.contains(new UTXO(tx1.getHash(), 0)));
+            assertTrue(pool.contains(new UTXO(hash(2), 0)));
+            assertFalse(pool.contains(new UTXO(tx2.getHash(), 0)));
+            assertEquals(TestKeys.BOB.getPublic(), pool.getTxOutput(new UTXO(tx1.getHash(), 0)).address);
+
+            //the torn commit is overwritten by the next one
+            DurableTxHandler reopenedHandler = new DurableTxHandler(reopened);
+            assertEquals(1, reopenedHandler.handleTxs(new Transaction[] {tx2}).length);
+        }
+        try (DiskUTXOStore reopened = new DiskUTXOStore(directory)) {
+            assertTrue(reopened.getUTXOPool().contains(new UTXO(tx2.getHash(), 0)));
+        }
+    }
+
+    @Test
+    public void restoresSnapshots() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        UTXOPool expected;
+        //snapshot after each commit
+        try (DiskUTXOStore store = new DiskUTXOStore(directory, 1)) {
+            store.reset(initialPool());
+            DurableTxHandler txHandler = new DurableTxHandler(store);
+            Transaction tx1 = TestKeys.spend(new UTXO(hash(1), 0), TestKeys.ALICE, TestKeys.BOB, 10);
+            Transaction tx2 = TestKeys.spend(new UTXO(tx1.getHash(), 0), TestKeys.BOB, TestKeys.ALICE, 3);
+            assertEquals(2, txHandler.handleTxs(new Transaction[] {tx2, tx1}).length);
+            Transaction tx3 = TestKeys.spend(new UTXO(new byte[40], 1), TestKeys.ALICE, TestKeys.BOB, 1);
+            assertEquals(1, txHandler.handleTxs(new Transaction[] {tx3}).length);
+            expected = txHandler.getUTXOPool();
+        }
+
+        try (DiskUTXOStore reopened = new DiskUTXOStore(directory, 1)) {
+            UTXOPool pool = reopened.getUTXOPool();
+            assertEquals(new HashSet<>(expected.getAllUTXO()), new HashSet<>(pool.getAllUTXO()));
+            for (UTXO utxo : expected.getAllUTXO()) {
+                assertEquals(expected.getTxOutput(utxo).value, pool.getTxOutput(utxo).value);
+                assertEquals(expected.getTxOutput(utxo).address, pool.getTxOutput(utxo).address);
+            }
+        }
+    }
+
+    @Test
+    public void replaysChildrenCommittedBeforeTheirParents() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        Transaction tx1 = TestKeys.spend(new UTXO(hash(1), 0), TestKeys.ALICE, TestKeys.BOB, 10);
+        Transaction tx2 = TestKeys.spend(new UTXO(tx1.getHash(), 0), TestKeys.BOB, TestKeys.ALICE, 3);
+        try (DiskUTXOStore store = new DiskUTXOStore(directory)) {
+            store.reset(initialPool());
+            DurableTxHandler txHandler = new DurableTxHandler(store);
+            assertEquals(2, txHandler.handleTxs(new Transaction[] {tx2, tx1}).length);
+        }
+
+        //replayed from the log
+        try (DiskUTXOStore reopened = new DiskUTXOStore(directory)) {
+            UTXOPool pool = reopened.getUTXOPool();
+            assertFalse(pool.contains(new UTXO(hash(1), 0)));
+            assertFalse(pool.contains(new UTXO(tx1.getHash(), 0)));
+            assertTrue(pool.contains(new UTXO(tx2.getHash(), 0)));
+        }
+    }
+
+    @Test
+    public void persistsRollbacks() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        Transaction tx1 = TestKeys.spend(new UTXO(hash(1), 0), TestKeys.ALICE, TestKeys.BOB, 10);
+        Transaction tx2 = TestKeys.spend(new UTXO(hash(2), 0), TestKeys.ALICE, TestKeys.BOB, 5);
+        try (DiskUTXOStore store = new DiskUTXOStore(directory)) {
+            store.reset(initialPool());
+            DurableTxHandler txHandler =
+                new DurableTxHandler(store, TxHandler.newBuilder().undoJournal(new UndoJournal(10)));
+            assertEquals(1, txHandler.handleTxs(new Transaction[] {tx1}).length);
+            txHandler.rollback(0);
+            assertEquals(1, txHandler.handleTxs(new Transaction[] {tx2}).length);
+        }
+
+        try (DiskUTXOStore reopened = new DiskUTXOStore(directory)) {
+            UTXOPool pool = reopened.getUTXOPool();
+            assertTrue(pool.contains(new UTXO(hash(1), 0)));
+            assertFalse(pool.contains(new UTXO(tx1.getHash(), 0)));
+            assertTrue(pool.contains(new UTXO(tx2.getHash(), 0)));
+        }
+    }
+
+    private static UTXOPool initialPool() {
+        UTXOPool pool = new UTXOPool();
+        Transaction outputs = new Transaction();
+        outputs.addOutput(10, TestKeys.ALICE.getPublic());
+        outputs.addOutput(5, TestKeys.ALICE.getPublic());
+        outputs.addOutput(1, TestKeys.ALICE.getPublic());
+        pool.addUTXO(new UTXO(hash(1), 0), outputs.getOutput(0));
+        pool.addUTXO(new UTXO(hash(2), 0), outputs.getOutput(1));
+        pool.addUTXO(new UTXO(new byte[40], 1), outputs.getOutput(2));
+        for (int i = 3; i < 1000; i++) {
+            outputs.addOutput(i, (i % 2 == 0 ? TestKeys.ALICE : TestKeys.BOB).getPublic());
+            pool.addUTXO(new UTXO(hash(i), i % 3), outputs.getOutput(i));
+        }
+        return pool;
+    }
+
+    private static byte[] hash(int id) {
+        byte[] hash = new byte[32];
+        hash[30] = (byte) (id >> 8);
+        hash[31] = (byte) id;
+        return hash;
+    }
+
+    private static void corruptSecondFrame(Path log) throws Exception {
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer frameLength = ByteBuffer.allocate(Integer.BYTES);
+            channel.read(frameLength, 0);
+            long secondFrameEnd = frameLength.getInt(0);
+            frameLength.clear();
+            channel.read(frameLength, secondFrameEnd);
+            secondFrameEnd += frameLength.getInt(0);
+            channel.write(ByteBuffer.wrap(new byte[] {42}), secondFrameEnd - 1);
+        }
+    }
+}
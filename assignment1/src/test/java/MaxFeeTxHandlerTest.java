@@ -0,0 +1,51 @@
+import org.junit.Test;
+
+/** Runs the {@link TxHandlerTest} cases using {@link MaxFeeTxHandler}, plus the cases where fees matter */
+public class MaxFeeTxHandlerTest extends TxHandlerTest {
+
+    {
+        txHandlerRunner = (utxoPool, txs) -> new MaxFeeTxHandler(utxoPool).handleTxs(txs);
+    }
+
+    @Test
+    public void prefersHigherFeeDoubleSpend() {
+        new TxHandlerTestHelper()
+            .newBlockTx(1)
+                .withInput(10).fromPreExistingTx().andNewOutputIdx()
+                .withOutput(10)
+            .and()
+            .newBlockTx(2)
+                .withInput(10).fromTx(1).andOutputIdx(0)
+                .withOutput(9)
+            .and()
+            .newBlockTx(3)
+                .withInput(10).fromTx(1).andOutputIdx(0)
+                .withOutput(5)
+            .and()
+            .expectTxsInResult(1, 3)
+            .test(txHandlerRunner);
+    }
+
+    @Test
+    public void prefersHigherFeePackage() {
+        new TxHandlerTestHelper()
+            .newBlockTx(1)
+                .withInput(10).fromPreExistingTx().andNewOutputIdx()
+                .withOutput(10)
+            .and()
+            .newBlockTx(2)
+                .withInput(10).fromTx(1).andOutputIdx(0)
+                .withOutput(7)
+            .and()
+            //no fee by itself, but allows the next one
+            .newBlockTx(3)
+                .withInput(10).fromTx(1).andOutputIdx(0)
+                .withOutput(10)
+            .and()
+            .newBlockTx(4)
+                .withInput(10).fromTx(3).andOutputIdx(0)
+            .and()
+            .expectTxsInResult(1, 3, 4)
+            .test(txHandlerRunner);
+    }
+}
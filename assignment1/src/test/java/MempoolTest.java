@@ -0,0 +1,138 @@
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the {@link TxHandlerTest} cases submitting the transactions one at a time to a {@link Mempool}, plus the cases
+ * for orphans.
+ * Note: the helper proposes the transactions in the order of their ids.
+ */
+public class MempoolTest extends TxHandlerTest {
+
+    {
+        txHandlerRunner = mempoolRunner(100);
+    }
+
+    @Test
+    public void acceptsOrphansWhenParentArrives() {
+        new TxHandlerTestHelper()
+            .newBlockTx(3)
+                .withInput(10).fromPreExistingTx().andNewOutputIdx()
+                .withOutput(10)
+            .and()
+            .newBlockTx(2)
+                .withInput(10).fromTx(3).andOutputIdx(0)
+                .withOutput(10)
+            .and()
+            .newBlockTx(1)
+                .withInput(10).fromTx(2).andOutputIdx(0)
+            .and()
+            .expectTxsInResult(1, 2, 3)
+            .test(txHandlerRunner);
+    }
+
+    @Test
+    public void evictsOldestOrphans() {
+        new TxHandlerTestHelper()
+            .newBlockTx(3)
+                .withInput(10).fromPreExistingTx().andNewOutputIdx()
+                .withOutput(5)
+                .withOutput(5)
+            .and()
+            .newBlockTx(1)
+                .withInput(5).fromTx(3).andOutputIdx(0)
+            .and()
+            .newBlockTx(2)
+                .withInput(5).fromTx(3).andOutputIdx(1)
+            .and()
+            .expectTxsInResult(2, 3)
+            .test(mempoolRunner(1));
+    }
+
+    @Test
+    public void rejectsOrphansWithInvalidRefIdx() {
+        new TxHandlerTestHelper()
+            .newBlockTx(2)
+                .withInput(10).fromPreExistingTx().andNewOutputIdx()
+            .and()
+            .newBlockTx(1)
+                .withInput(10).fromTx(2).andInvalidIdx()
+            .and()
+            .expectTxsInResult(2)
+            .test(txHandlerRunner);
+    }
+
+    @Test
+    public void appliesTxsWithoutEndingEpochs() throws Exception {
+        UTXO utxo = new UTXO(new byte[32], 0);
+        TxHandler txHandler = new TxHandler(poolWith(utxo));
+        Mempool mempool = new Mempool(txHandler, 100);
+        Transaction tx = TestKeys.spend(utxo, TestKeys.ALICE, TestKeys.BOB, 10);
+
+        assertEquals(Mempool.Status.ACCEPTED, mempool.submit(tx));
+        assertEquals(0, txHandler.getEpoch());
+        assertFalse(txHandler.getUTXOPool().contains(utxo));
+        assertTrue(txHandler.getUTXOPool().contains(new UTXO(tx.getHash(), 0)));
+    }
+
+    @Test
+    public void rejectsSpendsOfOutputsSpentByTakenTxs() throws Exception {
+        UTXO utxo = new UTXO(new byte[32], 0);
+        Mempool mempool = new Mempool(poolWith(utxo), 100);
+        Transaction tx = TestKeys.spend(utxo, TestKeys.ALICE, TestKeys.BOB, 10);
+        assertEquals(Mempool.Status.ACCEPTED, mempool.submit(tx));
+        assertEquals(Collections.singletonList(tx), mempool.takeAccepted());
+
+        assertEquals(Mempool.Status.DUPLICATE, mempool.submit(tx));
+        assertEquals(Mempool.Status.REJECTED, mempool.submit(TestKeys.spend(utxo, TestKeys.ALICE, TestKeys.ALICE, 9)));
+        assertEquals(
+            Mempool.Status.REJECTED,
+            mempool.submit(TestKeys.spend(new UTXO(tx.getHash(), 1), TestKeys.BOB, TestKeys.BOB, 10)));
+        assertEquals(0, mempool.orphanCount());
+        assertEquals(Mempool.Status.ORPHAN, mempool.submit(TestKeys.spend(
+            new UTXO(new byte[32], 1), TestKeys.ALICE, TestKeys.BOB, 10)));
+        assertEquals(1, mempool.orphanCount());
+    }
+
+    @Test
+    public void isFullUntilAcceptedTxsAreTaken() throws Exception {
+        UTXO first = new UTXO(new byte[32], 0);
+        UTXO second = new UTXO(new byte[32], 1);
+        Mempool mempool = new Mempool(new TxHandler(poolWith(first, second)), 100, 1);
+        Transaction tx1 = TestKeys.spend(first, TestKeys.ALICE, TestKeys.BOB, 10);
+        Transaction tx2 = TestKeys.spend(second, TestKeys.ALICE, TestKeys.BOB, 10);
+
+        assertEquals(Mempool.Status.ACCEPTED, mempool.submit(tx1));
+        assertEquals(Mempool.Status.FULL, mempool.submit(tx2));
+        assertEquals(Collections.singletonList(tx1), mempool.takeAccepted());
+        assertEquals(Mempool.Status.ACCEPTED, mempool.submit(tx2));
+        mempool.takeAccepted();
+        //only the last one accepted is remembered, the output spent by the first one is taken as not seen yet
+        assertEquals(Mempool.Status.DUPLICATE, mempool.submit(tx2));
+        assertEquals(Mempool.Status.ORPHAN, mempool.submit(tx1));
+    }
+
+    private static UTXOPool poolWith(UTXO... utxos) {
+        UTXOPool pool = new UTXOPool();
+        Transaction outputs = new Transaction();
+        for (int i = 0; i < utxos.length; i++) {
+            outputs.addOutput(10, TestKeys.ALICE.getPublic());
+            pool.addUTXO(utxos[i], outputs.getOutput(i));
+        }
+        return pool;
+    }
+
+    private static TxHandlerTestHelper.HandleTxsRunner mempoolRunner(int maxOrphans) {
+        return (utxoPool, txs) -> {
+            Mempool mempool = new Mempool(utxoPool, maxOrphans);
+            for (Transaction tx : txs) {
+                mempool.submit(tx);
+            }
+            return mempool.takeAccepted().toArray(new Transaction[0]);
+        };
+    }
+}
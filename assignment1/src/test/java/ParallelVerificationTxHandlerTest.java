@@ -0,0 +1,11 @@
+import java.util.concurrent.ForkJoinPool;
+
+/** Runs the {@link TxHandlerTest} cases verifying the signatures up front in a {@link ForkJoinPool}. */
+public class ParallelVerificationTxHandlerTest extends TxHandlerTest {
+    private static final ForkJoinPool verificationPool = new ForkJoinPool(4);
+
+    {
+        txHandlerRunner = (utxoPool, txs) ->
+            TxHandler.newBuilder().verificationPool(verificationPool).build(utxoPool).handleTxs(txs);
+    }
+}
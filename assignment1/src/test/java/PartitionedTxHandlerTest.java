@@ -0,0 +1,15 @@
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Runs the {@link TopologicalTxHandlerTest} cases validating independent groups of transactions in parallel with
+ * {@link PartitionedValidationEngine}.
+ */
+public class PartitionedTxHandlerTest extends TopologicalTxHandlerTest {
+    private static final ForkJoinPool validationPool = new ForkJoinPool(4);
+
+    {
+        txHandlerRunner = (utxoPool, txs) ->
+            TxHandler.newBuilder().validationEngine(new PartitionedValidationEngine(validationPool)).build(utxoPool)
+                .handleTxs(txs);
+    }
+}
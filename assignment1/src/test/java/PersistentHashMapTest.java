@@ -0,0 +1,105 @@
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PersistentHashMapTest {
+
+    @Test
+    public void behavesAsHashMap() {
+        Random rnd = new Random(1);
+        PersistentHashMap<Key, Integer> map = new PersistentHashMap<>();
+        Map<Key, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 20000; i++) {
+            int id = rnd.nextInt(5000);
+            Key key = new Key(id, id % 7 == 0 ? id % 3 : id * 0x9E3779B1);
+            if (rnd.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                assertEquals(expected.put(key, i), map.put(key, i));
+            }
+        }
+        assertSameContent(expected, map);
+    }
+
+    @Test
+    public void snapshotsAreIsolated() {
+        Random rnd = new Random(2);
+        PersistentHashMap<Key, Integer> map = new PersistentHashMap<>();
+        Map<Key, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 3000; i++) {
+            Key key = new Key(rnd.nextInt(), rnd.nextInt(4));
+            map.put(key, i);
+            expected.put(key, i);
+        }
+
+        PersistentHashMap<Key, Integer> snapshot = map.snapshot();
+        Map<Key, Integer> expectedSnapshot = new HashMap<>(expected);
+        for (int i = 0; i < 3000; i++) {
+            Key key = new Key(rnd.nextInt(), rnd.nextInt(4));
+            Key existing = expected.keySet().iterator().next();
+            map.put(key, -i);
+            expected.put(key, -i);
+            map.remove(existing);
+            expected.remove(existing);
+
+            Key otherKey = new Key(rnd.nextInt(), rnd.nextInt(4));
+            snapshot.put(otherKey, i);
+            expectedSnapshot.put(otherKey, i);
+        }
+        assertSameContent(expected, map);
+        assertSameContent(expectedSnapshot, snapshot);
+    }
+
+    @Test
+    public void removesEverything() {
+        PersistentHashMap<Key, Integer> map = new PersistentHashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            map.put(new Key(i, i % 3), i);
+        }
+        PersistentHashMap<Key, Integer> snapshot = map.snapshot();
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(Integer.valueOf(i), map.remove(new Key(i, i % 3)));
+        }
+        assertTrue(map.isEmpty());
+        assertFalse(map.containsKey(new Key(1, 1)));
+        assertNull(map.get(new Key(1, 1)));
+        assertEquals(1000, snapshot.size());
+    }
+
+    private static void assertSameContent(Map<Key, Integer> expected, PersistentHashMap<Key, Integer> map) {
+        assertEquals(expected.size(), map.size());
+        expected.forEach((k, v) -> assertEquals(v, map.get(k)));
+        Map<Key, Integer> actual = new HashMap<>();
+        map.forEach(actual::put);
+        assertEquals(expected, actual);
+    }
+
+    // ------------------------------------------------------------------
+    /** Key with a configurable hash, to force collisions */
+    private static class Key {
+        private final int id;
+        private final int hash;
+
+        Key(int id, int hash) {
+            this.id = id;
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && ((Key) o).id == id && ((Key) o).hash == hash;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RecordingTxHandlerMetricsTest {
+    @Test
+    public void recordsBlockMeasurements() throws Exception {
+        UTXOPool pool = new UTXOPool();
+        Transaction outputs = new Transaction();
+        outputs.addOutput(10, TestKeys.ALICE.getPublic());
+        outputs.addOutput(10, TestKeys.ALICE.getPublic());
+        pool.addUTXO(new UTXO(new byte[32], 0), outputs.getOutput(0));
+        pool.addUTXO(new UTXO(new byte[32], 1), outputs.getOutput(1));
+        RecordingTxHandlerMetrics metrics = new RecordingTxHandlerMetrics();
+        TxHandler txHandler =
+            TxHandler.newBuilder().metrics(metrics).rejectedTxCache(null).build(pool);
+
+        Transaction parent = TestKeys.spend(new UTXO(new byte[32], 0), TestKeys.ALICE, TestKeys.BOB, 10);
+        Transaction child = TestKeys.spend(new UTXO(parent.getHash(), 0), TestKeys.BOB, TestKeys.BOB, 10);
+        Transaction forged = TestKeys.spend(new UTXO(new byte[32], 1), TestKeys.BOB, TestKeys.BOB, 10);
+        Transaction tooBig = TestKeys.spend(new UTXO(new byte[32], 1), TestKeys.ALICE, TestKeys.BOB, 11);
+        //the child is validated first, recursing into its parent
+        assertEquals(2, txHandler.handleTxs(new Transaction[] {child, parent, forged, tooBig}).length);
+
+        assertEquals(1, metrics.blockNanos().count());
+        assertTrue(metrics.blockNanos().percentile(50) > 0);
+        assertEquals(4, metrics.proposedTxs());
+        assertEquals(2, metrics.acceptedTxs());
+        assertEquals(2, metrics.utxoPoolSize().sum());
+        assertEquals(1, metrics.dependencyDepth().percentile(100));
+        assertEquals(1, metrics.rejections(ValidationRule.VALID_SIGNATURE));
+        assertEquals(1, metrics.rejections(ValidationRule.INPUTS_COVER_OUTPUTS));
+        assertEquals(0, metrics.rejections(ValidationRule.OUTPUT_IN_POOL));
+        assertEquals(4, metrics.signaturesVerified());
+        assertEquals(4, metrics.signaturesChecked());
+
+        txHandler.handleTxs(new Transaction[] {forged});
+        assertEquals(1, metrics.signatureCacheHits());
+        assertEquals(2, metrics.rejections(ValidationRule.VALID_SIGNATURE));
+    }
+}
@@ -0,0 +1,66 @@
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RejectedTxCacheTest {
+    @Test
+    public void rejectsPermanentlyInvalidTxsWithoutVerifying() throws Exception {
+        UTXO utxo = new UTXO(new byte[32], 0);
+        TxHandler txHandler = new TxHandler(poolWith(utxo));
+        SignatureCache signatureCache = txHandler.getSignatureCache();
+        RejectedTxCache rejectedTxCache = txHandler.getRejectedTxCache();
+
+        Transaction forged = TestKeys.spend(utxo, TestKeys.BOB, TestKeys.BOB, 10);
+        ValidationResult result = txHandler.validateTx(forged);
+        assertEquals(ValidationRule.VALID_SIGNATURE, result.getBrokenRule());
+        assertEquals(0, result.getIndex());
+        assertTrue(result.isPermanent());
+
+        assertEquals(0, txHandler.handleTxs(new Transaction[] {forged}).length);
+        assertEquals(0, txHandler.handleTxs(new Transaction[] {forged}).length);
+        assertEquals(2, rejectedTxCache.hitCount());
+        assertEquals(1, signatureCache.missCount() + signatureCache.hitCount());
+    }
+
+    @Test
+    public void retriesTxsSpendingMissingOutputs() throws Exception {
+        UTXO utxo = new UTXO(new byte[32], 0);
+        TxHandler txHandler = new TxHandler(poolWith(utxo));
+        Transaction parent = TestKeys.spend(utxo, TestKeys.ALICE, TestKeys.BOB, 10);
+        Transaction child = TestKeys.spend(new UTXO(parent.getHash(), 0), TestKeys.BOB, TestKeys.BOB, 10);
+
+        ValidationResult result = txHandler.validateTx(child);
+        assertEquals(ValidationRule.OUTPUT_IN_POOL, result.getBrokenRule());
+        assertFalse(result.isPermanent());
+        assertEquals(0, txHandler.handleTxs(new Transaction[] {child}).length);
+
+        assertEquals(2, txHandler.handleTxs(new Transaction[] {child, parent}).length);
+        assertEquals(0, txHandler.getRejectedTxCache().size());
+    }
+
+    @Test
+    public void keysRejectionsOnTheContent() throws Exception {
+        UTXO utxo = new UTXO(new byte[32], 0);
+        TxHandler txHandler = new TxHandler(poolWith(utxo));
+        Transaction tx = TestKeys.spend(utxo, TestKeys.ALICE, TestKeys.BOB, 10);
+
+        //carries the hash of a valid tx not proposed yet
+        Transaction junk = TestKeys.spend(utxo, TestKeys.BOB, TestKeys.BOB, 10);
+        junk.setHash(tx.getHash());
+        assertTrue(txHandler.validateTx(junk).isPermanent());
+        assertEquals(1, txHandler.getRejectedTxCache().size());
+
+        assertTrue(txHandler.isValidTx(tx));
+        assertEquals(0, txHandler.getRejectedTxCache().hitCount());
+    }
+
+    private static UTXOPool poolWith(UTXO utxo) {
+        UTXOPool pool = new UTXOPool();
+        Transaction outputs = new Transaction();
+        outputs.addOutput(10, TestKeys.ALICE.getPublic());
+        pool.addUTXO(utxo, outputs.getOutput(0));
+        return pool;
+    }
+}
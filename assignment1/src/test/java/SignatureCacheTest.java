@@ -0,0 +1,53 @@
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SignatureCacheTest {
+    @Test
+    public void verifiesEachSignatureOnce() throws Exception {
+        UTXO utxo = new UTXO(new byte[32], 0);
+        UTXOPool pool = new UTXOPool();
+        Transaction outputs = new Transaction();
+        outputs.addOutput(10, TestKeys.ALICE.getPublic());
+        pool.addUTXO(utxo, outputs.getOutput(0));
+        TxHandler txHandler = new TxHandler(pool);
+        SignatureCache cache = txHandler.getSignatureCache();
+
+        Transaction tx = TestKeys.spend(utxo, TestKeys.ALICE, TestKeys.BOB, 10);
+        assertTrue(txHandler.isValidTx(tx));
+        assertTrue(txHandler.isValidTx(tx));
+        assertEquals(1, txHandler.handleTxs(new Transaction[] {tx}).length);
+        assertEquals(1, cache.missCount());
+        assertEquals(2, cache.hitCount());
+
+        //same hash, but signed by someone else
+        Transaction forged = TestKeys.spend(utxo, TestKeys.BOB, TestKeys.BOB, 10);
+        forged.setHash(tx.getHash());
+        assertFalse(TxHandler.newBuilder().signatureCache(cache).build(pool).isValidTx(forged));
+        assertEquals(2, cache.missCount());
+
+        //same hash and signature, but paying someone else
+        Transaction redirected = new Transaction();
+        redirected.addInput(utxo.getTxHash(), utxo.getIndex());
+        redirected.addOutput(10, TestKeys.ALICE.getPublic());
+        redirected.addSignature(tx.getInput(0).signature, 0);
+        redirected.setHash(tx.getHash());
+        assertFalse(TxHandler.newBuilder().signatureCache(cache).build(pool).isValidTx(redirected));
+        assertEquals(3, cache.missCount());
+    }
+
+    @Test
+    public void canBeDisabled() throws Exception {
+        UTXO utxo = new UTXO(new byte[32], 0);
+        UTXOPool pool = new UTXOPool();
+        Transaction outputs = new Transaction();
+        outputs.addOutput(10, TestKeys.ALICE.getPublic());
+        pool.addUTXO(utxo, outputs.getOutput(0));
+        TxHandler txHandler = TxHandler.newBuilder().signatureCache(null).build(pool);
+
+        assertTrue(txHandler.isValidTx(TestKeys.spend(utxo, TestKeys.ALICE, TestKeys.BOB, 10)));
+        assertFalse(txHandler.isValidTx(TestKeys.spend(utxo, TestKeys.BOB, TestKeys.BOB, 10)));
+    }
+}
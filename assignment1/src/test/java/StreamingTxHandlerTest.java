@@ -0,0 +1,84 @@
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Runs the {@link TxHandlerTest} cases streaming the block through a {@link TransactionQueue} (smaller than most
+ * blocks) from another thread, verifying the signatures ahead in a {@link ForkJoinPool}.
+ */
+public class StreamingTxHandlerTest extends TxHandlerTest {
+    private static final ForkJoinPool verificationPool = new ForkJoinPool(4);
+
+    {
+        txHandlerRunner = (utxoPool, txs) -> {
+            TransactionQueue queue = new TransactionQueue(2);
+            Thread producer = new Thread(() -> {
+                try (TransactionQueue block = queue) {
+                    for (Transaction tx : txs) {
+                        block.put(tx);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            producer.start();
+
+            List<Transaction> accepted = new ArrayList<>();
+            int acceptedCount = TxHandler.newBuilder().verificationPool(verificationPool).build(utxoPool)
+                .handleTxs(queue, accepted::add);
+            assertEquals(accepted.size(), acceptedCount);
+            return accepted.toArray(new Transaction[0]);
+        };
+    }
+
+    @Test
+    public void acceptsChildrenArrivedBeforeTheirParents() {
+        new TxHandlerTestHelper()
+            .newBlockTx(3)
+                .withInput(10).fromPreExistingTx().andNewOutputIdx()
+                .withOutput(10)
+            .and()
+            .newBlockTx(2)
+                .withInput(10).fromTx(3).andOutputIdx(0)
+                .withOutput(10)
+            .and()
+            .newBlockTx(1)
+                .withInput(10).fromTx(2).andOutputIdx(0)
+            .and()
+            .expectTxsInResult(1, 2, 3)
+            .test((utxoPool, txs) -> {
+                List<Transaction> accepted = new ArrayList<>();
+                //children first
+                Arrays.sort(txs, (a, b) -> a.getHash()[0] - b.getHash()[0]);
+                new TxHandler(utxoPool).handleTxs(Arrays.asList(txs).iterator(), accepted::add);
+                return accepted.toArray(new Transaction[0]);
+            });
+    }
+
+    @Test
+    public void closesWithoutWaitingForSpace() throws InterruptedException {
+        Transaction tx = new Transaction();
+        TransactionQueue queue = new TransactionQueue(1);
+        queue.put(tx);
+        //the queue is full, so the end can't be queued
+        queue.close();
+
+        assertTrue(queue.hasNext());
+        assertSame(tx, queue.next());
+        assertFalse(queue.hasNext());
+        try {
+            queue.put(tx);
+            fail("Put after closing");
+        } catch (IllegalStateException expected) {
+        }
+    }
+}
@@ -0,0 +1,47 @@
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.Signature;
+
+/** Real RSA keys, generated once as it's slow, and signing helpers for the tests which don't mock {@link Crypto} */
+final class TestKeys {
+    static final KeyPair ALICE;
+    static final KeyPair BOB;
+
+    static {
+        try {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+            generator.initialize(1024);
+            ALICE = generator.generateKeyPair();
+            BOB = generator.generateKeyPair();
+        } catch (GeneralSecurityException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private TestKeys() {}
+
+    /** @return the SHA256withRSA signature of {@code message} with {@code key} */
+    static byte[] sign(PrivateKey key, byte[] message) throws GeneralSecurityException {
+        Signature signature = Signature.getInstance("SHA256withRSA");
+        signature.initSign(key);
+        signature.update(message);
+        return signature.sign();
+    }
+
+    /**
+     * @return a finalized transaction spending {@code utxo}, signed by {@code owner}, into a single output of
+     *         {@code value} to {@code recipient}.
+     */
+    static Transaction spend(UTXO utxo, KeyPair owner, KeyPair recipient, long value)
+        throws GeneralSecurityException
+    {
+        Transaction tx = new Transaction();
+        tx.addInput(utxo.getTxHash(), utxo.getIndex());
+        tx.addOutput(value, recipient.getPublic());
+        tx.addSignature(sign(owner.getPrivate(), tx.getRawDataToSign(0)), 0);
+        tx.finalize();
+        return tx;
+    }
+}
@@ -0,0 +1,46 @@
+import org.junit.Test;
+
+/** Runs the {@link TxHandlerTest} cases using {@link TopologicalValidationEngine}, plus the cases it adds support for */
+public class TopologicalTxHandlerTest extends TxHandlerTest {
+
+    {
+        txHandlerRunner = (utxoPool, txs) ->
+            TxHandler.newBuilder().validationEngine(new TopologicalValidationEngine()).build(utxoPool).handleTxs(txs);
+    }
+
+    @Test
+    public void detectsTxsInDependencyCycle() {
+        new TxHandlerTestHelper()
+            .newBlockTx(1)
+                .withInput(10).from(2, 0)
+                .withOutput(10)
+            .and()
+            .newBlockTx(2)
+                .withInput(10).from(1, 0)
+                .withOutput(10)
+            .and()
+            .newBlockTx(3)
+                .withInput(10).from(2, 0)
+            .and()
+            .newBlockTx(4)
+                .withInput(10).fromPreExistingTx().andNewOutputIdx()
+            .and()
+            .expectTxsInResult(4)
+            .test(txHandlerRunner);
+    }
+
+    @Test(timeout = 10000)
+    public void supportsLongInBlockRefChains() {
+        long inputValue = 1000;
+        int txCount = 20000;
+
+        TxHandlerTestHelper testHelper = new TxHandlerTestHelper();
+        testHelper = testHelper.newBlockTx(txCount).withInput(inputValue).fromPreExistingTx().andNewOutputIdx().and();
+        //the first txs of the block depend on the following ones, so the whole chain is resolved for the first one
+        for (int id = txCount - 1; id >= 1; id--) {
+            testHelper = testHelper.newBlockTx(id).withInput(inputValue).fromTx(id + 1).andNewOutputIdx().and();
+        }
+        testHelper.expectTxsInResult(from1to(txCount))
+            .test(txHandlerRunner);
+    }
+}
@@ -0,0 +1,119 @@
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TransactionCodecTest {
+    @Test
+    public void keepsRawTxFormat() throws Exception {
+        Transaction tx = newSignedTx();
+
+        assertArrayEquals(legacyRawTx(tx), tx.getRawTx());
+        for (int i = 0; i < tx.numInputs(); i++) {
+            assertArrayEquals(legacyRawDataToSign(tx, i), tx.getRawDataToSign(i));
+        }
+    }
+
+    @Test
+    public void decodesEncodedTx() throws Exception {
+        Transaction tx = newSignedTx();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(TransactionCodec.encodedSize(tx) * 2);
+        TransactionCodec.encode(tx, buffer);
+        TransactionCodec.encode(tx, buffer);
+        buffer.flip();
+
+        TransactionCodec codec = new TransactionCodec();
+        Transaction decoded = codec.decode(buffer);
+        Transaction decodedAgain = codec.decode(buffer);
+        assertFalse(buffer.hasRemaining());
+
+        assertArrayEquals(tx.getHash(), decoded.getHash());
+        assertArrayEquals(tx.getRawTx(), decoded.getRawTx());
+        assertEquals(tx.getInput(1).outputIndex, decoded.getInput(1).outputIndex);
+        assertEquals(TestKeys.ALICE.getPublic(), decoded.getOutput(0).address);
+        assertSame(decoded.getOutput(0).address, decodedAgain.getOutput(0).address);
+        assertSame(decoded.getOutput(0).getEncodedAddress(), decodedAgain.getOutput(0).getEncodedAddress());
+        assertTrue(Crypto.verifySignature(
+            TestKeys.ALICE.getPublic(), decoded.getRawDataToSign(0), decoded.getInput(0).signature));
+    }
+
+    @Test
+    public void decodesDoubleValues() throws Exception {
+        byte[] address = TestKeys.ALICE.getPublic().getEncoded();
+        ByteBuffer buffer = ByteBuffer.allocate(64 + address.length);
+        buffer.put((byte) 1).putInt(-1).putInt(0);
+        buffer.putInt(1).putDouble(0.1).putInt(address.length).put(address);
+        buffer.flip();
+
+        Transaction decoded = new TransactionCodec().decode(buffer);
+        assertEquals(Transaction.COIN / 10, decoded.getOutput(0).value);
+        assertEquals(TestKeys.ALICE.getPublic(), decoded.getOutput(0).address);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTruncatedData() throws Exception {
+        ByteBuffer buffer = TransactionCodec.encode(newSignedTx());
+        buffer.limit(buffer.limit() - 10);
+        new TransactionCodec().decode(buffer);
+    }
+
+    private Transaction newSignedTx() throws Exception {
+        Transaction tx = new Transaction();
+        tx.addInput(new byte[32], 0);
+        tx.addInput(new byte[] {1, 2, 3}, 3);
+        tx.addOutput(150_000_000L, TestKeys.ALICE.getPublic());
+        tx.addOutput(10 * Transaction.COIN, TestKeys.BOB.getPublic());
+        tx.addSignature(TestKeys.sign(TestKeys.ALICE.getPrivate(), tx.getRawDataToSign(0)), 0);
+        tx.addSignature(TestKeys.sign(TestKeys.BOB.getPrivate(), tx.getRawDataToSign(1)), 1);
+        tx.finalize();
+        return tx;
+    }
+
+    /** Encoding done by the original (reference) {@link Transaction#getRawTx()} */
+    private static byte[] legacyRawTx(Transaction tx) {
+        ArrayList<Byte> rawTx = new ArrayList<Byte>();
+        for (Transaction.Input in : tx.getInputs()) {
+            addAll(rawTx, in.prevTxHash);
+            addAll(rawTx, ByteBuffer.allocate(Integer.SIZE / 8).putInt(in.outputIndex).array());
+            addAll(rawTx, in.signature);
+        }
+        addLegacyOutputs(rawTx, tx);
+        return toArray(rawTx);
+    }
+
+    /** Encoding done by the original (reference) {@link Transaction#getRawDataToSign(int)} */
+    private static byte[] legacyRawDataToSign(Transaction tx, int index) {
+        ArrayList<Byte> sigData = new ArrayList<Byte>();
+        Transaction.Input in = tx.getInput(index);
+        addAll(sigData, in.prevTxHash);
+        addAll(sigData, ByteBuffer.allocate(Integer.SIZE / 8).putInt(in.outputIndex).array());
+        addLegacyOutputs(sigData, tx);
+        return toArray(sigData);
+    }
+
+    private static void addLegacyOutputs(ArrayList<Byte> data, Transaction tx) {
+        for (Transaction.Output op : tx.getOutputs()) {
+            addAll(data, ByteBuffer.allocate(Double.SIZE / 8).putDouble((double) op.value / Transaction.COIN).array());
+            addAll(data, op.address.getEncoded());
+        }
+    }
+
+    private static void addAll(ArrayList<Byte> data, byte[] bytes) {
+        if (bytes != null)
+            for (byte b : bytes)
+                data.add(b);
+    }
+
+    private static byte[] toArray(ArrayList<Byte> data) {
+        byte[] result = new byte[data.size()];
+        for (int i = 0; i < result.length; i++)
+            result[i] = data.get(i);
+        return result;
+    }
+}
@@ -0,0 +1,59 @@
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class TransactionTest {
+    @Test
+    public void encodesOutputsAgainWhenTheyChange() {
+        Transaction tx = new Transaction();
+        tx.addInput(new byte[] {1, 2}, 3);
+        tx.addOutput(Transaction.COIN, TestKeys.ALICE.getPublic());
+        assertArrayEquals(dataToSign(tx, 0), tx.getRawDataToSign(0));
+
+        tx.addOutput(2 * Transaction.COIN, TestKeys.BOB.getPublic());
+        assertArrayEquals(dataToSign(tx, 0), tx.getRawDataToSign(0));
+        tx.getOutput(0).value = 5;
+        assertArrayEquals(dataToSign(tx, 0), tx.getRawDataToSign(0));
+        tx.getOutput(1).address = TestKeys.ALICE.getPublic();
+        assertArrayEquals(dataToSign(tx, 0), tx.getRawDataToSign(0));
+        tx.getOutputs().set(0, tx.new Output(7, TestKeys.BOB.getPublic()));
+        assertArrayEquals(dataToSign(tx, 0), tx.getRawDataToSign(0));
+
+        //the copy constructor needs the hash
+        tx.finalize();
+        Transaction copy = new Transaction(tx);
+        copy.addOutput(1, TestKeys.BOB.getPublic());
+        assertArrayEquals(dataToSign(copy, 0), copy.getRawDataToSign(0));
+        assertArrayEquals(dataToSign(tx, 0), tx.getRawDataToSign(0));
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void convertsBitcoinValues() {
+        Transaction tx = new Transaction();
+        tx.addOutput(0.1, TestKeys.ALICE.getPublic());
+        tx.addOutput(3, TestKeys.BOB.getPublic());
+        assertEquals(Transaction.COIN / 10, tx.getOutput(0).value);
+        assertEquals(3, tx.getOutput(1).value);
+    }
+
+    /** @return the data to sign for the input {@code index} of {@code tx}, encoded from scratch */
+    private static byte[] dataToSign(Transaction tx, int index) {
+        Transaction.Input in = tx.getInput(index);
+        int size = in.prevTxHash.length + Integer.BYTES;
+        for (Transaction.Output op : tx.getOutputs()) {
+            size += Double.BYTES + op.address.getEncoded().length;
+        }
+        ByteBuffer data = ByteBuffer.allocate(size);
+        data.put(in.prevTxHash);
+        data.putInt(in.outputIndex);
+        for (Transaction.Output op : tx.getOutputs()) {
+            data.putDouble((double) op.value / Transaction.COIN);
+            data.put(op.address.getEncoded());
+        }
+        return data.array();
+    }
+}
@@ -14,7 +14,7 @@ import java.util.stream.IntStream;
 @PrepareForTest( { Crypto.class })
 public class TxHandlerTest {
 
-    private TxHandlerTestHelper.HandleTxsRunner txHandlerRunner =
+    protected TxHandlerTestHelper.HandleTxsRunner txHandlerRunner =
         (utxoPool, txs) -> new TxHandler(utxoPool).handleTxs(txs);
 
     @Test
@@ -152,6 +152,19 @@ public class TxHandlerTest {
             .test(txHandlerRunner);
     }
 
+    @Test
+    public void detectsTxWithOverflowingValues() {
+        new TxHandlerTestHelper()
+            .newBlockTx(1)
+                .withInput(Long.MAX_VALUE).fromPreExistingTx().andNewOutputIdx()
+                .withInput(Long.MAX_VALUE).fromPreExistingTx().andNewOutputIdx()
+                .withOutput(Long.MAX_VALUE)
+                .withOutput(Long.MAX_VALUE)
+            .and()
+            .expectNoTxInResult()
+            .test(txHandlerRunner);
+    }
+
 
     @Test
     public void detectsTxWithRefToNonExistentPreTx() {
@@ -178,7 +191,7 @@ public class TxHandlerTest {
 
     @Test(timeout = 5000)
     public void supportsManyValidTxWithInBlockRefs() {
-        double inputValue = 1000;
+        long inputValue = 1000;
         int txCount = 300;
         Integer[] txIdList = from1to(txCount);
 
@@ -197,7 +210,7 @@ public class TxHandlerTest {
             .test(txHandlerRunner);
     }
 
-    private Integer[] from1to(int maxValue) {
+    protected Integer[] from1to(int maxValue) {
         return IntStream.rangeClosed(1, maxValue).boxed().toArray(Integer[]::new);
     }
 }
@@ -136,11 +136,11 @@ class TxHandlerTestHelper {
             this.newTx = newTx;
         }
 
-        TxBuilder.InputBuilder withInput(double value) {
+        TxBuilder.InputBuilder withInput(long value) {
             return new TxBuilder.InputBuilder(value);
         }
 
-        TxBuilder withOutput(double value) {
+        TxBuilder withOutput(long value) {
             newTx.addOutput(value, validKey);
             return this;
         }
@@ -151,10 +151,10 @@ class TxHandlerTestHelper {
         }
 
         class InputBuilder {
-            private final double value;
+            private final long value;
             private Transaction prevTx = null;
 
-            InputBuilder(double value) {
+            InputBuilder(long value) {
                 this.value = value;
             }
 
@@ -0,0 +1,111 @@
+import org.junit.Test;
+
+import java.security.PublicKey;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class UTXOPoolTest {
+    private static final PublicKey[] KEYS = {mock(PublicKey.class), mock(PublicKey.class), mock(PublicKey.class)};
+
+    private final Random rnd = new Random(1);
+    private final Transaction outputsTx = new Transaction();
+
+    @Test
+    public void behavesAsMap() {
+        UTXOPool pool = new UTXOPool();
+        Map<UTXO, Transaction.Output> expected = new HashMap<>();
+        randomChanges(pool, expected, 30000);
+        assertSameContent(expected, pool);
+    }
+
+    @Test
+    public void copiesAreIsolated() {
+        UTXOPool pool = new UTXOPool();
+        Map<UTXO, Transaction.Output> expected = new HashMap<>();
+        randomChanges(pool, expected, 5000);
+
+        UTXOPool copy = new UTXOPool(pool);
+        Map<UTXO, Transaction.Output> expectedCopy = new HashMap<>(expected);
+        //enough changes to merge them into a new base in both
+        randomChanges(pool, expected, 10000);
+        randomChanges(copy, expectedCopy, 10000);
+        UTXOPool copyOfCopy = new UTXOPool(copy);
+        randomChanges(copyOfCopy, new HashMap<>(expectedCopy), 100);
+
+        assertSameContent(expected, pool);
+        assertSameContent(expectedCopy, copy);
+    }
+
+    @Test
+    public void keepsHashesOfAnyLength() {
+        UTXOPool pool = new UTXOPool();
+        byte[] shortHash = {1};
+        byte[] paddedHash = {1, 0};
+        byte[] longHash = new byte[40];
+        pool.addUTXO(new UTXO(shortHash, 0), output());
+        pool.addUTXO(new UTXO(paddedHash, 0), output());
+        pool.addUTXO(new UTXO(longHash, 0), output());
+        pool.addUTXO(new UTXO(new byte[0], 0), output());
+        //UTXO rejects null hashes, but a subclass may not have one
+        UTXO withoutHash = new UTXO(new byte[0], 1) {
+            @Override
+            public byte[] getTxHash() {
+                return null;
+            }
+        };
+        pool.addUTXO(withoutHash, output());
+        assertTrue(pool.contains(withoutHash));
+        pool.removeUTXO(withoutHash);
+        assertFalse(pool.contains(withoutHash));
+
+        assertEquals(4, new HashSet<>(pool.getAllUTXO()).size());
+        assertEquals(4, pool.size());
+        assertTrue(new HashSet<>(pool.getAllUTXO()).contains(new UTXO(paddedHash, 0)));
+        pool.removeUTXO(new UTXO(shortHash, 0));
+        assertFalse(pool.contains(new UTXO(shortHash, 0)));
+        assertTrue(pool.contains(new UTXO(paddedHash, 0)));
+        assertTrue(pool.contains(new UTXO(longHash, 0)));
+    }
+
+    private void randomChanges(UTXOPool pool, Map<UTXO, Transaction.Output> expected, int count) {
+        for (int i = 0; i < count; i++) {
+            byte[] hash = new byte[rnd.nextInt(4) == 0 ? 3 : 32];
+            hash[0] = (byte) rnd.nextInt(64);
+            hash[hash.length - 1] = (byte) rnd.nextInt(64);
+            UTXO utxo = new UTXO(hash, rnd.nextInt(4));
+            if (rnd.nextInt(3) == 0) {
+                pool.removeUTXO(utxo);
+                expected.remove(utxo);
+            } else {
+                Transaction.Output output = output();
+                pool.addUTXO(utxo, output);
+                expected.put(utxo, output);
+            }
+        }
+    }
+
+    private Transaction.Output output() {
+        return outputsTx.new Output(rnd.nextLong(), KEYS[rnd.nextInt(KEYS.length)]);
+    }
+
+    private static void assertSameContent(Map<UTXO, Transaction.Output> expected, UTXOPool pool) {
+        expected.forEach((utxo, output) -> {
+            Transaction.Output actual = pool.getTxOutput(utxo);
+            assertEquals(output.value, actual.value);
+            assertSame(output.address, actual.address);
+        });
+        assertEquals(expected.keySet(), new HashSet<>(pool.getAllUTXO()));
+        assertEquals(expected.size(), pool.size());
+        assertEquals(expected.size(), pool.getAllUTXO().size());
+        assertNull(pool.getTxOutput(new UTXO(new byte[] {-1}, 0)));
+    }
+}
@@ -0,0 +1,95 @@
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.security.GeneralSecurityException;
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class UndoJournalTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final UTXO first = new UTXO(new byte[32], 0);
+    private final UTXO second = new UTXO(new byte[32], 1);
+    private UTXOPool initialPool;
+
+    @Before
+    public void createPool() {
+        initialPool = new UTXOPool();
+        Transaction outputs = new Transaction();
+        outputs.addOutput(10, TestKeys.ALICE.getPublic());
+        outputs.addOutput(10, TestKeys.ALICE.getPublic());
+        initialPool.addUTXO(first, outputs.getOutput(0));
+        initialPool.addUTXO(second, outputs.getOutput(1));
+    }
+
+    @Test
+    public void rollsBackToAnyKeptEpoch() throws Exception {
+        TxHandler txHandler = newTxHandler(new UndoJournal(10));
+        Transaction tx1 = spend(first, 10);
+        Transaction tx2 = spend(new UTXO(tx1.getHash(), 0), 9);
+        Transaction tx3 = spend(second, 8);
+        Transaction tx4 = spend(new UTXO(tx3.getHash(), 0), 7);
+        assertEquals(1, txHandler.handleTxs(new Transaction[] {tx1}).length);
+        Set<UTXO> afterFirstEpoch = utxos(txHandler.getUTXOPool());
+        assertEquals(3, txHandler.handleTxs(Arrays.asList(tx4, tx2, tx3).iterator(), tx -> {}));
+        assertEquals(utxos(new UTXO(tx2.getHash(), 0), new UTXO(tx4.getHash(), 0)), utxos(txHandler.getUTXOPool()));
+
+        txHandler.rollback(1);
+        assertEquals(1, txHandler.getEpoch());
+        assertEquals(afterFirstEpoch, utxos(txHandler.getUTXOPool()));
+        assertEquals(1, txHandler.handleTxs(new Transaction[] {tx3}).length);
+        txHandler.rollback(0);
+        assertEquals(utxos(first, second), utxos(txHandler.getUTXOPool()));
+        assertEquals(0, txHandler.getUndoJournal().size());
+    }
+
+    @Test
+    public void spillsOldRecords() throws Exception {
+        File directory = folder.newFolder();
+        UndoJournal journal = new UndoJournal(3, 1, directory.toPath());
+        TxHandler txHandler = newTxHandler(journal);
+        UTXO utxo = first;
+        List<Set<UTXO>> epochs = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Transaction tx = spend(utxo, 10 - i);
+            assertEquals(1, txHandler.handleTxs(new Transaction[] {tx}).length);
+            epochs.add(utxos(txHandler.getUTXOPool()));
+            utxo = new UTXO(tx.getHash(), 0);
+        }
+        assertEquals(3, journal.size());
+        assertEquals(2, journal.spilledCount());
+        assertEquals(2, directory.list().length);
+
+        txHandler.rollback(1);
+        assertEquals(epochs.get(0), utxos(txHandler.getUTXOPool()));
+        assertEquals(0, directory.list().length);
+        try {
+            txHandler.rollback(0);
+            fail("The record of the 1st epoch was dropped");
+        } catch (IllegalArgumentException e) {
+            assertEquals(1, txHandler.getEpoch());
+        }
+    }
+
+    private TxHandler newTxHandler(UndoJournal journal) {
+        return TxHandler.newBuilder().undoJournal(journal).build(initialPool);
+    }
+
+    private static Transaction spend(UTXO utxo, long value) throws GeneralSecurityException {
+        return TestKeys.spend(utxo, TestKeys.ALICE, TestKeys.ALICE, value);
+    }
+
+    private static Set<UTXO> utxos(UTXO... utxos) {
+        return new HashSet<>(Arrays.asList(utxos));
+    }
+
+    private static Set<UTXO> utxos(UTXOPool pool) {
+        return new HashSet<>(pool.getAllUTXO());
+    }
+}
@@ -0,0 +1,58 @@
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Candidates received by a node in a round, as a packed {@code long} per candidate (the index of the transaction among
+ * the valid ones and the sender) instead of a {@link Candidate} per candidate. Batches are reused, so a batch is only
+ * valid during the {@link Node#receiveFromFollowees(CandidateBatch)} call it is passed to.
+ */
+public final class CandidateBatch {
+    /** valid transactions, shared by all the batches of a simulation */
+    private final Transaction[] txs;
+    private long[] candidates = new long[16];
+    private int size;
+
+    CandidateBatch(Transaction[] txs) {
+        this.txs = txs;
+    }
+
+    /** @return the number of candidates */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /** @return the transaction of the {@code index}-th candidate */
+    public Transaction getTx(int index) {
+        return txs[(int) (candidates[index] >>> Integer.SIZE)];
+    }
+
+    /** @return the node which sent the {@code index}-th candidate */
+    public int getSender(int index) {
+        return (int) candidates[index];
+    }
+
+    /** @return a new set with the candidates as {@link Candidate}s */
+    public Set<Candidate> toCandidates() {
+        Set<Candidate> set = new HashSet<>();
+        for (int i = 0; i < size; i++) {
+            set.add(new Candidate(getTx(i), getSender(i)));
+        }
+        return set;
+    }
+
+    void add(int txIndex, int sender) {
+        if (size == candidates.length) {
+            candidates = Arrays.copyOf(candidates, 2 * size);
+        }
+        candidates[size++] = (long) txIndex << Integer.SIZE | sender;
+    }
+
+    void clear() {
+        size = 0;
+    }
+}
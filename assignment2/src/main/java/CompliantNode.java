@@ -17,6 +17,11 @@ public class CompliantNode implements Node {
         //Not used
     }
 
+    @Override
+    public void setFollowees(FollowGraph graph, int node) {
+        //Not used
+    }
+
     public void setPendingTransaction(Set<Transaction> pendingTransactions) {
         seenTxs.addAll(pendingTransactions);
     }
@@ -28,4 +33,11 @@ public class CompliantNode implements Node {
     public void receiveFromFollowees(Set<Candidate> candidates) {
         seenTxs.addAll(candidates.stream().map(c -> c.tx).collect(Collectors.toSet()));
     }
+
+    @Override
+    public void receiveFromFollowees(CandidateBatch candidates) {
+        for (int i = 0; i < candidates.size(); i++) {
+            seenTxs.add(candidates.getTx(i));
+        }
+    }
 }
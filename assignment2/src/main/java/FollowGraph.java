@@ -0,0 +1,199 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.function.IntConsumer;
+
+/**
+ * Who follows whom among {@code size()} nodes, without the {@code size()^2} flags of a {@code boolean[][]}: sparse
+ * graphs keep the followees and the followers of each node as sorted lists (compressed rows, 4 bytes per edge and
+ * direction) and dense ones as bitsets (1 bit per pair and direction), whichever takes less memory.
+ * <p>
+ * Immutable, so it can be shared by threads.
+ */
+public abstract class FollowGraph {
+    private final int size;
+
+    private FollowGraph(int size) {
+        this.size = size;
+    }
+
+    /**
+     * @return a graph where each node follows each other node with probability {@code p_graph}, drawing a number per
+     *         edge instead of a number per pair of nodes, from a generator split from {@code random} for each node.
+     */
+    public static FollowGraph random(int numNodes, double p_graph, SplittableRandom random) {
+        int[][] followees = new int[numNodes][];
+        int[] row = new int[Math.max(numNodes - 1, 0)];
+        double logNoEdge = Math.log(1 - p_graph);
+        for (int i = 0; i < numNodes; i++) {
+            SplittableRandom rowRandom = random.split();
+            int count = 0;
+            //index among the other nodes, skipping geometrically distributed gaps between edges
+            long k = nextGap(rowRandom, p_graph, logNoEdge);
+            while (k < numNodes - 1) {
+                row[count++] = k < i ? (int) k : (int) k + 1;
+                k += 1 + nextGap(rowRandom, p_graph, logNoEdge);
+            }
+            followees[i] = Arrays.copyOf(row, count);
+        }
+        return of(followees);
+    }
+
+    /** @return the graph where each node {@code i} follows the nodes in {@code followees[i]}, in increasing order */
+    public static FollowGraph of(int[][] followees) {
+        long edges = 0;
+        for (int[] row : followees) {
+            edges += row.length;
+        }
+        long sparseBytes = (long) Integer.BYTES * (edges + followees.length + 1);
+        long denseWords = (long) followees.length * Dense.wordsPerRow(followees.length);
+        boolean denseIsSmaller = denseWords <= Integer.MAX_VALUE && Long.BYTES * denseWords < sparseBytes;
+        return denseIsSmaller ? dense(followees) : sparse(followees);
+    }
+
+    /** @return the number of nodes */
+    public int size() {
+        return size;
+    }
+
+    /** @return true if and only if {@code follower} follows {@code followee} */
+    public abstract boolean follows(int follower, int followee);
+
+    /** Calls {@code action} with each node followed by {@code follower}, in increasing order */
+    public abstract void forEachFollowee(int follower, IntConsumer action);
+
+    /** Calls {@code action} with each node following {@code followee}, in increasing order */
+    public abstract void forEachFollower(int followee, IntConsumer action);
+
+    /** @return the followees of {@code follower} as in {@link Node#setFollowees(boolean[])} */
+    public boolean[] followeeFlags(int follower) {
+        boolean[] flags = new boolean[size];
+        forEachFollowee(follower, followee -> flags[followee] = true);
+        return flags;
+    }
+
+    static FollowGraph sparse(int[][] followees) {
+        return new Sparse(followees);
+    }
+
+    static FollowGraph dense(int[][] followees) {
+        return new Dense(followees);
+    }
+
+    // ------------------------------------------------------------------
+    /** @return number of pairs without edge before the next edge, up to {@link Integer#MAX_VALUE} */
+    private static long nextGap(SplittableRandom random, double p_graph, double logNoEdge) {
+        if (p_graph >= 1) return 0;
+        if (p_graph <= 0) return Integer.MAX_VALUE;
+
+        return (long) Math.min(Math.log(1 - random.nextDouble()) / logNoEdge, Integer.MAX_VALUE);
+    }
+
+    private static final class Sparse extends FollowGraph {
+        /** row {@code i} of each direction is in {@code [offsets[i], offsets[i + 1])} */
+        private final int[] followeeOffsets;
+        private final int[] followees;
+        private final int[] followerOffsets;
+        private final int[] followers;
+
+        Sparse(int[][] rows) {
+            super(rows.length);
+            followeeOffsets = new int[rows.length + 1];
+            for (int i = 0; i < rows.length; i++) {
+                followeeOffsets[i + 1] = followeeOffsets[i] + rows[i].length;
+            }
+            followees = new int[followeeOffsets[rows.length]];
+            followerOffsets = new int[rows.length + 1];
+            for (int i = 0; i < rows.length; i++) {
+                System.arraycopy(rows[i], 0, followees, followeeOffsets[i], rows[i].length);
+                for (int followee : rows[i]) {
+                    ++followerOffsets[followee + 1];
+                }
+            }
+            for (int i = 0; i < rows.length; i++) {
+                followerOffsets[i + 1] += followerOffsets[i];
+            }
+            //filled follower by follower, so each row ends up in increasing order
+            followers = new int[followees.length];
+            int[] next = Arrays.copyOf(followerOffsets, rows.length);
+            for (int i = 0; i < rows.length; i++) {
+                for (int followee : rows[i]) {
+                    followers[next[followee]++] = i;
+                }
+            }
+        }
+
+        @Override
+        public boolean follows(int follower, int followee) {
+            return Arrays.binarySearch(
+                followees, followeeOffsets[follower], followeeOffsets[follower + 1], followee) >= 0;
+        }
+
+        @Override
+        public void forEachFollowee(int follower, IntConsumer action) {
+            for (int k = followeeOffsets[follower]; k < followeeOffsets[follower + 1]; k++) {
+                action.accept(followees[k]);
+            }
+        }
+
+        @Override
+        public void forEachFollower(int followee, IntConsumer action) {
+            for (int k = followerOffsets[followee]; k < followerOffsets[followee + 1]; k++) {
+                action.accept(followers[k]);
+            }
+        }
+    }
+
+    private static final class Dense extends FollowGraph {
+        private final int wordsPerRow;
+        /** bit {@code j} of row {@code i} is set if {@code i} follows {@code j} */
+        private final long[] followees;
+        /** bit {@code j} of row {@code i} is set if {@code j} follows {@code i} */
+        private final long[] followers;
+
+        Dense(int[][] rows) {
+            super(rows.length);
+            wordsPerRow = wordsPerRow(rows.length);
+            followees = new long[rows.length * wordsPerRow];
+            followers = new long[followees.length];
+            for (int i = 0; i < rows.length; i++) {
+                for (int j : rows[i]) {
+                    set(followees, i, j);
+                    set(followers, j, i);
+                }
+            }
+        }
+
+        static int wordsPerRow(int size) {
+            return (size + Long.SIZE - 1) / Long.SIZE;
+        }
+
+        @Override
+        public boolean follows(int follower, int followee) {
+            return (followees[follower * wordsPerRow + followee / Long.SIZE] & (1L << followee)) != 0;
+        }
+
+        @Override
+        public void forEachFollowee(int follower, IntConsumer action) {
+            forEachSet(followees, follower, action);
+        }
+
+        @Override
+        public void forEachFollower(int followee, IntConsumer action) {
+            forEachSet(followers, followee, action);
+        }
+
+        private void set(long[] bits, int row, int column) {
+            bits[row * wordsPerRow + column / Long.SIZE] |= 1L << column;
+        }
+
+        private void forEachSet(long[] bits, int row, IntConsumer action) {
+            for (int w = 0; w < wordsPerRow; w++) {
+                long word = bits[row * wordsPerRow + w];
+                while (word != 0) {
+                    action.accept(w * Long.SIZE + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+    }
+}
@@ -1,26 +1,36 @@
 import com.google.common.collect.ImmutableList;
 
 import java.util.*;
-import java.util.function.Supplier;
+import java.util.function.Function;
 
 public class MaliciousNode implements Node {
-    private static final Random rnd = new Random(123);
-    private static final List<Supplier<Strategy>> strategies = ImmutableList.of(
-        DontPropagate::new,
-        SendOwn::new,
+    private static final List<Function<SplittableRandom, Strategy>> strategies = ImmutableList.of(
+        random -> new DontPropagate(),
+        random -> new SendOwn(),
         SendOwnAndNone::new
     );
     private final Strategy strategy;
 
     public MaliciousNode(double p_graph, double p_malicious, double p_txDistribution, int numRounds) {
-        //strategy = strategies.get(rnd.nextInt(strategies.size())).get();
+        this(p_graph, p_malicious, p_txDistribution, numRounds, new SplittableRandom());
+    }
+
+    /** Creates a node whose random choices are drawn from {@code random}, which must not be used by anything else */
+    public MaliciousNode(
+        double p_graph, double p_malicious, double p_txDistribution, int numRounds, SplittableRandom random)
+    {
+        //strategy = strategies.get(random.nextInt(strategies.size())).apply(random);
         //TODO this is hardcoded for the worst strategy for the current consensus logic
-        strategy = strategies.get(2).get();
+        strategy = strategies.get(2).apply(random);
     }
 
     public void setFollowees(boolean[] followees) {
     }
 
+    @Override
+    public void setFollowees(FollowGraph graph, int node) {
+    }
+
     public void setPendingTransaction(Set<Transaction> pendingTransactions) {
         strategy.setPendingTransaction(pendingTransactions);
     }
@@ -32,6 +42,10 @@ public class MaliciousNode implements Node {
     public void receiveFromFollowees(Set<Candidate> candidates) {
     }
 
+    @Override
+    public void receiveFromFollowees(CandidateBatch candidates) {
+    }
+
     // ------------------------------------------------------------------
     private interface Strategy {
         Set<Transaction> sendToFollowers();
@@ -61,8 +75,13 @@ public class MaliciousNode implements Node {
     }
 
     private static class SendOwnAndNone implements Strategy {
+        private final SplittableRandom random;
         private Set<Transaction> pendingTransactions;
 
+        SendOwnAndNone(SplittableRandom random) {
+            this.random = random;
+        }
+
         @Override
         public void setPendingTransaction(Set<Transaction> pendingTransactions) {
             this.pendingTransactions = pendingTransactions;
@@ -70,7 +89,7 @@ public class MaliciousNode implements Node {
 
         @Override
         public Set<Transaction> sendToFollowers() {
-            return rnd.nextDouble() < 0.01? pendingTransactions : Collections.emptySet();
+            return random.nextDouble() < 0.01? pendingTransactions : Collections.emptySet();
         }
     }
 }
@@ -10,6 +10,14 @@ public interface Node {
     /** {@code followees[i]} is true if and only if this node follows node {@code i} */
     void setFollowees(boolean[] followees);
 
+    /**
+     * Same as {@link #setFollowees(boolean[])}, with this node being {@code node} in {@code graph}. By default it
+     * builds the flags, so nodes which don't need {@code numNodes} flags each should override it.
+     */
+    default void setFollowees(FollowGraph graph, int node) {
+        setFollowees(graph.followeeFlags(node));
+    }
+
     /** initialize proposal list of transactions */
     void setPendingTransaction(Set<Transaction> pendingTransactions);
 
@@ -22,4 +30,12 @@ public interface Node {
 
     /** receive candidates from other nodes. */
     void receiveFromFollowees(Set<Candidate> candidates);
+
+    /**
+     * Same as {@link #receiveFromFollowees(Set)}, without a {@link Candidate} per candidate. {@code candidates} is only
+     * valid during the call. By default it creates the candidates, so nodes should override it.
+     */
+    default void receiveFromFollowees(CandidateBatch candidates) {
+        receiveFromFollowees(candidates.toCandidates());
+    }
 }
\ No newline at end of file
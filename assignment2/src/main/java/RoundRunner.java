@@ -0,0 +1,86 @@
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Runs the rounds of a {@link Simulation} in 2 phases, each one finished before the next one starts: all the nodes send
+ * their proposals, then each node gathers the candidates from its followees (by sender, then in the order they were
+ * proposed) and receives them as a {@link CandidateBatch}.
+ * <p>
+ * Proposals are kept as indexes of valid transactions, and each thread reuses a single batch, so a round allocates
+ * next to nothing besides what the nodes do. Each phase can run in parallel over the nodes, as each node only touches
+ * its own proposals and batch, with the same results as running it serially.
+ */
+final class RoundRunner {
+    private final Node[] nodes;
+    private final FollowGraph followGraph;
+    /** ids of the valid transactions, sorted, and the transactions */
+    private final int[] validTxIds;
+    private final Transaction[] validTxs;
+    /** indexes in {@link #validTxs} of the valid proposals of each node in the current round */
+    private final int[][] proposals;
+    private final int[] proposalCounts;
+    private final ThreadLocal<CandidateBatch> batches;
+
+    RoundRunner(Node[] nodes, FollowGraph followGraph, Set<Integer> validTxIds) {
+        this.nodes = nodes;
+        this.followGraph = followGraph;
+        this.validTxIds = validTxIds.stream().mapToInt(Integer::intValue).sorted().toArray();
+        this.validTxs = Arrays.stream(this.validTxIds).mapToObj(Transaction::new).toArray(Transaction[]::new);
+        this.proposals = new int[nodes.length][0];
+        this.proposalCounts = new int[nodes.length];
+        this.batches = ThreadLocal.withInitial(() -> new CandidateBatch(validTxs));
+    }
+
+    Node[] getNodes() {
+        return nodes;
+    }
+
+    /** Runs a round, with each phase in parallel on {@code pool}, or serially if null */
+    void run(ForkJoinPool pool) {
+        forEachNode(pool, this::collectProposals);
+        forEachNode(pool, this::deliverCandidates);
+    }
+
+    // ------------------------------------------------------------------
+    private void forEachNode(ForkJoinPool pool, IntConsumer action) {
+        if (pool == null) {
+            for (int i = 0; i < nodes.length; i++) {
+                action.accept(i);
+            }
+        } else {
+            pool.submit(() -> IntStream.range(0, nodes.length).parallel().forEach(action)).join();
+        }
+    }
+
+    /** Copies the valid proposals of node {@code i}, as they may change once it receives candidates */
+    private void collectProposals(int i) {
+        int[] own = proposals[i];
+        int count = 0;
+        for (Transaction tx : nodes[i].sendToFollowers()) {
+            int txIndex = Arrays.binarySearch(validTxIds, tx.id);
+            if (txIndex < 0) continue; // ensure that each tx is actually valid
+
+            if (count == own.length) {
+                own = proposals[i] = Arrays.copyOf(own, Math.max(4, 2 * count));
+            }
+            own[count++] = txIndex;
+        }
+        proposalCounts[i] = count;
+    }
+
+    private void deliverCandidates(int recipient) {
+        CandidateBatch batch = batches.get();
+        batch.clear();
+        followGraph.forEachFollowee(recipient, sender -> {
+            for (int k = 0; k < proposalCounts[sender]; k++) {
+                batch.add(proposals[sender][k], sender);
+            }
+        });
+        if (! batch.isEmpty()) {
+            nodes[recipient].receiveFromFollowees(batch);
+        }
+    }
+}
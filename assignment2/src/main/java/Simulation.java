@@ -5,9 +5,9 @@
 // mixing them in the network to fully test.
 
 import java.util.HashSet;
-import java.util.Random;
+import java.util.SplittableRandom;
 import java.util.Set;
-import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
 
 public class Simulation {
 
@@ -40,39 +40,65 @@ public class Simulation {
    public static Node[] simulateConsensus(
        int numNodes, double p_graph, double p_malicious, double p_txDistribution, int numRounds)
    {
+      return simulateConsensus(
+          numNodes, p_graph, p_malicious, p_txDistribution, numRounds, new SplittableRandom().nextLong(), null);
+   }
+
+   /**
+    * Same as {@link #simulateConsensus(int, double, double, double, int)}, but reproducible: the same {@code seed}
+    * gives the same network and nodes, whether run serially or in parallel. Each phase of the set up, and each node
+    * within a phase, draws from its own {@link SplittableRandom} split from {@code seed}, so no random generator is
+    * shared by nodes and the draws of a node don't depend on the other nodes.
+    *
+    * @param roundPool pool where each phase of each round runs in parallel, or null to run the rounds serially.
+    */
+   public static Node[] simulateConsensus(
+       int numNodes, double p_graph, double p_malicious, double p_txDistribution, int numRounds, long seed,
+       ForkJoinPool roundPool)
+   {
+      RoundRunner rounds = setUp(numNodes, p_graph, p_malicious, p_txDistribution, numRounds, seed);
+      // Simulate for numRounds times
+      for (int round = 0; round < numRounds; round++) { // numRounds is either 10 or 20
+         rounds.run(roundPool);
+      }
+      return rounds.getNodes();
+   }
+
+   /** @return the nodes of a simulation with {@code seed}, once initialized, ready to run rounds */
+   static RoundRunner setUp(
+       int numNodes, double p_graph, double p_malicious, double p_txDistribution, int numRounds, long seed)
+   {
+      SplittableRandom random = new SplittableRandom(seed);
+      SplittableRandom nodeTypeRandom = random.split();
+      SplittableRandom graphRandom = random.split();
+      SplittableRandom txIdRandom = random.split();
+      SplittableRandom distributionRandom = random.split();
+
       // pick which nodes are malicious and which are compliant
       Node[] nodes = new Node[numNodes];
       for (int i = 0; i < numNodes; i++) {
-         if(Math.random() < p_malicious)
+         SplittableRandom nodeRandom = nodeTypeRandom.split();
+         if(nodeRandom.nextDouble() < p_malicious)
             // When you are ready to try testing with malicious nodes, replace the
             // instantiation below with an instantiation of a MaliciousNode
-            nodes[i] = new MaliciousNode(p_graph, p_malicious, p_txDistribution, numRounds);
+            nodes[i] = new MaliciousNode(p_graph, p_malicious, p_txDistribution, numRounds, nodeRandom);
          else
             nodes[i] = new CompliantNode(p_graph, p_malicious, p_txDistribution, numRounds);
       }
 
 
       // initialize random follow graph
-      boolean[][] followees = new boolean[numNodes][numNodes]; // followees[i][j] is true iff i follows j
-      for (int i = 0; i < numNodes; i++) {
-         for (int j = 0; j < numNodes; j++) {
-            if (i == j) continue;
-            if(Math.random() < p_graph) { // p_graph is .1, .2, or .3
-               followees[i][j] = true;
-            }
-         }
-      }
+      FollowGraph followGraph = FollowGraph.random(numNodes, p_graph, graphRandom); // p_graph is .1, .2, or .3
 
       // notify all nodes of their followees
       for (int i = 0; i < numNodes; i++)
-         nodes[i].setFollowees(followees[i]);
+         nodes[i].setFollowees(followGraph, i);
 
       // initialize a set of 500 valid Transactions with random ids
       int numTx = 500;
       HashSet<Integer> validTxIds = new HashSet<Integer>();
-      Random random = new Random();
       for (int i = 0; i < numTx; i++) {
-         int r = random.nextInt();
+         int r = txIdRandom.nextInt();
          validTxIds.add(r);
       }
 
@@ -81,54 +107,15 @@ public class Simulation {
       // the starting state of Transactions each node has heard. The distribution
       // is random with probability p_txDistribution for each Transaction-Node pair.
       for (int i = 0; i < numNodes; i++) {
+         SplittableRandom nodeRandom = distributionRandom.split();
          HashSet<Transaction> pendingTransactions = new HashSet<Transaction>();
          for(Integer txID : validTxIds) {
-            if (Math.random() < p_txDistribution) // p_txDistribution is .01, .05, or .10.
+            if (nodeRandom.nextDouble() < p_txDistribution) // p_txDistribution is .01, .05, or .10.
                pendingTransactions.add(new Transaction(txID));
          }
          nodes[i].setPendingTransaction(pendingTransactions);
       }
 
-
-      // Simulate for numRounds times
-      for (int round = 0; round < numRounds; round++) { // numRounds is either 10 or 20
-
-         // gather all the proposals into a map. The key is the index of the node receiving
-         // proposals. The value is an ArrayList containing 1x2 Integer arrays. The first
-         // element of each array is the id of the transaction being proposed and the second
-         // element is the index # of the node proposing the transaction.
-         HashMap<Integer, Set<Candidate>> allProposals = new HashMap<>();
-
-         for (int i = 0; i < numNodes; i++) {
-            Set<Transaction> proposals = nodes[i].sendToFollowers();
-            for (Transaction tx : proposals) {
-               if (!validTxIds.contains(tx.id))
-                  continue; // ensure that each tx is actually valid
-
-               for (int j = 0; j < numNodes; j++) {
-                  if(!followees[j][i]) continue; // tx only matters if j follows i
-
-                  if (!allProposals.containsKey(j)) {
-                	  Set<Candidate> candidates = new HashSet<>();
-                	  allProposals.put(j, candidates);
-                  }
-
-                  Candidate candidate = new Candidate(tx, i);
-                  allProposals.get(j).add(candidate);
-               }
-
-            }
-         }
-
-         // Distribute the Proposals to their intended recipients as Candidates
-         for (int i = 0; i < numNodes; i++) {
-            if (allProposals.containsKey(i))
-               nodes[i].receiveFromFollowees(allProposals.get(i));
-         }
-      }
-      return nodes;
+      return new RoundRunner(nodes, followGraph, validTxIds);
    }
-
-
 }
-
@@ -0,0 +1,250 @@
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Runs {@link Simulation#simulateConsensus} for each combination of the given parameters, {@code repetitions} times
+ * each, and summarizes each combination. Simulations run concurrently on a {@link ForkJoinPool} (each one running its
+ * rounds serially), with seeds split from a single one, so a sweep gives the same consensus results regardless of the
+ * number of threads.
+ * <p>
+ * The consensus of a simulation is the largest number of compliant nodes agreeing on the same transactions, as a
+ * fraction of the compliant nodes (1 if there are none).
+ */
+public class SweepRunner {
+    private final int numNodes;
+    private final double[] pGraphs;
+    private final double[] pMaliciouses;
+    private final double[] pTxDistributions;
+    private final int[] numRounds;
+    private final int repetitions;
+    private final long seed;
+
+    public SweepRunner(
+        int numNodes, double[] pGraphs, double[] pMaliciouses, double[] pTxDistributions, int[] numRounds,
+        int repetitions, long seed)
+    {
+        if (repetitions < 1) throw new IllegalArgumentException("Repetitions must be positive: " + repetitions);
+
+        this.numNodes = numNodes;
+        this.pGraphs = pGraphs.clone();
+        this.pMaliciouses = pMaliciouses.clone();
+        this.pTxDistributions = pTxDistributions.clone();
+        this.numRounds = numRounds.clone();
+        this.repetitions = repetitions;
+        this.seed = seed;
+    }
+
+    /**
+     * Runs the 3x3x3x2 combinations suggested by {@link Simulation#main}, or the ones given as {@code name=values}
+     * arguments (values separated by commas), writing the summary to {@code out} as CSV, or JSON if its name ends with
+     * {@code .json}. Arguments (and defaults): {@code nodes} (100), {@code pGraph} (.1,.2,.3), {@code pMalicious}
+     * (.15,.30,.45), {@code pTxDistribution} (.01,.05,.10), {@code rounds} (10,20), {@code repetitions} (10),
+     * {@code seed} (random), {@code threads} (available processors), {@code out} (standard output, as CSV).
+     */
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            String[] option = arg.split("=", 2);
+            if (option.length != 2) throw new IllegalArgumentException("Expected name=values: " + arg);
+            options.put(option[0], option[1]);
+        }
+        SweepRunner sweep = new SweepRunner(
+            Integer.parseInt(options.getOrDefault("nodes", "100")),
+            doubles(options.getOrDefault("pGraph", ".1,.2,.3")),
+            doubles(options.getOrDefault("pMalicious", ".15,.30,.45")),
+            doubles(options.getOrDefault("pTxDistribution", ".01,.05,.10")),
+            Arrays.stream(options.getOrDefault("rounds", "10,20").split(",")).mapToInt(Integer::parseInt).toArray(),
+            Integer.parseInt(options.getOrDefault("repetitions", "10")),
+            options.containsKey("seed") ? Long.parseLong(options.get("seed")) : new SplittableRandom().nextLong());
+        int threads = Integer.parseInt(
+            options.getOrDefault("threads", String.valueOf(Runtime.getRuntime().availableProcessors())));
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        long start = System.nanoTime();
+        List<Summary> summaries;
+        try {
+            summaries = sweep.run(pool);
+        } finally {
+            pool.shutdown();
+        }
+        System.err.printf("%d simulations in %.1f s%n", summaries.size() * sweep.repetitions,
+            (System.nanoTime() - start) / 1e9);
+
+        String out = options.get("out");
+        Writer writer = out != null
+            ? Files.newBufferedWriter(Paths.get(out), StandardCharsets.UTF_8)
+            : new OutputStreamWriter(System.out, StandardCharsets.UTF_8);
+        try {
+            if (out != null && out.endsWith(".json")) {
+                writeJson(summaries, writer);
+            } else {
+                writeCsv(summaries, writer);
+            }
+        } finally {
+            writer.flush();
+            if (out != null) writer.close();
+        }
+    }
+
+    /** @return the summary of each combination, in the order of the parameters given (the last one varying faster) */
+    public List<Summary> run(ForkJoinPool pool) {
+        List<Run> runs = new ArrayList<>();
+        SplittableRandom seeds = new SplittableRandom(seed);
+        for (double pGraph : pGraphs) {
+            for (double pMalicious : pMaliciouses) {
+                for (double pTxDistribution : pTxDistributions) {
+                    for (int rounds : numRounds) {
+                        Configuration configuration =
+                            new Configuration(numNodes, pGraph, pMalicious, pTxDistribution, rounds);
+                        for (int i = 0; i < repetitions; i++) {
+                            runs.add(new Run(configuration, seeds.nextLong()));
+                        }
+                    }
+                }
+            }
+        }
+
+        pool.submit(() -> runs.parallelStream().forEach(Run::simulate)).join();
+
+        //LinkedHashMap keeps the order of the configurations
+        Map<Configuration, List<Run>> byConfiguration = runs.stream().collect(
+            Collectors.groupingBy(run -> run.configuration, LinkedHashMap::new, Collectors.toList()));
+        return byConfiguration.values().stream().map(Summary::new).collect(Collectors.toList());
+    }
+
+    /** Writes {@code summaries} as CSV, with a header line */
+    public static void writeCsv(List<Summary> summaries, Writer writer) throws IOException {
+        writer.write(String.join(",", Summary.FIELDS.keySet()) + "\n");
+        for (Summary summary : summaries) {
+            writer.write(Summary.FIELDS.values().stream()
+                .map(field -> String.valueOf(field.apply(summary)))
+                .collect(Collectors.joining(",")) + "\n");
+        }
+    }
+
+    /** Writes {@code summaries} as a JSON array of objects */
+    public static void writeJson(List<Summary> summaries, Writer writer) throws IOException {
+        writer.write("[\n");
+        for (int i = 0; i < summaries.size(); i++) {
+            Summary summary = summaries.get(i);
+            writer.write(Summary.FIELDS.entrySet().stream()
+                .map(field -> "\"" + field.getKey() + "\": " + field.getValue().apply(summary))
+                .collect(Collectors.joining(", ", "  {", i < summaries.size() - 1 ? "},\n" : "}\n")));
+        }
+        writer.write("]\n");
+    }
+
+    /** Results of {@link #runs} simulations with the same parameters */
+    public static final class Summary {
+        /** fields written, by name */
+        private static final Map<String, Function<Summary, Object>> FIELDS = fields();
+
+        public final int numNodes;
+        public final double pGraph;
+        public final double pMalicious;
+        public final double pTxDistribution;
+        public final int numRounds;
+        public final int runs;
+        /** mean consensus of the runs */
+        public final double consensusRate;
+        /** lowest consensus of the runs */
+        public final double worstConsensusRate;
+        /** mean time taken by a run */
+        public final double meanWallTimeMillis;
+        /** rounds run per second by each simulation (not by the whole sweep) */
+        public final double roundsPerSecond;
+
+        Summary(List<Run> runs) {
+            Configuration configuration = runs.get(0).configuration;
+            numNodes = configuration.numNodes;
+            pGraph = configuration.pGraph;
+            pMalicious = configuration.pMalicious;
+            pTxDistribution = configuration.pTxDistribution;
+            numRounds = configuration.numRounds;
+            this.runs = runs.size();
+            consensusRate = runs.stream().mapToDouble(run -> run.consensus).average().orElse(0);
+            worstConsensusRate = runs.stream().mapToDouble(run -> run.consensus).min().orElse(0);
+            long wallTimeNanos = runs.stream().mapToLong(run -> run.wallTimeNanos).sum();
+            meanWallTimeMillis = wallTimeNanos / 1e6 / runs.size();
+            roundsPerSecond = wallTimeNanos > 0 ? numRounds * runs.size() / (wallTimeNanos / 1e9) : 0;
+        }
+
+        private static Map<String, Function<Summary, Object>> fields() {
+            Map<String, Function<Summary, Object>> fields = new LinkedHashMap<>();
+            fields.put("numNodes", s -> s.numNodes);
+            fields.put("pGraph", s -> s.pGraph);
+            fields.put("pMalicious", s -> s.pMalicious);
+            fields.put("pTxDistribution", s -> s.pTxDistribution);
+            fields.put("numRounds", s -> s.numRounds);
+            fields.put("runs", s -> s.runs);
+            fields.put("consensusRate", s -> s.consensusRate);
+            fields.put("worstConsensusRate", s -> s.worstConsensusRate);
+            fields.put("meanWallTimeMillis", s -> s.meanWallTimeMillis);
+            fields.put("roundsPerSecond", s -> s.roundsPerSecond);
+            return Collections.unmodifiableMap(fields);
+        }
+    }
+
+    // ------------------------------------------------------------------
+    private static double[] doubles(String values) {
+        return Arrays.stream(values.split(",")).mapToDouble(Double::parseDouble).toArray();
+    }
+
+    /** @return the consensus of the nodes of a simulation */
+    static double consensus(Node[] nodes) {
+        Map<Set<Transaction>, Integer> txSetToCount = new HashMap<>();
+        int compliantNodes = 0;
+        for (Node node : nodes) {
+            if (node instanceof CompliantNode) {
+                ++compliantNodes;
+                txSetToCount.merge(node.sendToFollowers(), 1, Integer::sum);
+            }
+        }
+        int consensusNodes = txSetToCount.values().stream().max(Integer::compareTo).orElse(0);
+        return compliantNodes > 0 ? (double) consensusNodes / compliantNodes : 1;
+    }
+
+    private static final class Configuration {
+        final int numNodes;
+        final double pGraph;
+        final double pMalicious;
+        final double pTxDistribution;
+        final int numRounds;
+
+        Configuration(int numNodes, double pGraph, double pMalicious, double pTxDistribution, int numRounds) {
+            this.numNodes = numNodes;
+            this.pGraph = pGraph;
+            this.pMalicious = pMalicious;
+            this.pTxDistribution = pTxDistribution;
+            this.numRounds = numRounds;
+        }
+    }
+
+    private static final class Run {
+        final Configuration configuration;
+        final long seed;
+        double consensus;
+        long wallTimeNanos;
+
+        Run(Configuration configuration, long seed) {
+            this.configuration = configuration;
+            this.seed = seed;
+        }
+
+        void simulate() {
+            long start = System.nanoTime();
+            Node[] nodes = Simulation.simulateConsensus(configuration.numNodes, configuration.pGraph,
+                configuration.pMalicious, configuration.pTxDistribution, configuration.numRounds, seed, null);
+            wallTimeNanos = System.nanoTime() - start;
+            consensus = consensus(nodes);
+        }
+    }
+}
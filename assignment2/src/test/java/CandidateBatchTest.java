@@ -0,0 +1,35 @@
+import org.junit.Test;
+
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CandidateBatchTest {
+    @Test
+    public void keepsTheTransactionAndSenderOfEachCandidate() {
+        Transaction[] txs = new Transaction[40];
+        for (int i = 0; i < txs.length; i++) {
+            txs[i] = new Transaction(-i);
+        }
+        CandidateBatch batch = new CandidateBatch(txs);
+        for (int i = 0; i < txs.length; i++) {
+            batch.add(txs.length - 1 - i, Integer.MAX_VALUE - i);
+        }
+
+        assertEquals(txs.length, batch.size());
+        for (int i = 0; i < txs.length; i++) {
+            assertSame(txs[txs.length - 1 - i], batch.getTx(i));
+            assertEquals(Integer.MAX_VALUE - i, batch.getSender(i));
+        }
+        Set<Candidate> candidates = batch.toCandidates();
+        assertEquals(txs.length, candidates.size());
+        for (Candidate candidate : candidates) {
+            assertEquals(Integer.MAX_VALUE - (candidate.tx.id + txs.length - 1), candidate.sender);
+        }
+
+        batch.clear();
+        assertTrue(batch.isEmpty());
+    }
+}
@@ -0,0 +1,71 @@
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FollowGraphTest {
+    @Test
+    public void sparseAndDenseGraphsHaveTheSameEdges() {
+        Random random = new Random(1);
+        int numNodes = 130;
+        boolean[][] expected = new boolean[numNodes][numNodes];
+        int[][] rows = new int[numNodes][];
+        for (int i = 0; i < numNodes; i++) {
+            List<Integer> row = new ArrayList<>();
+            for (int j = 0; j < numNodes; j++) {
+                if (i != j && random.nextDouble() < 0.2) {
+                    expected[i][j] = true;
+                    row.add(j);
+                }
+            }
+            rows[i] = row.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        for (FollowGraph graph : new FollowGraph[] {FollowGraph.sparse(rows), FollowGraph.dense(rows)}) {
+            assertEquals(numNodes, graph.size());
+            for (int i = 0; i < numNodes; i++) {
+                assertArrayEquals(expected[i], graph.followeeFlags(i));
+                int node = i;
+                List<Integer> followers = new ArrayList<>();
+                List<Integer> expectedFollowers = new ArrayList<>();
+                graph.forEachFollower(i, followers::add);
+                for (int j = 0; j < numNodes; j++) {
+                    assertEquals(expected[i][j], graph.follows(i, j));
+                    if (expected[j][node]) expectedFollowers.add(j);
+                }
+                assertEquals(expectedFollowers, followers);
+            }
+        }
+    }
+
+    @Test
+    public void randomGraphsHaveTheExpectedDensity() {
+        int numNodes = 2000;
+        FollowGraph graph = FollowGraph.random(numNodes, 0.01, new SplittableRandom(1));
+        long edges = 0;
+        for (int i = 0; i < numNodes; i++) {
+            assertFalse(graph.follows(i, i));
+            int[] count = {0};
+            graph.forEachFollowee(i, followee -> ++count[0]);
+            edges += count[0];
+        }
+        double density = (double) edges / ((long) numNodes * (numNodes - 1));
+        assertTrue("density " + density, Math.abs(density - 0.01) < 0.001);
+
+        FollowGraph complete = FollowGraph.random(10, 1, new SplittableRandom(1));
+        FollowGraph empty = FollowGraph.random(10, 0, new SplittableRandom(1));
+        for (int i = 0; i < 10; i++) {
+            for (int j = 0; j < 10; j++) {
+                assertEquals(i != j, complete.follows(i, j));
+                assertFalse(empty.follows(i, j));
+            }
+        }
+    }
+}
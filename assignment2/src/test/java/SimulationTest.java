@@ -0,0 +1,51 @@
+import org.junit.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SimulationTest {
+    @Test
+    public void parallelRoundsGiveTheSameResultsAsSerialOnes() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (long seed = 0; seed < 3; seed++) {
+                Node[] serial = Simulation.simulateConsensus(100, 0.1, 0.3, 0.05, 10, seed, null);
+                Node[] parallel = Simulation.simulateConsensus(100, 0.1, 0.3, 0.05, 10, seed, pool);
+                assertEquals(serial.length, parallel.length);
+                for (int i = 0; i < serial.length; i++) {
+                    assertEquals(serial[i].getClass(), parallel[i].getClass());
+                    assertEquals(serial[i].sendToFollowers(), parallel[i].sendToFollowers());
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void sameSeedGivesTheSameResults() {
+        Node[] first = Simulation.simulateConsensus(100, 0.2, 0.45, 0.01, 10, 42, null);
+        Node[] second = Simulation.simulateConsensus(100, 0.2, 0.45, 0.01, 10, 42, null);
+        for (int i = 0; i < first.length; i++) {
+            assertEquals(first[i].getClass(), second[i].getClass());
+            assertEquals(first[i].sendToFollowers(), second[i].sendToFollowers());
+        }
+    }
+
+    @Test
+    public void eachPhaseDrawsFromItsOwnStream() {
+        //malicious nodes draw their own numbers, which doesn't change what the other nodes are given
+        Node[] allCompliant = Simulation.simulateConsensus(100, 0.1, 0, 0.1, 0, 7, null);
+        Node[] someMalicious = Simulation.simulateConsensus(100, 0.1, 0.3, 0.1, 0, 7, null);
+        int compliantNodes = 0;
+        for (int i = 0; i < someMalicious.length; i++) {
+            if (someMalicious[i] instanceof CompliantNode) {
+                ++compliantNodes;
+                assertEquals(allCompliant[i].sendToFollowers(), someMalicious[i].sendToFollowers());
+            }
+        }
+        assertTrue(compliantNodes < someMalicious.length);
+    }
+}
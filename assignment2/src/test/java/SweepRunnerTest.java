@@ -0,0 +1,60 @@
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SweepRunnerTest {
+    private final SweepRunner sweep =
+        new SweepRunner(50, new double[] {.1, .3}, new double[] {.15, .45}, new double[] {.05}, new int[] {5}, 3, 1);
+
+    @Test
+    public void summarizesEachCombinationTheSameWayWithAnyNumberOfThreads() {
+        List<SweepRunner.Summary> serial = run(1);
+        List<SweepRunner.Summary> parallel = run(4);
+
+        assertEquals(4, serial.size());
+        assertEquals(.1, serial.get(1).pGraph, 0);
+        assertEquals(.45, serial.get(1).pMalicious, 0);
+        for (int i = 0; i < serial.size(); i++) {
+            assertEquals(3, serial.get(i).runs);
+            assertTrue(serial.get(i).worstConsensusRate <= serial.get(i).consensusRate);
+            assertTrue(serial.get(i).consensusRate <= 1);
+            assertEquals(serial.get(i).consensusRate, parallel.get(i).consensusRate, 0);
+            assertEquals(serial.get(i).worstConsensusRate, parallel.get(i).worstConsensusRate, 0);
+        }
+    }
+
+    @Test
+    public void writesCsvAndJson() throws Exception {
+        List<SweepRunner.Summary> summaries = run(2);
+        StringWriter csv = new StringWriter();
+        SweepRunner.writeCsv(summaries, csv);
+        String[] lines = csv.toString().split("\n");
+        assertEquals(5, lines.length);
+        assertTrue(lines[0].startsWith("numNodes,pGraph,pMalicious,pTxDistribution,numRounds,runs,consensusRate,"));
+        assertTrue(lines[1].startsWith("50,0.1,0.15,0.05,5,3,"));
+
+        StringWriter json = new StringWriter();
+        SweepRunner.writeJson(summaries, json);
+        String[] objects = json.toString().split("\n");
+        assertEquals(6, objects.length);
+        assertEquals("[", objects[0]);
+        assertTrue(objects[1].startsWith("  {\"numNodes\": 50, \"pGraph\": 0.1, \"pMalicious\": 0.15,"));
+        assertTrue(objects[1].endsWith("},"));
+        assertTrue(objects[4].endsWith("}"));
+        assertEquals("]", objects[5]);
+    }
+
+    private List<SweepRunner.Summary> run(int threads) {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            return sweep.run(pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
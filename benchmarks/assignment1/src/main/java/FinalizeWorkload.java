@@ -0,0 +1,54 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Computes the hash of a signed transaction ({@link Transaction#finalize()}) on each call or, for "sighashes",
+ * rebuilds it and computes the data signed by each input before hashing it (as signing or verifying it does).
+ */
+public class FinalizeWorkload implements Supplier<Object> {
+    private final Transaction tx;
+    private final boolean isSighashes;
+
+    public FinalizeWorkload(int numInputs, int numOutputs) {
+        this(numInputs, numOutputs, "finalize");
+    }
+
+    /** @param operation "finalize" or "sighashes" */
+    public FinalizeWorkload(int numInputs, int numOutputs, String operation) {
+        if (! operation.equals("finalize") && ! operation.equals("sighashes")) {
+            throw new IllegalArgumentException("Unknown operation: " + operation);
+        }
+        LedgerFixture fixture = new LedgerFixture(numInputs, 0, 1, 1);
+        List<UTXO> utxos = fixture.utxoPool.getAllUTXO();
+        List<Transaction.Output> spent = new ArrayList<>();
+        for (UTXO utxo : utxos) {
+            spent.add(fixture.utxoPool.getTxOutput(utxo));
+        }
+        tx = fixture.newSignedTx(utxos, spent, numOutputs);
+        isSighashes = operation.equals("sighashes");
+    }
+
+    @Override
+    public Object get() {
+        if (! isSighashes) {
+            tx.finalize();
+            return tx.getHash();
+        }
+
+        Transaction rebuilt = new Transaction();
+        for (Transaction.Input input : tx.getInputs()) {
+            rebuilt.addInput(input.prevTxHash, input.outputIndex);
+        }
+        for (Transaction.Output output : tx.getOutputs()) {
+            rebuilt.addOutput(output.value, output.address);
+        }
+        int sighashBytes = 0;
+        for (int i = 0; i < rebuilt.numInputs(); i++) {
+            sighashBytes += rebuilt.getRawDataToSign(i).length;
+            rebuilt.addSignature(tx.getInput(i).signature, i);
+        }
+        rebuilt.finalize();
+        return sighashBytes + rebuilt.getHash()[0];
+    }
+}
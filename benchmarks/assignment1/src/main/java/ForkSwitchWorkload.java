@@ -0,0 +1,46 @@
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Finds, on each call, the pool of the tip of a fork of a {@link BlockChain} from the pool of the tip of the heaviest
+ * chain, which is what switching to the fork costs: two forks of {@code forkDepth} blocks of {@code blockSize}
+ * transactions each, both from the genesis block.
+ */
+public class ForkSwitchWorkload implements Supplier<Object> {
+    private final BlockChain chain;
+    private final byte[] forkTip;
+
+    public ForkSwitchWorkload(int poolSize, int forkDepth, int blockSize) {
+        if (2 * forkDepth * blockSize > poolSize) {
+            throw new IllegalArgumentException("The pool needs an output per transaction: " + poolSize);
+        }
+        LedgerFixture fixture = new LedgerFixture(poolSize, 0, 1, 1);
+        List<UTXO> spendable = fixture.utxoPool.getAllUTXO();
+        Block genesis = new Block(null, new Transaction[0]);
+        chain = new BlockChain(genesis, fixture.utxoPool);
+
+        byte[] tip = null;
+        for (int fork = 0; fork < 2; fork++) {
+            tip = genesis.getHash();
+            for (int depth = 0; depth < forkDepth; depth++) {
+                Transaction[] txs = new Transaction[blockSize];
+                for (int i = 0; i < blockSize; i++) {
+                    UTXO utxo = spendable.get((fork * forkDepth + depth) * blockSize + i);
+                    txs[i] = fixture.newSignedTx(Collections.singletonList(utxo),
+                        Collections.singletonList(fixture.utxoPool.getTxOutput(utxo)), 1);
+                }
+                Block block = new Block(tip, txs);
+                if (! chain.addBlock(block)) throw new IllegalStateException("Invalid block");
+                tip = block.getHash();
+            }
+        }
+        //the first fork is the heaviest one, as it got there first
+        forkTip = tip;
+    }
+
+    @Override
+    public Object get() {
+        return chain.getUTXOPool(forkTip);
+    }
+}
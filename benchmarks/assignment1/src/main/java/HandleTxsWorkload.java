@@ -0,0 +1,77 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+/** Handles a whole {@link LedgerFixture} block with a new {@link TxHandler} on each call */
+public class HandleTxsWorkload implements Supplier<Object>, AutoCloseable {
+    private static final String STREAMING = "streaming";
+
+    private final LedgerFixture fixture;
+    private final BlockValidationEngine engine;
+    private final ForkJoinPool verificationPool;
+    private final TxHandlerMetrics metrics;
+
+    /**
+     * @param engine "recursive", "topological", "maxFee", "partitioned" (validating independent groups of txs on
+     *               all the processors) or "streaming" (streaming the block through
+     *               {@code TxHandler.handleTxs(Iterator, Consumer)}).
+     * @param verificationThreads threads used to verify the signatures up front, 0 to verify them serially.
+     */
+    public HandleTxsWorkload(int poolSize, int blockSize, int chainDepth, String engine, int verificationThreads) {
+        this(poolSize, blockSize, chainDepth, 0, engine, verificationThreads);
+    }
+
+    /** @param conflictPercent percentage of the chains with a double spend (see {@link LedgerFixture}) */
+    public HandleTxsWorkload(
+        int poolSize, int blockSize, int chainDepth, int conflictPercent, String engine, int verificationThreads)
+    {
+        this(poolSize, blockSize, chainDepth, conflictPercent, engine, verificationThreads, "none");
+    }
+
+    /** @param metrics "none" (not measuring) or "recording" (to a {@link RecordingTxHandlerMetrics}). */
+    public HandleTxsWorkload(
+        int poolSize, int blockSize, int chainDepth, int conflictPercent, String engine, int verificationThreads,
+        String metrics)
+    {
+        this.fixture = new LedgerFixture(poolSize, blockSize, chainDepth, conflictPercent, 1);
+        this.engine = engine.equals(STREAMING) ? null : newEngine(engine);
+        this.verificationPool = verificationThreads > 0 ? new ForkJoinPool(verificationThreads) : null;
+        this.metrics = newMetrics(metrics);
+    }
+
+    @Override
+    public Object get() {
+        TxHandler txHandler = TxHandler.newBuilder()
+            .verificationPool(verificationPool)
+            .validationEngine(engine != null ? engine : new RecursiveValidationEngine())
+            .metrics(metrics)
+            .build(fixture.utxoPool);
+        if (engine == null) {
+            return txHandler.handleTxs(Arrays.asList(fixture.block).iterator(), tx -> {});
+        }
+        return txHandler.handleTxs(fixture.block);
+    }
+
+    @Override
+    public void close() {
+        if (verificationPool != null) verificationPool.shutdown();
+    }
+
+    private static TxHandlerMetrics newMetrics(String name) {
+        switch (name) {
+            case "none": return TxHandlerMetrics.NONE;
+            case "recording": return new RecordingTxHandlerMetrics();
+            default: throw new IllegalArgumentException("Unknown metrics: " + name);
+        }
+    }
+
+    static BlockValidationEngine newEngine(String name) {
+        switch (name) {
+            case "recursive": return new RecursiveValidationEngine();
+            case "topological": return new TopologicalValidationEngine();
+            case "maxFee": return new MaxFeeValidationEngine();
+            case "partitioned": return new PartitionedValidationEngine(ForkJoinPool.commonPool());
+            default: throw new IllegalArgumentException("Unknown engine: " + name);
+        }
+    }
+}
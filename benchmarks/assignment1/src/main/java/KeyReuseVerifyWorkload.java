@@ -0,0 +1,103 @@
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+/**
+ * Verifies a batch of signatures on each call, whose keys are drawn from {@code keyCount} keys with a Zipf
+ * distribution (key {@code k} used with probability proportional to {@code 1 / (k + 1)^zipfExponent}, so 0 is
+ * uniform and larger exponents concentrate the batch on a few keys, as a few busy addresses in a block).
+ */
+public class KeyReuseVerifyWorkload implements Supplier<Object>, AutoCloseable {
+    private static final int THREADS = 4;
+
+    private final List<CryptoService.VerifyRequest> requests = new ArrayList<>();
+    private final ForkJoinPool pool = new ForkJoinPool(THREADS);
+    private final Supplier<Object> operation;
+
+    /**
+     * @param operation "verify" (one at a time, in batch order), "verifyAll" (grouped by key), "parallel" (one at a
+     *                  time on {@value #THREADS} threads) or "parallelVerifyAll" (grouped by key, on
+     *                  {@value #THREADS} threads).
+     */
+    public KeyReuseVerifyWorkload(int batchSize, int keyCount, double zipfExponent, String operation) {
+        Random random = new Random(1);
+        KeyPair[] keys = newKeys(keyCount);
+        double[] cumulative = new double[keyCount];
+        for (int k = 0; k < keyCount; k++) {
+            cumulative[k] = (k > 0 ? cumulative[k - 1] : 0) + 1 / Math.pow(k + 1, zipfExponent);
+        }
+        for (int i = 0; i < batchSize; i++) {
+            int k = Arrays.binarySearch(cumulative, random.nextDouble() * cumulative[keyCount - 1]);
+            KeyPair key = keys[Math.min(keyCount - 1, k >= 0 ? k : -k - 1)];
+            byte[] message = new byte[64];
+            random.nextBytes(message);
+            requests.add(new CryptoService.VerifyRequest(key.getPublic(), message, sign(key, message)));
+        }
+        this.operation = newOperation(operation);
+    }
+
+    @Override
+    public Object get() {
+        return operation.get();
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    private Supplier<Object> newOperation(String name) {
+        switch (name) {
+            case "verify":
+                return () -> {
+                    int valid = 0;
+                    for (CryptoService.VerifyRequest r : requests) {
+                        if (CryptoService.verify(r.key, r.message, r.signature).isValid()) ++valid;
+                    }
+                    return valid;
+                };
+            case "verifyAll":
+                return () -> CryptoService.verifyAll(requests);
+            case "parallel":
+                return () -> pool.submit(() -> requests.parallelStream()
+                    .filter(r -> CryptoService.verify(r.key, r.message, r.signature).isValid())
+                    .count()).join();
+            case "parallelVerifyAll":
+                return () -> CryptoService.verifyAll(requests, pool);
+            default:
+                throw new IllegalArgumentException("Unknown operation: " + name);
+        }
+    }
+
+    private static KeyPair[] newKeys(int count) {
+        try {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+            generator.initialize(2048);
+            KeyPair[] keys = new KeyPair[count];
+            for (int i = 0; i < count; i++) {
+                keys[i] = generator.generateKeyPair();
+            }
+            return keys;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] sign(KeyPair key, byte[] message) {
+        try {
+            Signature signature = Signature.getInstance("SHA256withRSA");
+            signature.initSign(key.getPrivate());
+            signature.update(message);
+            return signature.sign();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.util.*;
+
+/**
+ * Ledger data for the benchmarks, using real RSA keys and signatures: a UTXOPool and a block of transactions
+ * spending from it.
+ * <p>
+ * The block is made of chains of {@code chainDepth} transactions, each one spending the single output of the previous
+ * one (the first one spends an output of the pool), and is shuffled so dependencies are not in order. Each transaction
+ * pays a random fee and, optionally, a percentage of the chains have a conflicting transaction double spending their
+ * first output.
+ */
+public class LedgerFixture {
+    private static final int KEY_COUNT = 16;
+    private static final long VALUE = 10 * Transaction.COIN;
+    private static final long MAX_FEE = Transaction.COIN / 100;
+    private static KeyPair[] keys;
+
+    final UTXOPool utxoPool = new UTXOPool();
+    final Transaction[] block;
+    private final Map<PublicKey, PrivateKey> privateKeys = new HashMap<>();
+    private final Random random;
+
+    public LedgerFixture(int poolSize, int blockSize, int chainDepth, long seed) {
+        this(poolSize, blockSize, chainDepth, 0, seed);
+    }
+
+    public LedgerFixture(int poolSize, int blockSize, int chainDepth, int conflictPercent, long seed) {
+        int chainCount = (blockSize + chainDepth - 1) / chainDepth;
+        if (chainCount > poolSize) {
+            throw new IllegalArgumentException("The pool needs at least one output per chain: " + chainCount);
+        }
+        random = new Random(seed);
+        for (KeyPair key : getKeys()) {
+            privateKeys.put(key.getPublic(), key.getPrivate());
+        }
+
+        Transaction poolTx = new Transaction();
+        for (int i = 0; i < poolSize; i++) {
+            poolTx.addOutput(VALUE, randomKey().getPublic());
+            utxoPool.addUTXO(new UTXO(randomHash(), 0), poolTx.getOutput(i));
+        }
+
+        List<UTXO> spendable = utxoPool.getAllUTXO();
+        List<Transaction> txs = new ArrayList<>(blockSize);
+        for (int chain = 0; chain < chainCount; chain++) {
+            UTXO utxo = spendable.get(chain);
+            Transaction.Output spent = utxoPool.getTxOutput(utxo);
+            if (random.nextInt(100) < conflictPercent) {
+                txs.add(newSignedTx(Collections.singletonList(utxo), Collections.singletonList(spent), 1));
+            }
+            for (int depth = 0; depth < chainDepth && txs.size() < blockSize; depth++) {
+                Transaction tx = newSignedTx(Collections.singletonList(utxo), Collections.singletonList(spent), 1);
+                txs.add(tx);
+                utxo = new UTXO(tx.getHash(), 0);
+                spent = tx.getOutput(0);
+            }
+        }
+        Collections.shuffle(txs, random);
+        block = txs.toArray(new Transaction[0]);
+    }
+
+    /**
+     * @return a finalized transaction spending {@code utxos} (whose outputs are {@code spent}) into
+     *         {@code numOutputs} outputs to random keys, paying a random fee.
+     */
+    Transaction newSignedTx(List<UTXO> utxos, List<Transaction.Output> spent, int numOutputs) {
+        Transaction tx = new Transaction();
+        long inputSum = 0;
+        for (int i = 0; i < utxos.size(); i++) {
+            tx.addInput(utxos.get(i).getTxHash(), utxos.get(i).getIndex());
+            inputSum += spent.get(i).value;
+        }
+        long fee = Math.min(inputSum, (long) (random.nextDouble() * MAX_FEE));
+        for (int i = 0; i < numOutputs; i++) {
+            tx.addOutput((inputSum - fee) / numOutputs, randomKey().getPublic());
+        }
+        for (int i = 0; i < utxos.size(); i++) {
+            tx.addSignature(sign(privateKeys.get(spent.get(i).address), tx.getRawDataToSign(i)), i);
+        }
+        tx.finalize();
+        return tx;
+    }
+
+    KeyPair randomKey() {
+        return getKeys()[random.nextInt(KEY_COUNT)];
+    }
+
+    byte[] randomHash() {
+        byte[] hash = new byte[32];
+        random.nextBytes(hash);
+        return hash;
+    }
+
+    private static byte[] sign(PrivateKey key, byte[] message) {
+        try {
+            Signature signature = Signature.getInstance("SHA256withRSA");
+            signature.initSign(key);
+            signature.update(message);
+            return signature.sign();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static synchronized KeyPair[] getKeys() {
+        if (keys == null) {
+            try {
+                KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+                generator.initialize(2048);
+                keys = new KeyPair[KEY_COUNT];
+                for (int i = 0; i < KEY_COUNT; i++) {
+                    keys[i] = generator.generateKeyPair();
+                }
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return keys;
+    }
+}
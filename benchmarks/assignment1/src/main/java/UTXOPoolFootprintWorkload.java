@@ -0,0 +1,83 @@
+import java.security.PublicKey;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Fills a {@link UTXOPool} (or, as reference, a {@code HashMap<UTXO, Transaction.Output>} as the original pool did)
+ * with {@code poolSize} UTXOs, with 32 bytes hashes, on each call and returns the heap it retains per entry.
+ * <p>
+ * Retained heap is measured as the difference of used heap (after requesting a GC) before and after filling it, so
+ * the results are only meaningful for large pools.
+ */
+public class UTXOPoolFootprintWorkload implements Supplier<Object> {
+    private static final int HASH_LENGTH = 32;
+
+    private final int poolSize;
+    private final String store;
+    private final PublicKey[] addresses;
+    private final Transaction outputsTx = new Transaction();
+    /** pool filled by the last call, kept reachable until measured */
+    private Object pool;
+
+    /** @param store "utxoPool" or "hashMap" */
+    public UTXOPoolFootprintWorkload(int poolSize, String store) {
+        this.poolSize = poolSize;
+        this.store = store;
+        LedgerFixture fixture = new LedgerFixture(16, 0, 1, 1);
+        addresses = new PublicKey[16];
+        for (int i = 0; i < addresses.length; i++) {
+            addresses[i] = fixture.randomKey().getPublic();
+        }
+    }
+
+    /** @return the retained bytes per UTXO */
+    @Override
+    public Object get() {
+        pool = null;
+        long before = usedHeap();
+        pool = fill();
+        long after = usedHeap();
+        return (double) (after - before) / poolSize;
+    }
+
+    private Object fill() {
+        Random random = new Random(1);
+        switch (store) {
+            case "utxoPool":
+                UTXOPool utxoPool = new UTXOPool();
+                for (int i = 0; i < poolSize; i++) {
+                    utxoPool.addUTXO(randomUTXO(random), randomOutput(random));
+                }
+                return utxoPool;
+            case "hashMap":
+                Map<UTXO, Transaction.Output> map = new HashMap<>();
+                for (int i = 0; i < poolSize; i++) {
+                    map.put(randomUTXO(random), randomOutput(random));
+                }
+                return map;
+            default:
+                throw new IllegalArgumentException("Unknown store: " + store);
+        }
+    }
+
+    private static UTXO randomUTXO(Random random) {
+        byte[] hash = new byte[HASH_LENGTH];
+        random.nextBytes(hash);
+        return new UTXO(hash, random.nextInt(4));
+    }
+
+    private Transaction.Output randomOutput(Random random) {
+        long value = random.nextInt(1000) * Transaction.COIN / 100;
+        return outputsTx.new Output(value, addresses[random.nextInt(addresses.length)]);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
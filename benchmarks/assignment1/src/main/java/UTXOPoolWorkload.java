@@ -0,0 +1,54 @@
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/** Runs a single {@link UTXOPool} operation, on a pool of the given size, on each call */
+public class UTXOPoolWorkload implements Supplier<Object> {
+    private final UTXOPool utxoPool;
+    private final UTXO[] existing;
+    private final UTXO[] missing;
+    private final Transaction.Output output;
+    private final Supplier<Object> operation;
+    private final Random random = new Random(1);
+
+    /** @param operation "lookup" (of an existing UTXO), "addRemove" (of a new one) or "copyAdd" */
+    public UTXOPoolWorkload(int poolSize, String operation) {
+        LedgerFixture fixture = new LedgerFixture(poolSize, 0, 1, 1);
+        utxoPool = fixture.utxoPool;
+        List<UTXO> utxos = utxoPool.getAllUTXO();
+        existing = utxos.toArray(new UTXO[0]);
+        missing = new UTXO[1024];
+        for (int i = 0; i < missing.length; i++) {
+            missing[i] = new UTXO(fixture.randomHash(), 0);
+        }
+        output = utxoPool.getTxOutput(existing[0]);
+        this.operation = newOperation(operation);
+    }
+
+    @Override
+    public Object get() {
+        return operation.get();
+    }
+
+    private Supplier<Object> newOperation(String name) {
+        switch (name) {
+            case "lookup":
+                return () -> utxoPool.getTxOutput(existing[random.nextInt(existing.length)]);
+            case "addRemove":
+                return () -> {
+                    UTXO utxo = missing[random.nextInt(missing.length)];
+                    utxoPool.addUTXO(utxo, output);
+                    utxoPool.removeUTXO(utxo);
+                    return utxo;
+                };
+            case "copyAdd":
+                return () -> {
+                    UTXOPool copy = new UTXOPool(utxoPool);
+                    copy.addUTXO(missing[random.nextInt(missing.length)], output);
+                    return copy;
+                };
+            default:
+                throw new IllegalArgumentException("Unknown operation: " + name);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Verifies the input signatures of a block (or hashes its transactions) on each call, with the original per-call
+ * {@code getInstance} implementation ("legacy") or with {@link CryptoService}.
+ */
+public class VerifyWorkload implements Supplier<Object> {
+    private final List<CryptoService.VerifyRequest> requests = new ArrayList<>();
+    private final List<byte[]> rawTxs = new ArrayList<>();
+    private final Supplier<Object> operation;
+
+    /**
+     * @param operation "legacyVerify", "verify" (one at a time), "verifyAll", "legacyDigest" or "digest"
+     */
+    public VerifyWorkload(String operation, int batchSize) {
+        LedgerFixture fixture = new LedgerFixture(batchSize, batchSize, 1, 1);
+        for (Transaction tx : fixture.block) {
+            Transaction.Input input = tx.getInput(0);
+            PublicKey key = fixture.utxoPool.getTxOutput(new UTXO(input.prevTxHash, input.outputIndex)).address;
+            requests.add(new CryptoService.VerifyRequest(key, tx.getRawDataToSign(0), input.signature));
+            rawTxs.add(tx.getRawTx());
+        }
+        this.operation = newOperation(operation);
+    }
+
+    @Override
+    public Object get() {
+        return operation.get();
+    }
+
+    private Supplier<Object> newOperation(String name) {
+        switch (name) {
+            case "legacyVerify":
+                return () -> {
+                    int valid = 0;
+                    for (CryptoService.VerifyRequest r : requests) {
+                        if (legacyVerifySignature(r.key, r.message, r.signature)) ++valid;
+                    }
+                    return valid;
+                };
+            case "verify":
+                return () -> {
+                    int valid = 0;
+                    for (CryptoService.VerifyRequest r : requests) {
+                        if (CryptoService.verify(r.key, r.message, r.signature).isValid()) ++valid;
+                    }
+                    return valid;
+                };
+            case "verifyAll":
+                return () -> CryptoService.verifyAll(requests);
+            case "legacyDigest":
+                return () -> {
+                    byte[] last = null;
+                    for (byte[] rawTx : rawTxs) {
+                        last = legacyDigest(rawTx);
+                    }
+                    return last;
+                };
+            case "digest":
+                return () -> {
+                    byte[] last = null;
+                    for (byte[] rawTx : rawTxs) {
+                        last = CryptoService.sha256(rawTx);
+                    }
+                    return last;
+                };
+            default:
+                throw new IllegalArgumentException("Unknown operation: " + name);
+        }
+    }
+
+    /** The original {@code Crypto.verifySignature} */
+    private static boolean legacyVerifySignature(PublicKey pubKey, byte[] message, byte[] signature) {
+        try {
+            Signature sig = Signature.getInstance("SHA256withRSA");
+            sig.initVerify(pubKey);
+            sig.update(message);
+            return sig.verify(signature);
+        } catch (GeneralSecurityException e) {
+            return false;
+        }
+    }
+
+    /** The original {@code Transaction.finalize} digest */
+    private static byte[] legacyDigest(byte[] rawTx) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            md.update(rawTx);
+            return md.digest();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
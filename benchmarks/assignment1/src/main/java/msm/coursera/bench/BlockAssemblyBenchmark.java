@@ -0,0 +1,43 @@
+package msm.coursera.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Cost of assembling a block maximizing fees ({@code MaxFeeValidationEngine}) compared to accepting transactions in
+ * the proposed order ({@code RecursiveValidationEngine}), for blocks with double spends.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BlockAssemblyBenchmark {
+    @Param({"1000", "10000"})
+    private int blockSize;
+
+    @Param({"1", "5"})
+    private int chainDepth;
+
+    /** percentage of chains with a conflicting transaction */
+    @Param({"0", "10"})
+    private int conflictPercent;
+
+    @Param({"recursive", "maxFee"})
+    private String engine;
+
+    private Supplier<?> workload;
+
+    @Setup
+    public void setUp() {
+        workload = Fixtures.create("HandleTxsWorkload", 100000, blockSize, chainDepth, conflictPercent, engine, 0);
+    }
+
+    @Benchmark
+    public Object handleTxs() {
+        return workload.get();
+    }
+}
@@ -0,0 +1,36 @@
+package msm.coursera.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/** Switching a {@code BlockChain} between two forks (see {@code ForkSwitchWorkload}) */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BlockChainBenchmark {
+    @Param({"10000", "1000000"})
+    private int poolSize;
+
+    @Param({"1", "10"})
+    private int forkDepth;
+
+    @Param({"100"})
+    private int blockSize;
+
+    private Supplier<?> workload;
+
+    @Setup
+    public void setUp() {
+        workload = Fixtures.create("ForkSwitchWorkload", poolSize, forkDepth, blockSize);
+    }
+
+    @Benchmark
+    public Object switchFork() {
+        return workload.get();
+    }
+}
@@ -0,0 +1,36 @@
+package msm.coursera.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Signature verification and transaction hashing of a block: the original per-call {@code getInstance}
+ * implementations against {@code CryptoService} (per-thread instances, and key grouping for {@code verifyAll}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CryptoBenchmark {
+    @Param({"100"})
+    private int batchSize;
+
+    @Param({"legacyVerify", "verify", "verifyAll", "legacyDigest", "digest"})
+    private String operation;
+
+    private Supplier<?> workload;
+
+    @Setup
+    public void setUp() {
+        workload = Fixtures.create("VerifyWorkload", operation, batchSize);
+    }
+
+    @Benchmark
+    public Object run() {
+        return workload.get();
+    }
+}
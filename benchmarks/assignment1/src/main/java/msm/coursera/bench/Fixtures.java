@@ -0,0 +1,32 @@
+package msm.coursera.bench;
+
+import java.lang.reflect.Constructor;
+import java.util.function.Supplier;
+
+/**
+ * JMH benchmarks can't be in the default package, where all the code under test is, so each benchmark measures a
+ * {@link Supplier} implemented next to that code (in this module's default package) and created by reflection.
+ */
+final class Fixtures {
+    private Fixtures() {}
+
+    /** @return a new instance of the default package class {@code className}, created with {@code args} */
+    static Supplier<?> create(String className, Object... args) {
+        try {
+            for (Constructor<?> constructor : Class.forName(className).getConstructors()) {
+                if (constructor.getParameterCount() == args.length) {
+                    return (Supplier<?>) constructor.newInstance(args);
+                }
+            }
+            throw new IllegalArgumentException("No constructor for " + args.length + " arguments in " + className);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Can't create " + className, e);
+        }
+    }
+
+    static void close(Supplier<?> workload) throws Exception {
+        if (workload instanceof AutoCloseable) {
+            ((AutoCloseable) workload).close();
+        }
+    }
+}
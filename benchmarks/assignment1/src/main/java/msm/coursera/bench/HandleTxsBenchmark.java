@@ -0,0 +1,49 @@
+package msm.coursera.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/** {@code TxHandler.handleTxs} for a block of signed transactions (see {@code LedgerFixture}) */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HandleTxsBenchmark {
+    @Param({"100", "1000"})
+    private int blockSize;
+
+    /** length of the chains of in-block dependencies */
+    @Param({"1", "10"})
+    private int chainDepth;
+
+    @Param({"10000", "1000000"})
+    private int poolSize;
+
+    @Param({"recursive", "topological", "partitioned", "streaming"})
+    private String engine;
+
+    /** threads verifying signatures up front, 0 to verify them while validating */
+    @Param({"0", "4"})
+    private int verificationThreads;
+
+    private Supplier<?> workload;
+
+    @Setup
+    public void setUp() {
+        workload = Fixtures.create("HandleTxsWorkload", poolSize, blockSize, chainDepth, engine, verificationThreads);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        Fixtures.close(workload);
+    }
+
+    @Benchmark
+    public Object handleTxs() {
+        return workload.get();
+    }
+}
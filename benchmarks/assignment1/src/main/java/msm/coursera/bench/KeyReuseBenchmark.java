@@ -0,0 +1,48 @@
+package msm.coursera.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Signature verification of a batch whose keys follow a Zipf distribution (see {@code KeyReuseVerifyWorkload}):
+ * one at a time against grouped by key, serially and in parallel.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KeyReuseBenchmark {
+    @Param({"1000"})
+    private int batchSize;
+
+    @Param({"64"})
+    private int keyCount;
+
+    /** 0 for uniformly used keys, higher for a few keys used by most signatures */
+    @Param({"0", "1", "1.5"})
+    private double zipfExponent;
+
+    @Param({"verify", "verifyAll", "parallel", "parallelVerifyAll"})
+    private String operation;
+
+    private Supplier<?> workload;
+
+    @Setup
+    public void setUp() {
+        workload = Fixtures.create("KeyReuseVerifyWorkload", batchSize, keyCount, zipfExponent, operation);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        Fixtures.close(workload);
+    }
+
+    @Benchmark
+    public Object verify() {
+        return workload.get();
+    }
+}
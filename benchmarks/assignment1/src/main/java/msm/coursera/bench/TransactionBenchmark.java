@@ -0,0 +1,39 @@
+package msm.coursera.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * {@code Transaction.finalize} for signed transactions of different sizes, alone or after computing the data signed
+ * by each input (see {@code FinalizeWorkload})
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransactionBenchmark {
+    @Param({"1", "10"})
+    private int numInputs;
+
+    @Param({"1", "10", "100"})
+    private int numOutputs;
+
+    @Param({"finalize", "sighashes"})
+    private String operation;
+
+    private Supplier<?> workload;
+
+    @Setup
+    public void setUp() {
+        workload = Fixtures.create("FinalizeWorkload", numInputs, numOutputs, operation);
+    }
+
+    @Benchmark
+    public Object finalizeTx() {
+        return workload.get();
+    }
+}
@@ -0,0 +1,44 @@
+package msm.coursera.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Overhead of measuring {@code TxHandler.handleTxs}: "none" must perform as {@link HandleTxsBenchmark} did before the
+ * metrics existed, "recording" shows the cost of actually recording them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TxHandlerMetricsBenchmark {
+    @Param({"1000"})
+    private int blockSize;
+
+    @Param({"1", "10"})
+    private int chainDepth;
+
+    @Param({"none", "recording"})
+    private String metrics;
+
+    private Supplier<?> workload;
+
+    @Setup
+    public void setUp() {
+        workload = Fixtures.create("HandleTxsWorkload", 100000, blockSize, chainDepth, 0, "recursive", 0, metrics);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        Fixtures.close(workload);
+    }
+
+    @Benchmark
+    public Object handleTxs() {
+        return workload.get();
+    }
+}
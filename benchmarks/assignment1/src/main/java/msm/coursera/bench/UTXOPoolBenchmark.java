@@ -0,0 +1,33 @@
+package msm.coursera.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/** Single {@code UTXOPool} operations for pools of different sizes */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UTXOPoolBenchmark {
+    @Param({"10000", "1000000"})
+    private int poolSize;
+
+    @Param({"lookup", "addRemove", "copyAdd"})
+    private String operation;
+
+    private Supplier<?> workload;
+
+    @Setup
+    public void setUp() {
+        workload = Fixtures.create("UTXOPoolWorkload", poolSize, operation);
+    }
+
+    @Benchmark
+    public Object run() {
+        return workload.get();
+    }
+}
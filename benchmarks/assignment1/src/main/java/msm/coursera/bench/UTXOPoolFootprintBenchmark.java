@@ -0,0 +1,42 @@
+package msm.coursera.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Heap retained per UTXO by a {@code UTXOPool} compared to a plain {@code HashMap<UTXO, Transaction.Output>}, reported
+ * as the {@code bytesPerEntry} secondary result (the time is the one needed to fill the pool).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g"})
+public class UTXOPoolFootprintBenchmark {
+    @Param({"1000000", "10000000"})
+    private int poolSize;
+
+    @Param({"utxoPool", "hashMap"})
+    private String store;
+
+    private Supplier<?> workload;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        public double bytesPerEntry;
+    }
+
+    @Setup
+    public void setUp() {
+        workload = Fixtures.create("UTXOPoolFootprintWorkload", poolSize, store);
+    }
+
+    @Benchmark
+    public void fill(Footprint footprint) {
+        footprint.bytesPerEntry = (Double) workload.get();
+    }
+}
@@ -0,0 +1,24 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+/**
+ * Runs a round of a {@link Simulation} on each call, always on the same network (to measure the allocations of a
+ * round, run it with {@code -prof gc}). After the first rounds the compliant nodes have seen all the transactions, so
+ * it measures rounds where most proposals are known by their recipients.
+ */
+public class RoundWorkload implements Supplier<Object> {
+    private final RoundRunner rounds;
+    private final ForkJoinPool roundPool;
+
+    /** @param engine see {@link SimulationWorkload#SimulationWorkload(int, double, double, double, int, String)} */
+    public RoundWorkload(int numNodes, double pGraph, double pMalicious, double pTxDistribution, String engine) {
+        this.rounds = Simulation.setUp(numNodes, pGraph, pMalicious, pTxDistribution, Integer.MAX_VALUE, 1);
+        this.roundPool = SimulationWorkload.roundPool(engine);
+    }
+
+    @Override
+    public Object get() {
+        rounds.run(roundPool);
+        return rounds;
+    }
+}
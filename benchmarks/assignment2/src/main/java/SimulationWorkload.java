@@ -0,0 +1,44 @@
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+/** Runs a whole {@link Simulation#simulateConsensus} on each call, with a new seed */
+public class SimulationWorkload implements Supplier<Object> {
+    private final int numNodes;
+    private final double pGraph;
+    private final double pMalicious;
+    private final double pTxDistribution;
+    private final int numRounds;
+    private final ForkJoinPool roundPool;
+    private final Random seeds = new Random(1);
+
+    public SimulationWorkload(int numNodes, double pGraph, double pMalicious, double pTxDistribution, int numRounds) {
+        this(numNodes, pGraph, pMalicious, pTxDistribution, numRounds, "serial");
+    }
+
+    /** @param engine "serial" or "parallel" (running each phase of the rounds on the common pool). */
+    public SimulationWorkload(
+        int numNodes, double pGraph, double pMalicious, double pTxDistribution, int numRounds, String engine)
+    {
+        this.numNodes = numNodes;
+        this.pGraph = pGraph;
+        this.pMalicious = pMalicious;
+        this.pTxDistribution = pTxDistribution;
+        this.numRounds = numRounds;
+        this.roundPool = roundPool(engine);
+    }
+
+    @Override
+    public Object get() {
+        return Simulation.simulateConsensus(
+            numNodes, pGraph, pMalicious, pTxDistribution, numRounds, seeds.nextLong(), roundPool);
+    }
+
+    static ForkJoinPool roundPool(String engine) {
+        switch (engine) {
+            case "serial": return null;
+            case "parallel": return ForkJoinPool.commonPool();
+            default: throw new IllegalArgumentException("Unknown engine: " + engine);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package msm.coursera.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/** A round of {@code Simulation} for different network sizes and parameters (see {@code RoundWorkload}) */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class RoundBenchmark {
+    @Param({"100", "1000"})
+    private int numNodes;
+
+    @Param({"0.1", "0.3"})
+    private double pGraph;
+
+    @Param({"0.15", "0.45"})
+    private double pMalicious;
+
+    @Param({"0.01", "0.1"})
+    private double pTxDistribution;
+
+    @Param({"serial", "parallel"})
+    private String engine;
+
+    private Supplier<?> workload;
+
+    @Setup
+    public void setUp() {
+        workload = Fixtures.create("RoundWorkload", numNodes, pGraph, pMalicious, pTxDistribution, engine);
+    }
+
+    @Benchmark
+    public Object runRound() {
+        return workload.get();
+    }
+}
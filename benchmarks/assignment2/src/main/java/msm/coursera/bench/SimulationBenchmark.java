@@ -0,0 +1,46 @@
+package msm.coursera.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/** {@code Simulation.simulateConsensus} for different network sizes and parameters */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SimulationBenchmark {
+    @Param({"100", "500"})
+    private int numNodes;
+
+    @Param({"0.1", "0.3"})
+    private double pGraph;
+
+    @Param({"0.15", "0.45"})
+    private double pMalicious;
+
+    @Param({"0.01", "0.1"})
+    private double pTxDistribution;
+
+    @Param({"10", "20"})
+    private int numRounds;
+
+    @Param({"serial", "parallel"})
+    private String engine;
+
+    private Supplier<?> workload;
+
+    @Setup
+    public void setUp() {
+        workload = Fixtures.create("SimulationWorkload", numNodes, pGraph, pMalicious, pTxDistribution, numRounds,
+            engine);
+    }
+
+    @Benchmark
+    public Object simulateConsensus() {
+        return workload.get();
+    }
+}